@@ -0,0 +1,287 @@
+import com.gamesbykevin.daedalianopus.generator.Batch;
+import com.gamesbykevin.daedalianopus.generator.Blueprint;
+import com.gamesbykevin.daedalianopus.generator.Generator;
+import com.gamesbykevin.daedalianopus.generator.PackFile;
+import com.gamesbykevin.daedalianopus.generator.RandomGenerator;
+import com.gamesbykevin.daedalianopus.generator.TilingGenerator;
+import com.gamesbykevin.daedalianopus.puzzle.PuzzleHelper;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This file will create puzzle packs from the command line without starting the game.<br>
+ * Puzzles are created on every core and written to the pack a batch at a time.
+ * @author GOD
+ */
+public final class StartGenerator
+{
+    //the number of puzzles created before they are written to the pack
+    private static final int BATCH_SIZE = 4096;
+
+    //how the program is used
+    private static final String USAGE =
+        "Usage: StartGenerator <pack file> [options]\n" +
+        "  -count <n>       number of puzzles (default 10000)\n" +
+        "  -seed <n>        seed of the puzzles (default 0)\n" +
+        "  -mode <mode>     easy, medium, hard or tiling (default hard)\n" +
+        "  -pieces <a-b>    number of pieces for tiling (default 3-12)\n" +
+        "  -solutions <n>   most solutions of a tiled puzzle, or count random puzzles up to n (default 1 for tiling, 0 otherwise)\n" +
+        "  -threads <n>     number of threads (default one per core)";
+
+    //the options
+    private File file;
+    private long count = 10000;
+    private long seed = 0;
+    private String mode = "hard";
+    private int minPieces = 3, maxPieces = 12;
+    private long solutions = -1;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    //the number of puzzles with each piece count and solution count
+    private final Map<Integer, Long> pieceCounts = new TreeMap<>();
+    private final Map<Long, Long> solutionCounts = new TreeMap<>();
+
+    private StartGenerator()
+    {
+        //created by main
+    }
+
+    public static void main(String[] args)
+    {
+        try
+        {
+            final StartGenerator generator = new StartGenerator();
+
+            if (!generator.parse(args))
+            {
+                System.out.println(USAGE);
+                System.exit(1);
+            }
+
+            generator.run();
+        }
+        catch(Exception e)
+        {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Read the options
+     * @param args The command line
+     * @return true if the command line is valid, false otherwise
+     */
+    private boolean parse(final String[] args)
+    {
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                if (!args[i].startsWith("-"))
+                {
+                    if (file != null)
+                        return false;
+
+                    file = new File(args[i]);
+                    continue;
+                }
+
+                if (i + 1 >= args.length)
+                    return false;
+
+                final String value = args[++i];
+
+                switch (args[i - 1])
+                {
+                    case "-count":
+                        count = Long.parseLong(value);
+                        break;
+
+                    case "-seed":
+                        seed = Long.parseLong(value);
+                        break;
+
+                    case "-mode":
+                        mode = value.toLowerCase();
+                        break;
+
+                    case "-pieces":
+                        final String[] range = value.split("-");
+                        minPieces = Integer.parseInt(range[0]);
+                        maxPieces = Integer.parseInt(range[range.length - 1]);
+                        break;
+
+                    case "-solutions":
+                        solutions = Long.parseLong(value);
+                        break;
+
+                    case "-threads":
+                        threads = Integer.parseInt(value);
+                        break;
+
+                    default:
+                        return false;
+                }
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            return false;
+        }
+
+        return (file != null && count > 0 && threads > 0);
+    }
+
+    /**
+     * Create the generator for the mode
+     * @return The generator, null if the mode is not valid
+     */
+    private Generator createGenerator()
+    {
+        if (mode.equals("tiling"))
+            return new TilingGenerator(minPieces, maxPieces, (solutions < 0) ? 1 : (int)solutions);
+
+        for (PuzzleHelper.Difficulty difficulty : PuzzleHelper.Difficulty.values())
+        {
+            if (difficulty.toString().equalsIgnoreCase(mode))
+            {
+                final RandomGenerator generator = new RandomGenerator(difficulty);
+                generator.setSolutionLimit(Math.max(0, solutions));
+                return generator;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Create the puzzles, write the pack and print the statistics
+     * @throws Exception if the pack can't be written
+     */
+    private void run() throws Exception
+    {
+        final Generator generator = createGenerator();
+
+        if (generator == null)
+            throw new Exception("Mode not found " + mode);
+
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        final PackFile pack = new PackFile(file);
+
+        final long start = System.nanoTime();
+        final long allocated = getAllocatedBytes();
+
+        try
+        {
+            for (long first = 0; first < count; first += BATCH_SIZE)
+            {
+                final Blueprint[] blueprints = Batch.generate(generator, seed, first, (int)Math.min(BATCH_SIZE, count - first), pool);
+
+                for (int i = 0; i < blueprints.length; i++)
+                {
+                    pack.add(blueprints[i]);
+                    add(pieceCounts, blueprints[i].getPieceCount());
+                    add(solutionCounts, blueprints[i].getSolutionCount());
+                }
+
+                System.out.print("\r" + pack.getCount() + " / " + count);
+            }
+
+            //measure before the pool threads are stopped
+            final long bytes = (allocated < 0) ? -1 : getAllocatedBytes() - allocated;
+
+            pack.close();
+
+            final double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.println();
+            System.out.println("Wrote " + pack.getCount() + " puzzles to " + file + " (" + file.length() + " bytes)");
+            System.out.println(String.format("Time %.2f seconds, %.1f puzzles per second on %d threads", seconds, count / seconds, threads));
+
+            if (bytes < 0)
+            {
+                System.out.println("Allocation rate not available");
+            }
+            else
+            {
+                System.out.println(String.format("Allocated %.1f MB per second, %d bytes per puzzle", (bytes / 1048576.0) / seconds, bytes / count));
+            }
+
+            System.out.println("Pieces:");
+
+            for (Map.Entry<Integer, Long> entry : pieceCounts.entrySet())
+            {
+                System.out.println(String.format("%8d %10d", entry.getKey(), entry.getValue()));
+            }
+
+            System.out.println("Solutions:");
+
+            for (Map.Entry<Long, Long> entry : solutionCounts.entrySet())
+            {
+                System.out.println(String.format("%8s %10d", getSolutionLabel(entry.getKey()), entry.getValue()));
+            }
+        }
+        finally
+        {
+            //if something went wrong the pack is left in the temporary file
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Get how a solution count is shown in the histogram
+     * @param solutions The solution count
+     * @return The text to show
+     */
+    private String getSolutionLabel(final long solutions)
+    {
+        if (solutions < 0)
+            return "unknown";
+
+        //random puzzles with more solutions than the limit are stored as limit + 1
+        if (!mode.equals("tiling") && solutions > this.solutions)
+            return ">" + this.solutions;
+
+        return Long.toString(solutions);
+    }
+
+    private static <K> void add(final Map<K, Long> histogram, final K key)
+    {
+        final Long value = histogram.get(key);
+        histogram.put(key, (value == null) ? 1 : value + 1);
+    }
+
+    /**
+     * Get the bytes allocated by every live thread
+     * @return The number of bytes, -1 if the JVM can't measure it
+     */
+    private static long getAllocatedBytes()
+    {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return -1;
+
+        final com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean)bean;
+
+        if (!sun.isThreadAllocatedMemorySupported() || !sun.isThreadAllocatedMemoryEnabled())
+            return -1;
+
+        long total = 0;
+
+        for (long bytes : sun.getThreadAllocatedBytes(bean.getAllThreadIds()))
+        {
+            //threads that have ended report -1
+            if (bytes > 0)
+                total += bytes;
+        }
+
+        return total;
+    }
+}
@@ -4,6 +4,7 @@ import com.gamesbykevin.daedalianopus.main.Main;
 import com.gamesbykevin.daedalianopus.manager.Manager;
 import com.gamesbykevin.daedalianopus.menu.CustomMenu;
 import com.gamesbykevin.daedalianopus.resources.*;
+import com.gamesbykevin.daedalianopus.shared.DirtyRegion;
 import com.gamesbykevin.daedalianopus.shared.Shared;
 
 import com.gamesbykevin.framework.input.*;
@@ -38,6 +39,9 @@ public final class Engine implements KeyListener, MouseMotionListener, MouseList
     //default font
     private Font font;
     
+    //the area of the screen changed since the last frame was drawn
+    private final DirtyRegion dirty;
+    
     //seed for the Random object
     private final long seed = System.nanoTime();
     
@@ -61,6 +65,9 @@ public final class Engine implements KeyListener, MouseMotionListener, MouseList
         //object used to track keyboard input
         this.keyboard = new Keyboard();
         
+        //nothing has been drawn yet so the whole screen has changed
+        this.dirty = new DirtyRegion(main.getScreen());
+        
         //create new Random object
         random = new Random(seed);
         
@@ -127,6 +134,9 @@ public final class Engine implements KeyListener, MouseMotionListener, MouseList
 
                 //reset mouse and keyboard input
                 resetInput();
+                
+                //the menu will be drawn for the first time
+                dirty.markAll();
             }
             else
             {
@@ -152,16 +162,26 @@ public final class Engine implements KeyListener, MouseMotionListener, MouseList
                     {
                         //load resources
                         resources.update(main.getContainerClass());
+                        
+                        //the loading progress is drawn every update
+                        dirty.markAll();
                     }
                     else
                     {
                         //create new manager because at this point our resources have loaded
                         if (manager == null)
+                        {
                             manager = new Manager(this);
+                            dirty.markAll();
+                        }
 
                         //update main game logic
                         manager.update(this);
                     }
+                    
+                    //the mouse is drawn during the game when it isn't hidden
+                    if (!Shared.HIDE_MOUSE)
+                        dirty.markAll();
                 }
 
                 //if the mouse is released reset all mouse events
@@ -200,6 +220,9 @@ public final class Engine implements KeyListener, MouseMotionListener, MouseList
             this.manager.dispose();
             this.manager = null;
         }
+        
+        //the game is no longer drawn
+        dirty.markAll();
     }
     
     private void resetInput()
@@ -214,6 +237,15 @@ public final class Engine implements KeyListener, MouseMotionListener, MouseList
         return main;
     }
     
+    /**
+     * Get the area of the screen that changed since the last frame was drawn
+     * @return The region game elements mark when they change
+     */
+    public DirtyRegion getDirtyRegion()
+    {
+        return this.dirty;
+    }
+    
     /**
      * Get our object used to make random decisions
      * @return Random
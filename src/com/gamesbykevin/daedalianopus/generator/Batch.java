@@ -0,0 +1,89 @@
+package com.gamesbykevin.daedalianopus.generator;
+
+import com.gamesbykevin.daedalianopus.solver.ParallelSolver;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Task that creates the puzzles in part of an array.<br>
+ * Each puzzle only depends on the seed and its index, so the array is the same no matter how the work is split.
+ * @author GOD
+ */
+public final class Batch extends RecursiveAction
+{
+    private static final long serialVersionUID = 1L;
+
+    private final Generator generator;
+    private final long seed, first;
+    private final Blueprint[] blueprints;
+    private final int start, end;
+
+    private Batch(final Generator generator, final long seed, final long first, final Blueprint[] blueprints, final int start, final int end)
+    {
+        this.generator = generator;
+        this.seed = seed;
+        this.first = first;
+        this.blueprints = blueprints;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Create puzzles on all cores
+     * @param generator The generator that creates each puzzle
+     * @param seed The seed of the puzzles, the same seed will create the same puzzles
+     * @param count The number of puzzles to create
+     * @return Array of puzzles, the puzzle at each index only depends on the seed and the index
+     */
+    public static Blueprint[] generate(final Generator generator, final long seed, final int count)
+    {
+        return generate(generator, seed, count, ParallelSolver.getPool());
+    }
+
+    /**
+     * Create puzzles on the pool
+     * @param generator The generator that creates each puzzle
+     * @param seed The seed of the puzzles, the same seed will create the same puzzles
+     * @param count The number of puzzles to create
+     * @param pool The pool that runs the tasks
+     * @return Array of puzzles, the puzzle at each index only depends on the seed and the index
+     */
+    public static Blueprint[] generate(final Generator generator, final long seed, final int count, final ForkJoinPool pool)
+    {
+        return generate(generator, seed, 0, count, pool);
+    }
+
+    /**
+     * Create part of a larger set of puzzles on the pool, so a very large set can be created a few at a time
+     * @param generator The generator that creates each puzzle
+     * @param seed The seed of the puzzles, the same seed will create the same puzzles
+     * @param first The index of the first puzzle
+     * @param count The number of puzzles to create
+     * @param pool The pool that runs the tasks
+     * @return Array of puzzles, element i is the puzzle at index first + i
+     */
+    public static Blueprint[] generate(final Generator generator, final long seed, final long first, final int count, final ForkJoinPool pool)
+    {
+        final Blueprint[] blueprints = new Blueprint[count];
+
+        pool.invoke(new Batch(generator, seed, first, blueprints, 0, count));
+
+        return blueprints;
+    }
+
+    @Override
+    protected void compute()
+    {
+        //each puzzle takes a different amount of time so split all the way down
+        if (end - start > 1)
+        {
+            final int middle = (start + end) >>> 1;
+            invokeAll(new Batch(generator, seed, first, blueprints, start, middle), new Batch(generator, seed, first, blueprints, middle, end));
+            return;
+        }
+
+        if (start < end)
+            blueprints[start] = generator.create(seed, first + start);
+    }
+}
@@ -0,0 +1,138 @@
+package com.gamesbykevin.daedalianopus.generator;
+
+import com.gamesbykevin.daedalianopus.puzzle.BitBoard;
+import com.gamesbykevin.daedalianopus.puzzle.Puzzle;
+import com.gamesbykevin.daedalianopus.puzzle.PuzzleHelper;
+import com.gamesbykevin.daedalianopus.puzzle.piece.Piece;
+import com.gamesbykevin.daedalianopus.puzzle.piece.Shape;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A generated puzzle stored as the piece of every location.<br>
+ * This is much lighter than a puzzle with its pieces, so many can be kept or written to a file
+ * and only turned into a puzzle when it is played.
+ * @author GOD
+ */
+public final class Blueprint
+{
+    //the dimensions of the puzzle
+    private final int cols, rows;
+
+    //the piece of each location in row-major order, -1 if the location is not part of the puzzle
+    private final int[] labels;
+
+    //the number of pieces
+    private final int pieces;
+
+    //the number of solutions, -1 if not known
+    private final long solutions;
+
+    /**
+     * Create a blueprint
+     * @param cols The number of columns
+     * @param rows The number of rows
+     * @param labels The piece of each location, the array is not copied
+     * @param pieces The number of pieces
+     * @param solutions The number of solutions, -1 if not known
+     */
+    public Blueprint(final int cols, final int rows, final int[] labels, final int pieces, final long solutions)
+    {
+        this.cols = cols;
+        this.rows = rows;
+        this.labels = labels;
+        this.pieces = pieces;
+        this.solutions = solutions;
+    }
+
+    public int getCols()
+    {
+        return this.cols;
+    }
+
+    public int getRows()
+    {
+        return this.rows;
+    }
+
+    /**
+     * Get the piece of the location
+     * @param index The location (row * columns) + col
+     * @return The piece, -1 if the location is not part of the puzzle
+     */
+    public int getLabel(final int index)
+    {
+        return this.labels[index];
+    }
+
+    /**
+     * Get the piece of every location
+     * @return The array used by this blueprint, it is not copied
+     */
+    int[] getLabels()
+    {
+        return this.labels;
+    }
+
+    public int getPieceCount()
+    {
+        return this.pieces;
+    }
+
+    /**
+     * Get the number of solutions
+     * @return The number of solutions, -1 if not known
+     */
+    public long getSolutionCount()
+    {
+        return this.solutions;
+    }
+
+    /**
+     * Get the valid locations
+     * @return New board where every location with a piece is set
+     */
+    public BitBoard getBoard()
+    {
+        final BitBoard board = new BitBoard(cols, rows);
+
+        for (int index = 0; index < labels.length; index++)
+        {
+            if (labels[index] >= 0)
+                board.set(index);
+        }
+
+        return board;
+    }
+
+    /**
+     * Get the shape of each piece
+     * @return List of shapes in order of the labels
+     */
+    public List<Shape> getShapes()
+    {
+        return PuzzleHelper.createShapes(labels, cols, rows, pieces);
+    }
+
+    /**
+     * Create the puzzle so it can be played
+     * @param random Object used to choose the color and orientation of each piece
+     * @param created List the pieces of the puzzle will be added to
+     * @return The puzzle
+     */
+    public Puzzle createPuzzle(final Random random, final List<Piece> created)
+    {
+        return PuzzleHelper.create(random, labels, cols, rows, pieces, created);
+    }
+
+    /**
+     * Create the puzzle as a campaign level, which uses the pieces in PiecesHelper
+     * @return The puzzle with the type of each piece valid for play
+     * @throws Exception if a piece is not one of the pieces in PiecesHelper
+     */
+    public Puzzle createLevel() throws Exception
+    {
+        return PuzzleHelper.createLevel(labels, cols, rows, pieces);
+    }
+}
@@ -0,0 +1,16 @@
+package com.gamesbykevin.daedalianopus.generator;
+
+/**
+ * Basic methods required for puzzle generators
+ * @author GOD
+ */
+public interface Generator
+{
+    /**
+     * Create the puzzle at the index, the same seed and index will always create the same puzzle
+     * @param seed The seed of the puzzles
+     * @param index The index of the puzzle
+     * @return The puzzle
+     */
+    public Blueprint create(final long seed, final long index);
+}
@@ -0,0 +1,169 @@
+package com.gamesbykevin.daedalianopus.generator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A compressed file of puzzles.<br>
+ * Puzzles are written one at a time so a pack of any size can be created without keeping it in memory.
+ * Each puzzle is stored as its size, piece count, solution count and the piece of every location,
+ * using one byte per location when there are fewer than 255 pieces.
+ * The file is written to a temporary file first and only replaces the pack once it is closed.
+ * @author GOD
+ */
+public final class PackFile implements Closeable
+{
+    //identifies the file as a puzzle pack
+    private static final int MAGIC = 0x44504B31;
+
+    //increase this whenever the format changes
+    private static final int VERSION = 1;
+
+    //the number of pieces that still fit in one byte per location
+    private static final int MAX_BYTE_PIECES = 254;
+
+    //the pack and the temporary file being written
+    private final File file, tmp;
+
+    private DataOutputStream output;
+
+    //the number of puzzles written
+    private long count = 0;
+
+    /**
+     * Start writing a pack
+     * @param file The pack to create, it will be replaced when closed
+     * @throws IOException if the temporary file can't be created
+     */
+    public PackFile(final File file) throws IOException
+    {
+        this.file = file;
+        this.tmp = new File(file.getPath() + ".tmp");
+
+        if (file.getAbsoluteFile().getParentFile() != null)
+            file.getAbsoluteFile().getParentFile().mkdirs();
+
+        this.output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))));
+        this.output.writeInt(MAGIC);
+        this.output.writeInt(VERSION);
+    }
+
+    /**
+     * Add a puzzle to the pack
+     * @param blueprint The puzzle
+     * @throws IOException if the puzzle can't be written
+     */
+    public void add(final Blueprint blueprint) throws IOException
+    {
+        final int[] labels = blueprint.getLabels();
+
+        output.writeShort(blueprint.getCols());
+        output.writeShort(blueprint.getRows());
+        output.writeInt(blueprint.getPieceCount());
+        output.writeLong(blueprint.getSolutionCount());
+
+        //store each label + 1 so locations without a piece are 0
+        for (int i = 0; i < labels.length; i++)
+        {
+            if (blueprint.getPieceCount() <= MAX_BYTE_PIECES)
+            {
+                output.writeByte(labels[i] + 1);
+            }
+            else
+            {
+                output.writeShort(labels[i] + 1);
+            }
+        }
+
+        count++;
+    }
+
+    /**
+     * Get the number of puzzles written
+     * @return The number of puzzles
+     */
+    public long getCount()
+    {
+        return this.count;
+    }
+
+    /**
+     * Finish the pack and replace the file
+     * @throws IOException if the pack can't be written
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (output == null)
+            return;
+
+        //a puzzle without columns marks the end of the pack
+        output.writeShort(0);
+        output.close();
+        output = null;
+
+        if (file.exists() && !file.delete())
+            throw new IOException("Unable to replace " + file);
+        if (!tmp.renameTo(file))
+            throw new IOException("Unable to rename " + tmp);
+    }
+
+    /**
+     * Read every puzzle in a pack
+     * @param file The pack
+     * @return List of puzzles in the order they were written
+     * @throws IOException if the file can't be read or is not a pack
+     */
+    public static List<Blueprint> read(final File file) throws IOException
+    {
+        final List<Blueprint> blueprints = new ArrayList<>();
+
+        DataInputStream input = null;
+
+        try
+        {
+            input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+
+            if (input.readInt() != MAGIC || input.readInt() != VERSION)
+                throw new IOException("Not a puzzle pack " + file);
+
+            while (true)
+            {
+                final int cols = input.readUnsignedShort();
+
+                if (cols == 0)
+                    break;
+
+                final int rows = input.readUnsignedShort();
+                final int pieces = input.readInt();
+                final long solutions = input.readLong();
+                final int[] labels = new int[cols * rows];
+
+                for (int i = 0; i < labels.length; i++)
+                {
+                    labels[i] = ((pieces <= MAX_BYTE_PIECES) ? input.readUnsignedByte() : input.readUnsignedShort()) - 1;
+                }
+
+                blueprints.add(new Blueprint(cols, rows, labels, pieces, solutions));
+            }
+        }
+        finally
+        {
+            if (input != null)
+                input.close();
+        }
+
+        return blueprints;
+    }
+}
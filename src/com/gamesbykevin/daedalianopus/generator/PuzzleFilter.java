@@ -0,0 +1,15 @@
+package com.gamesbykevin.daedalianopus.generator;
+
+/**
+ * Decides which puzzles are kept by a puzzle stream
+ * @author GOD
+ */
+public interface PuzzleFilter
+{
+    /**
+     * Check the puzzle, this may be called from several threads at once
+     * @param blueprint The puzzle
+     * @return true if the puzzle is kept, false otherwise
+     */
+    public boolean accept(final Blueprint blueprint);
+}
@@ -0,0 +1,118 @@
+package com.gamesbykevin.daedalianopus.generator;
+
+import com.gamesbykevin.daedalianopus.puzzle.PuzzleHelper;
+import com.gamesbykevin.daedalianopus.solver.BitboardSolver;
+import com.gamesbykevin.daedalianopus.solver.Rater;
+
+/**
+ * Common filters for puzzle streams
+ * @author GOD
+ */
+public final class PuzzleFilters
+{
+    private PuzzleFilters()
+    {
+        //this class only has static methods
+    }
+
+    /**
+     * Keep puzzles with a number of pieces in the range
+     * @param min The fewest pieces
+     * @param max The most pieces
+     * @return The filter
+     */
+    public static PuzzleFilter getPieceFilter(final int min, final int max)
+    {
+        return new PuzzleFilter()
+        {
+            @Override
+            public boolean accept(final Blueprint blueprint)
+            {
+                return (blueprint.getPieceCount() >= min && blueprint.getPieceCount() <= max);
+            }
+        };
+    }
+
+    /**
+     * Keep puzzles that fit in the size
+     * @param cols The most columns
+     * @param rows The most rows
+     * @return The filter
+     */
+    public static PuzzleFilter getSizeFilter(final int cols, final int rows)
+    {
+        return new PuzzleFilter()
+        {
+            @Override
+            public boolean accept(final Blueprint blueprint)
+            {
+                return (blueprint.getCols() <= cols && blueprint.getRows() <= rows);
+            }
+        };
+    }
+
+    /**
+     * Keep puzzles with no more than a number of solutions.<br>
+     * The solution count of the puzzle is used when it is known, otherwise the solver counts them.
+     * @param maxSolutions The most solutions, 1 to only keep puzzles with a single solution
+     * @param nodeLimit The most nodes the solver can visit, puzzles that reach it are not kept, 0 for no limit
+     * @return The filter
+     */
+    public static PuzzleFilter getSolutionFilter(final long maxSolutions, final long nodeLimit)
+    {
+        return new PuzzleFilter()
+        {
+            @Override
+            public boolean accept(final Blueprint blueprint)
+            {
+                if (blueprint.getSolutionCount() >= 0)
+                    return (blueprint.getSolutionCount() <= maxSolutions);
+
+                //stop counting once there is one more solution than allowed
+                final BitboardSolver solver = new BitboardSolver(blueprint.getBoard(), blueprint.getShapes());
+                solver.setNodeLimit(nodeLimit);
+
+                final long solutions = solver.count(maxSolutions + 1);
+
+                return (!solver.hasExceeded() && solutions > 0 && solutions <= maxSolutions);
+            }
+        };
+    }
+
+    /**
+     * Keep puzzles rated with a score in the range
+     * @param min The lowest score
+     * @param max The highest score
+     * @return The filter
+     */
+    public static PuzzleFilter getRatingFilter(final int min, final int max)
+    {
+        return new PuzzleFilter()
+        {
+            @Override
+            public boolean accept(final Blueprint blueprint)
+            {
+                final int score = Rater.rate(blueprint.getBoard(), blueprint.getShapes()).getScore();
+
+                return (score >= min && score <= max);
+            }
+        };
+    }
+
+    /**
+     * Keep puzzles rated as the difficulty
+     * @param difficulty The difficulty, Epic is never a rating
+     * @return The filter
+     */
+    public static PuzzleFilter getRatingFilter(final PuzzleHelper.Difficulty difficulty)
+    {
+        return new PuzzleFilter()
+        {
+            @Override
+            public boolean accept(final Blueprint blueprint)
+            {
+                return (Rater.rate(blueprint.getBoard(), blueprint.getShapes()).getDifficulty() == difficulty);
+            }
+        };
+    }
+}
@@ -0,0 +1,232 @@
+package com.gamesbykevin.daedalianopus.generator;
+
+import com.gamesbykevin.daedalianopus.solver.ParallelSolver;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A lazy sequence of puzzles where the puzzle at each index only depends on the seed and the index.<br>
+ * Filters and limits create a new stream without creating any puzzles, the puzzles are only created
+ * when the stream is iterated or collected. A stream covers a range of indexes which can be split in two,
+ * so each part can be handled on a different thread and the results are the same no matter how it is split.
+ * Unless a range is given the stream has no end.
+ * @author GOD
+ */
+public final class PuzzleStream implements Iterable<Blueprint>
+{
+    //the number of puzzles created at once when collecting in parallel
+    private static final int BATCH_SIZE = 256;
+
+    //creates the puzzle at each index
+    private final Generator generator;
+
+    //the seed of the puzzles
+    private final long seed;
+
+    //the range of indexes, the end is not included
+    private final long start, end;
+
+    //the most puzzles the stream will return, -1 for no limit
+    private final long limit;
+
+    //every filter a puzzle has to pass
+    private final PuzzleFilter[] filters;
+
+    /**
+     * Create a stream without an end
+     * @param generator Creates the puzzle at each index
+     * @param seed The seed of the puzzles, the same seed will create the same puzzles
+     */
+    public PuzzleStream(final Generator generator, final long seed)
+    {
+        this(generator, seed, 0, Long.MAX_VALUE, -1, new PuzzleFilter[0]);
+    }
+
+    private PuzzleStream(final Generator generator, final long seed, final long start, final long end, final long limit, final PuzzleFilter[] filters)
+    {
+        this.generator = generator;
+        this.seed = seed;
+        this.start = start;
+        this.end = end;
+        this.limit = limit;
+        this.filters = filters;
+    }
+
+    /**
+     * Only keep the puzzles accepted by the filter
+     * @param filter The filter
+     * @return New stream that also has the filter
+     */
+    public PuzzleStream filter(final PuzzleFilter filter)
+    {
+        final PuzzleFilter[] tmp = new PuzzleFilter[filters.length + 1];
+        System.arraycopy(filters, 0, tmp, 0, filters.length);
+        tmp[filters.length] = filter;
+
+        return new PuzzleStream(generator, seed, start, end, limit, tmp);
+    }
+
+    /**
+     * Stop after a number of puzzles
+     * @param limit The most puzzles to return
+     * @return New stream with the limit
+     */
+    public PuzzleStream limit(final long limit)
+    {
+        return new PuzzleStream(generator, seed, start, end, (this.limit < 0) ? limit : Math.min(this.limit, limit), filters);
+    }
+
+    /**
+     * Only use part of the indexes
+     * @param start The first index
+     * @param end The index after the last one
+     * @return New stream over the indexes of this stream that are in the range
+     */
+    public PuzzleStream range(final long start, final long end)
+    {
+        return new PuzzleStream(generator, seed, Math.max(this.start, start), Math.min(this.end, end), limit, filters);
+    }
+
+    /**
+     * Split the indexes in two halves.<br>
+     * A limit applies to each half separately.
+     * @return Array with the first and second half, null if there are too few indexes to split
+     */
+    public PuzzleStream[] split()
+    {
+        if (end - start < 2)
+            return null;
+
+        final long middle = start + ((end - start) >>> 1);
+
+        return new PuzzleStream[]{range(start, middle), range(middle, end)};
+    }
+
+    public long getStart()
+    {
+        return this.start;
+    }
+
+    public long getEnd()
+    {
+        return this.end;
+    }
+
+    /**
+     * Create the puzzle at the index
+     * @param index The index
+     * @return The puzzle, null if it was removed by a filter
+     */
+    public Blueprint get(final long index)
+    {
+        final Blueprint blueprint = generator.create(seed, index);
+
+        for (int i = 0; i < filters.length; i++)
+        {
+            if (!filters[i].accept(blueprint))
+                return null;
+        }
+
+        return blueprint;
+    }
+
+    /**
+     * Create the puzzles one at a time in order of their index
+     * @return Iterator that creates each puzzle when it is needed
+     */
+    @Override
+    public Iterator<Blueprint> iterator()
+    {
+        return new Iterator<Blueprint>()
+        {
+            //the next index to check
+            private long index = start;
+
+            //the number of puzzles returned
+            private long count = 0;
+
+            //the next puzzle, null if it hasn't been found yet
+            private Blueprint next;
+
+            @Override
+            public boolean hasNext()
+            {
+                while (next == null && index < end && (limit < 0 || count < limit))
+                {
+                    next = get(index++);
+                }
+
+                return (next != null);
+            }
+
+            @Override
+            public Blueprint next()
+            {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                final Blueprint blueprint = next;
+                next = null;
+                count++;
+
+                return blueprint;
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Create puzzles on all cores
+     * @param count The number of puzzles wanted
+     * @return The first puzzles in order of their index, fewer if the stream ends first
+     */
+    public List<Blueprint> collect(final int count)
+    {
+        return collect(count, ParallelSolver.getPool());
+    }
+
+    /**
+     * Create puzzles on the pool.<br>
+     * Puzzles are created and filtered a batch at a time, so only a few more than needed are created.
+     * @param count The number of puzzles wanted
+     * @param pool The pool that runs the tasks
+     * @return The first puzzles in order of their index, the same puzzles the iterator would return
+     */
+    public List<Blueprint> collect(final int count, final ForkJoinPool pool)
+    {
+        final int wanted = (int)((limit < 0) ? count : Math.min(count, limit));
+        final List<Blueprint> blueprints = new ArrayList<>(wanted);
+
+        //each task creates and filters one puzzle
+        final Generator filtered = new Generator()
+        {
+            @Override
+            public Blueprint create(final long seed, final long index)
+            {
+                return get(index);
+            }
+        };
+
+        for (long first = start; first < end && blueprints.size() < wanted; first += BATCH_SIZE)
+        {
+            final Blueprint[] batch = Batch.generate(filtered, seed, first, (int)Math.min(BATCH_SIZE, end - first), pool);
+
+            for (int i = 0; i < batch.length && blueprints.size() < wanted; i++)
+            {
+                if (batch[i] != null)
+                    blueprints.add(batch[i]);
+            }
+        }
+
+        return blueprints;
+    }
+}
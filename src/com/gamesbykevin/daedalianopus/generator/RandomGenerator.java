@@ -0,0 +1,90 @@
+package com.gamesbykevin.daedalianopus.generator;
+
+import com.gamesbykevin.daedalianopus.puzzle.BitBoard;
+import com.gamesbykevin.daedalianopus.puzzle.PuzzleHelper;
+import com.gamesbykevin.daedalianopus.solver.BitboardSolver;
+
+import java.util.Random;
+
+/**
+ * Create random puzzles of the size of a difficulty, without creating any pieces.<br>
+ * Each puzzle is a board of random size for the difficulty split into pieces by PuzzleHelper.partition, the first
+ * board is always used. Unlike PuzzleHelper.createRandom the puzzles are not rated until one matches the
+ * difficulty, and Epic puzzles are partitioned the same way instead of being built from strips, so a stream of
+ * these puzzles is not the sequence the game plays. The solutions of each puzzle can also be counted up to a limit.
+ * @author GOD
+ */
+public final class RandomGenerator implements Generator
+{
+    //the size of the puzzles
+    private final PuzzleHelper.Difficulty difficulty;
+
+    //count the solutions up to this number, 0 to not count them
+    private long solutionLimit = 0;
+
+    //the most nodes the solver can visit while counting
+    private long nodeLimit = UniqueGenerator.DEFAULT_NODE_LIMIT;
+
+    /**
+     * Create a generator
+     * @param difficulty The difficulty, which will determine the size of the puzzles
+     */
+    public RandomGenerator(final PuzzleHelper.Difficulty difficulty)
+    {
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * Count the solutions of each puzzle.<br>
+     * A puzzle with more solutions than the limit will have a solution count of limit + 1.
+     * @param solutionLimit The most solutions to count, 0 to not count them
+     */
+    public void setSolutionLimit(final long solutionLimit)
+    {
+        this.solutionLimit = solutionLimit;
+    }
+
+    /**
+     * Limit how much work the solver can do on each puzzle, the solution count of puzzles that reach it is not known
+     * @param nodeLimit The maximum number of nodes, 0 for no limit
+     */
+    public void setNodeLimit(final long nodeLimit)
+    {
+        this.nodeLimit = nodeLimit;
+    }
+
+    @Override
+    public Blueprint create(final long seed, final long index)
+    {
+        final Random random = new Random(Seeds.mix(seed, index));
+
+        //pick random size for our puzzle
+        final int cols = PuzzleHelper.getRandomSize(random, difficulty);
+        final int rows = PuzzleHelper.getRandomSize(random, difficulty);
+        final int count = cols * rows;
+
+        //every location can be part of a piece
+        final BitBoard locations = new BitBoard(cols, rows);
+
+        for (int i = 0; i < count; i++)
+        {
+            locations.set(i);
+        }
+
+        final int[] labels = new int[count];
+        final int total = PuzzleHelper.partition(random, locations, labels);
+
+        if (solutionLimit <= 0)
+            return new Blueprint(cols, rows, labels, total, -1);
+
+        final Blueprint blueprint = new Blueprint(cols, rows, labels, total, -1);
+
+        //stop counting once there is one more solution than the limit
+        final BitboardSolver solver = new BitboardSolver(blueprint.getBoard(), blueprint.getShapes());
+        solver.setNodeLimit(nodeLimit);
+
+        final long solutions = solver.count(solutionLimit + 1);
+
+        return new Blueprint(cols, rows, labels, total, (solver.hasExceeded()) ? -1 : solutions);
+    }
+}
@@ -0,0 +1,42 @@
+package com.gamesbykevin.daedalianopus.generator;
+
+/**
+ * Create independent seeds from a single seed.<br>
+ * The seed of each index is mixed so neighboring indexes create unrelated random numbers,
+ * which lets puzzles be created in any order on any thread and still be the same.
+ * @author GOD
+ */
+public final class Seeds
+{
+    //the step between the seeds of neighboring indexes
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private Seeds()
+    {
+        //this class only has static methods
+    }
+
+    /**
+     * Get the seed of the index
+     * @param seed The starting seed
+     * @param index The index
+     * @return The seed for the index
+     */
+    public static long mix(final long seed, final long index)
+    {
+        return mix(seed + (index * GOLDEN_GAMMA));
+    }
+
+    /**
+     * Scramble the bits of the value
+     * @param value The value
+     * @return The mixed value
+     */
+    public static long mix(long value)
+    {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+
+        return value ^ (value >>> 31);
+    }
+}
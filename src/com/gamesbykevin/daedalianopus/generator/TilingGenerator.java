@@ -0,0 +1,555 @@
+package com.gamesbykevin.daedalianopus.generator;
+
+import com.gamesbykevin.daedalianopus.puzzle.piece.PiecesHelper;
+import com.gamesbykevin.daedalianopus.puzzle.piece.Shape;
+import com.gamesbykevin.daedalianopus.solver.BitboardSolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Create campaign style puzzles that are covered exactly by some of the pieces in PiecesHelper.<br>
+ * A random set of pieces is tiled into a random box, where locations along the outside can be left empty
+ * so the board has an irregular outline like the campaign levels.
+ * Each board is then kept only if it is one connected area and the solver finds few enough solutions.
+ * @author GOD
+ */
+public final class TilingGenerator implements Generator
+{
+    /**
+     * The largest board, the same as the largest campaign level
+     */
+    public static final int MAX_COLS = 20, MAX_ROWS = 10;
+
+    /**
+     * The default amount of work the solver can do on a candidate before it is thrown away
+     */
+    public static final long DEFAULT_NODE_LIMIT = 250000;
+
+    //the smallest part of the box that has to be covered by pieces
+    private static final float MIN_FILL = 0.8f;
+
+    //the most placements tried while tiling a box before a new box is picked
+    private static final long TILING_NODE_LIMIT = 2000;
+
+    //the smallest number of rows or columns
+    private static final int MIN_DIMENSION = 2;
+
+    //state of a location while tiling
+    private static final int EMPTY = -2, HOLE = -1;
+
+    //the range of the number of pieces
+    private final int minPieces, maxPieces;
+
+    //the most solutions a puzzle can have
+    private final int maxSolutions;
+
+    //the most nodes the solver can visit for each check
+    private long nodeLimit = DEFAULT_NODE_LIMIT;
+
+    //how many boxes were started, how many were tiled, how many checks were made, and how many checks reached the node limit
+    private final AtomicLong boards = new AtomicLong(), tilings = new AtomicLong(), checks = new AtomicLong(), exceeded = new AtomicLong();
+
+    /**
+     * Create a generator
+     * @param minPieces The fewest pieces a puzzle can have
+     * @param maxPieces The most pieces a puzzle can have, no more than the number of types in PiecesHelper
+     * @param maxSolutions The most solutions a puzzle can have, 1 for puzzles with a single solution
+     */
+    public TilingGenerator(final int minPieces, final int maxPieces, final int maxSolutions)
+    {
+        this.maxPieces = Math.min(maxPieces, PiecesHelper.Type.values().length);
+        this.minPieces = Math.max(1, Math.min(minPieces, this.maxPieces));
+        this.maxSolutions = maxSolutions;
+    }
+
+    /**
+     * Limit how much work the solver can do on each check, candidates that reach the limit are thrown away
+     * @param nodeLimit The maximum number of nodes, 0 for no limit
+     */
+    public void setNodeLimit(final long nodeLimit)
+    {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Create puzzles on all cores
+     * @param seed The seed of the puzzles, the same seed will create the same puzzles
+     * @param count The number of puzzles to create
+     * @return Array of puzzles, the puzzle at each index only depends on the seed and the index
+     */
+    public Blueprint[] generate(final long seed, final int count)
+    {
+        return Batch.generate(this, seed, count);
+    }
+
+    /**
+     * Create puzzles on the pool
+     * @param seed The seed of the puzzles, the same seed will create the same puzzles
+     * @param count The number of puzzles to create
+     * @param pool The pool that runs the tasks
+     * @return Array of puzzles, the puzzle at each index only depends on the seed and the index
+     */
+    public Blueprint[] generate(final long seed, final int count, final ForkJoinPool pool)
+    {
+        return Batch.generate(this, seed, count, pool);
+    }
+
+    /**
+     * Create the puzzle at the index
+     * @param seed The seed of the puzzles
+     * @param index The index of the puzzle
+     * @return The puzzle
+     */
+    @Override
+    public Blueprint create(final long seed, final long index)
+    {
+        return next(new Random(Seeds.mix(seed, index)));
+    }
+
+    /**
+     * Create a puzzle, candidates are checked until one has few enough solutions
+     * @param random Object used to make random decisions
+     * @return The puzzle
+     */
+    public Blueprint next(final Random random)
+    {
+        while (true)
+        {
+            final Blueprint blueprint = attempt(random);
+
+            if (blueprint != null)
+                return blueprint;
+        }
+    }
+
+    /**
+     * Tile a random box with random pieces and check the result
+     * @param random Object used to make random decisions
+     * @return The puzzle, null if the box could not be tiled or the board was not suitable
+     */
+    private Blueprint attempt(final Random random)
+    {
+        boards.incrementAndGet();
+
+        //pick the pieces
+        final PiecesHelper.Type[] types = PiecesHelper.Type.values();
+
+        for (int i = types.length - 1; i > 0; i--)
+        {
+            final int swap = random.nextInt(i + 1);
+            final PiecesHelper.Type tmp = types[i];
+            types[i] = types[swap];
+            types[swap] = tmp;
+        }
+
+        final int total = minPieces + random.nextInt(maxPieces - minPieces + 1);
+        final List<Shape> shapes = new ArrayList<>(total);
+
+        int area = 0;
+
+        for (int i = 0; i < total; i++)
+        {
+            shapes.add(PiecesHelper.getShape(types[i]));
+            area += shapes.get(i).getSize();
+        }
+
+        //pick a box the pieces will nearly fill
+        int cols = 0, rows = 0;
+
+        while (rows == 0)
+        {
+            final int tmpRows = MIN_DIMENSION + random.nextInt(MAX_ROWS - MIN_DIMENSION + 1);
+            final int tmpCols = Math.max(MIN_DIMENSION, (area + tmpRows - 1) / tmpRows) + random.nextInt(2);
+
+            if (tmpCols <= MAX_COLS && area >= tmpCols * tmpRows * MIN_FILL)
+            {
+                cols = tmpCols;
+                rows = tmpRows;
+            }
+        }
+
+        final Tiling tiling = new Tiling(random, shapes, cols, rows, (cols * rows) - area);
+
+        if (!tiling.tile(0))
+            return null;
+
+        tilings.incrementAndGet();
+
+        //a hole can split the board, the campaign levels are always one area
+        if (!isConnected(tiling.labels, cols, rows))
+            return null;
+
+        //remove rows and columns that were left empty
+        final Blueprint trimmed = trim(tiling.labels, cols, rows, total);
+
+        //stop counting once there is one more solution than allowed
+        final BitboardSolver solver = new BitboardSolver(trimmed.getBoard(), shapes);
+        solver.setNodeLimit(nodeLimit);
+
+        final long solutions = solver.count(maxSolutions + 1);
+
+        checks.incrementAndGet();
+
+        //we can't tell how many solutions it has in time
+        if (solver.hasExceeded())
+        {
+            exceeded.incrementAndGet();
+            return null;
+        }
+
+        if (solutions > maxSolutions)
+            return null;
+
+        return new Blueprint(trimmed.getCols(), trimmed.getRows(), trimmed.getLabels(), total, solutions);
+    }
+
+    /**
+     * Check that every location with a piece can be reached from every other
+     * @param labels The piece of each location, -1 if there is none
+     * @param cols The number of columns
+     * @param rows The number of rows
+     * @return true if the pieces make one connected area, false otherwise
+     */
+    private static boolean isConnected(final int[] labels, final int cols, final int rows)
+    {
+        final int count = cols * rows;
+        final boolean[] visited = new boolean[count];
+        final int[] stack = new int[count];
+
+        int size = 0, reached = 0, filled = 0;
+
+        for (int index = 0; index < count; index++)
+        {
+            if (labels[index] < 0)
+                continue;
+
+            //start from the first location with a piece
+            if (filled++ == 0)
+            {
+                visited[index] = true;
+                stack[size++] = index;
+            }
+        }
+
+        while (size > 0)
+        {
+            final int index = stack[--size];
+            final int col = index % cols;
+            final int row = index / cols;
+
+            reached++;
+
+            for (int direction = 0; direction < 4; direction++)
+            {
+                final int nextCol = col + ((direction == 0) ? -1 : (direction == 1) ? 1 : 0);
+                final int nextRow = row + ((direction == 2) ? -1 : (direction == 3) ? 1 : 0);
+
+                if (nextCol < 0 || nextCol >= cols || nextRow < 0 || nextRow >= rows)
+                    continue;
+
+                final int next = (nextRow * cols) + nextCol;
+
+                if (!visited[next] && labels[next] >= 0)
+                {
+                    visited[next] = true;
+                    stack[size++] = next;
+                }
+            }
+        }
+
+        return (reached == filled);
+    }
+
+    /**
+     * Remove the rows and columns on the outside that have no pieces
+     * @param labels The piece of each location, -1 if there is none
+     * @param cols The number of columns
+     * @param rows The number of rows
+     * @param total The number of pieces
+     * @return The puzzle with the empty rows and columns removed
+     */
+    private static Blueprint trim(final int[] labels, final int cols, final int rows, final int total)
+    {
+        int minCol = cols, maxCol = -1, minRow = rows, maxRow = -1;
+
+        for (int index = 0; index < labels.length; index++)
+        {
+            if (labels[index] < 0)
+                continue;
+
+            minCol = Math.min(minCol, index % cols);
+            maxCol = Math.max(maxCol, index % cols);
+            minRow = Math.min(minRow, index / cols);
+            maxRow = Math.max(maxRow, index / cols);
+        }
+
+        final int newCols = maxCol - minCol + 1;
+        final int newRows = maxRow - minRow + 1;
+        final int[] trimmed = new int[newCols * newRows];
+
+        for (int row = 0; row < newRows; row++)
+        {
+            for (int col = 0; col < newCols; col++)
+            {
+                trimmed[(row * newCols) + col] = labels[((row + minRow) * cols) + col + minCol];
+            }
+        }
+
+        return new Blueprint(newCols, newRows, trimmed, total, -1);
+    }
+
+    /**
+     * Get the number of boxes started
+     * @return The number of boxes
+     */
+    public long getBoards()
+    {
+        return this.boards.get();
+    }
+
+    /**
+     * Get the number of boxes that were tiled
+     * @return The number of tilings
+     */
+    public long getTilings()
+    {
+        return this.tilings.get();
+    }
+
+    /**
+     * Get the number of times the solver checked a board
+     * @return The number of checks
+     */
+    public long getChecks()
+    {
+        return this.checks.get();
+    }
+
+    /**
+     * Get the number of boards thrown away because the solver reached the node limit
+     * @return The number of boards
+     */
+    public long getExceeded()
+    {
+        return this.exceeded.get();
+    }
+
+    /**
+     * Random depth first tiling of a box.<br>
+     * The first empty location in row-major order is always covered next, either by the first small piece of
+     * an orientation or by a hole. A hole is only allowed on the outside of the box or next to another hole,
+     * so every hole is connected to the outside and the board has no gaps inside it.
+     */
+    private static final class Tiling
+    {
+        private final Random random;
+        private final List<Shape> shapes;
+        private final int cols, rows;
+
+        //the piece of each location, HOLE if left empty, EMPTY if not decided yet
+        private final int[] labels;
+
+        //the pieces already placed
+        private final boolean[] used;
+
+        //the number of locations that can still be left empty
+        private int holes;
+
+        //the number of placements tried
+        private long nodes;
+
+        private Tiling(final Random random, final List<Shape> shapes, final int cols, final int rows, final int holes)
+        {
+            this.random = random;
+            this.shapes = shapes;
+            this.cols = cols;
+            this.rows = rows;
+            this.holes = holes;
+            this.labels = new int[cols * rows];
+            this.used = new boolean[shapes.size()];
+
+            Arrays.fill(labels, EMPTY);
+        }
+
+        /**
+         * Cover every location from the index onward
+         * @param index The location to start searching for the next empty location
+         * @return true if the box was tiled, false if it can't be or the node limit was reached
+         */
+        private boolean tile(int index)
+        {
+            while (index < labels.length && labels[index] != EMPTY)
+            {
+                index++;
+            }
+
+            //every location is covered, and the area guarantees every piece was used
+            if (index == labels.length)
+                return true;
+
+            if (++nodes > TILING_NODE_LIMIT)
+                return false;
+
+            final int col = index % cols;
+            final int row = index / cols;
+
+            //the pieces and orientations that fit here, packed as (piece * 8) + orientation
+            final int[] candidates = new int[shapes.size() * 8];
+
+            int count = 0;
+
+            for (int piece = 0; piece < shapes.size(); piece++)
+            {
+                if (used[piece])
+                    continue;
+
+                for (int orientation = 0; orientation < shapes.get(piece).getOrientationCount(); orientation++)
+                {
+                    if (fits(piece, orientation, col, row))
+                        candidates[count++] = (piece * 8) + orientation;
+                }
+            }
+
+            //try the placements in random order
+            for (int i = count - 1; i > 0; i--)
+            {
+                final int swap = random.nextInt(i + 1);
+                final int tmp = candidates[i];
+                candidates[i] = candidates[swap];
+                candidates[swap] = tmp;
+            }
+
+            final boolean hole = (holes > 0 && canBeHole(col, row));
+
+            //spread the holes out by sometimes trying one before any piece
+            final boolean holeFirst = (hole && random.nextInt(getEmptyCount(index)) < holes);
+
+            if (holeFirst && tileHole(index))
+                return true;
+
+            for (int i = 0; i < count; i++)
+            {
+                final int piece = candidates[i] / 8;
+                final int orientation = candidates[i] % 8;
+
+                place(piece, orientation, col, row, piece);
+                used[piece] = true;
+
+                if (tile(index + 1))
+                    return true;
+
+                place(piece, orientation, col, row, EMPTY);
+                used[piece] = false;
+
+                if (nodes > TILING_NODE_LIMIT)
+                    return false;
+            }
+
+            return (hole && !holeFirst && tileHole(index));
+        }
+
+        /**
+         * Leave the location empty and continue tiling
+         * @param index The location
+         * @return true if the box was tiled, false otherwise
+         */
+        private boolean tileHole(final int index)
+        {
+            labels[index] = HOLE;
+            holes--;
+
+            if (tile(index + 1))
+                return true;
+
+            labels[index] = EMPTY;
+            holes++;
+
+            return false;
+        }
+
+        /**
+         * Can the location be left empty without creating a gap inside the board
+         * @param col Column
+         * @param row Row
+         * @return true if the location is on the outside or next to a hole
+         */
+        private boolean canBeHole(final int col, final int row)
+        {
+            if (col == 0 || row == 0 || col == cols - 1 || row == rows - 1)
+                return true;
+
+            return (labels[(row * cols) + col - 1] == HOLE || labels[((row - 1) * cols) + col] == HOLE);
+        }
+
+        /**
+         * Get the number of locations not decided yet
+         * @param index The first empty location
+         * @return The number of empty locations
+         */
+        private int getEmptyCount(final int index)
+        {
+            int count = 0;
+
+            for (int i = index; i < labels.length; i++)
+            {
+                if (labels[i] == EMPTY)
+                    count++;
+            }
+
+            return count;
+        }
+
+        /**
+         * Check if the orientation can cover the location with its first small piece
+         * @param piece The piece
+         * @param orientation The orientation
+         * @param col Column of the location
+         * @param row Row of the location
+         * @return true if every small piece is inside the box on an empty location
+         */
+        private boolean fits(final int piece, final int orientation, final int col, final int row)
+        {
+            final Shape shape = shapes.get(piece);
+
+            //the first small piece is always on the top row of the orientation
+            final int startCol = col - shape.getCol(orientation, 0);
+
+            if (startCol < 0 || startCol + shape.getWidth(orientation) > cols || row + shape.getHeight(orientation) > rows)
+                return false;
+
+            for (int z = 0; z < shape.getSize(); z++)
+            {
+                final int index = ((row + shape.getRow(orientation, z)) * cols) + startCol + shape.getCol(orientation, z);
+
+                if (labels[index] != EMPTY)
+                    return false;
+            }
+
+            return true;
+        }
+
+        /**
+         * Mark the locations of a placement
+         * @param piece The piece
+         * @param orientation The orientation
+         * @param col Column of the location covered by the first small piece
+         * @param row Row of the location covered by the first small piece
+         * @param label The value to store at each location
+         */
+        private void place(final int piece, final int orientation, final int col, final int row, final int label)
+        {
+            final Shape shape = shapes.get(piece);
+            final int startCol = col - shape.getCol(orientation, 0);
+
+            for (int z = 0; z < shape.getSize(); z++)
+            {
+                labels[((row + shape.getRow(orientation, z)) * cols) + startCol + shape.getCol(orientation, z)] = label;
+            }
+        }
+    }
+}
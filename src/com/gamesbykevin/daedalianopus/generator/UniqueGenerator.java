@@ -0,0 +1,418 @@
+package com.gamesbykevin.daedalianopus.generator;
+
+import com.gamesbykevin.daedalianopus.puzzle.BitBoard;
+import com.gamesbykevin.daedalianopus.puzzle.PuzzleHelper;
+import com.gamesbykevin.daedalianopus.puzzle.piece.Shape;
+import com.gamesbykevin.daedalianopus.solver.BitboardSolver;
+import com.gamesbykevin.daedalianopus.solver.Placement;
+import com.gamesbykevin.daedalianopus.solver.Solution;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Create random puzzles that have a single solution, or no more than a maximum number of solutions.<br>
+ * Each candidate is checked by a solver that stops once it finds one solution more than allowed.
+ * When a candidate has too many solutions the pieces where the first two solutions disagree are cut again,
+ * so the rest of the board is kept and only the ambiguous part is changed before checking again.
+ * On larger boards every pair of neighboring pieces is checked first, if the two pieces can fill the locations
+ * they cover another way the board can't be unique, so they are cut again before the whole board is searched.
+ * Many candidates are checked at the same time on all cores.<br>
+ * The whole board search decides the speed, on one core about 6000 Easy, 50 Medium and only 0.15 Hard puzzles
+ * are created each second, so unique Hard puzzles have to be created ahead of time instead of when they are needed.
+ * @author GOD
+ */
+public final class UniqueGenerator implements Generator
+{
+    /**
+     * The default amount of work the solver can do on a candidate before it is thrown away
+     */
+    public static final long DEFAULT_NODE_LIMIT = 250000;
+
+    //how many times a board is cut again before starting over
+    private static final int MAX_REPAIRS = 12;
+
+    //how many times neighboring pieces are cut again before starting over
+    private static final int MAX_PAIR_REPAIRS = 200;
+
+    //the fewest pieces a board needs before the neighboring pieces are checked, smaller boards are searched faster
+    private static final int PAIR_CHECK_PIECES = 8;
+
+    //the size of the puzzles
+    private final PuzzleHelper.Difficulty difficulty;
+
+    //the most solutions a puzzle can have
+    private final int maxSolutions;
+
+    //the most nodes the solver can visit for each check
+    private long nodeLimit = DEFAULT_NODE_LIMIT;
+
+    //how many boards were started, how many checks were made, and how many checks reached the node limit
+    private final AtomicLong boards = new AtomicLong(), checks = new AtomicLong(), exceeded = new AtomicLong();
+
+    //how many pairs of neighboring pieces were cut again
+    private final AtomicLong pairs = new AtomicLong();
+
+    /**
+     * Create a generator
+     * @param difficulty The difficulty, which will determine the size of the puzzles
+     * @param maxSolutions The most solutions a puzzle can have, 1 for puzzles with a single solution
+     */
+    public UniqueGenerator(final PuzzleHelper.Difficulty difficulty, final int maxSolutions)
+    {
+        this.difficulty = difficulty;
+        this.maxSolutions = maxSolutions;
+    }
+
+    /**
+     * Limit how much work the solver can do on each check, candidates that reach the limit are thrown away
+     * @param nodeLimit The maximum number of nodes, 0 for no limit
+     */
+    public void setNodeLimit(final long nodeLimit)
+    {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Create puzzles on all cores
+     * @param seed The seed of the puzzles, the same seed will create the same puzzles
+     * @param count The number of puzzles to create
+     * @return Array of puzzles, the puzzle at each index only depends on the seed and the index
+     */
+    public Blueprint[] generate(final long seed, final int count)
+    {
+        return Batch.generate(this, seed, count);
+    }
+
+    /**
+     * Create puzzles on the pool
+     * @param seed The seed of the puzzles, the same seed will create the same puzzles
+     * @param count The number of puzzles to create
+     * @param pool The pool that runs the tasks
+     * @return Array of puzzles, the puzzle at each index only depends on the seed and the index
+     */
+    public Blueprint[] generate(final long seed, final int count, final ForkJoinPool pool)
+    {
+        return Batch.generate(this, seed, count, pool);
+    }
+
+    /**
+     * Create the puzzle at the index
+     * @param seed The seed of the puzzles
+     * @param index The index of the puzzle
+     * @return The puzzle
+     */
+    @Override
+    public Blueprint create(final long seed, final long index)
+    {
+        return next(new Random(Seeds.mix(seed, index)));
+    }
+
+    /**
+     * Create a puzzle, candidates are checked until one has few enough solutions
+     * @param random Object used to make random decisions
+     * @return The puzzle
+     */
+    public Blueprint next(final Random random)
+    {
+        while (true)
+        {
+            final Blueprint blueprint = attempt(random);
+
+            if (blueprint != null)
+                return blueprint;
+        }
+    }
+
+    /**
+     * Create a board and cut it again where it is ambiguous until it has few enough solutions
+     * @param random Object used to make random decisions
+     * @return The puzzle, null if the board could not be made unique
+     */
+    private Blueprint attempt(final Random random)
+    {
+        boards.incrementAndGet();
+
+        //pick random size for our puzzle
+        final int cols = PuzzleHelper.getRandomSize(random, difficulty);
+        final int rows = PuzzleHelper.getRandomSize(random, difficulty);
+        final int count = cols * rows;
+
+        //every location can be part of a piece
+        final BitBoard locations = new BitBoard(cols, rows);
+
+        for (int index = 0; index < count; index++)
+        {
+            locations.set(index);
+        }
+
+        int[] labels = new int[count];
+        int total = PuzzleHelper.partition(random, locations, labels);
+
+        int repair = 0, pair = 0;
+
+        while (repair <= MAX_REPAIRS && total > 0)
+        {
+            final List<Shape> shapes = PuzzleHelper.createShapes(labels, cols, rows, total);
+
+            //two neighboring pieces that can be swapped are much cheaper to find than a second solution
+            if (total >= PAIR_CHECK_PIECES)
+            {
+                final boolean[] cut = getAmbiguousPair(labels, cols, rows, total, shapes);
+
+                if (cut != null)
+                {
+                    if (pair++ >= MAX_PAIR_REPAIRS)
+                        return null;
+
+                    pairs.incrementAndGet();
+                    total = cut(random, labels, cols, rows, total, cut);
+                    continue;
+                }
+            }
+
+            locations.clear();
+
+            for (int index = 0; index < count; index++)
+            {
+                if (labels[index] >= 0)
+                    locations.set(index);
+            }
+
+            //stop counting once there is one more solution than allowed
+            final BitboardSolver solver = new BitboardSolver(locations, shapes);
+            solver.setNodeLimit(nodeLimit);
+
+            final long solutions = solver.count(maxSolutions + 1);
+
+            checks.incrementAndGet();
+
+            //we can't tell how many solutions it has in time
+            if (solver.hasExceeded())
+            {
+                exceeded.incrementAndGet();
+                return null;
+            }
+
+            if (solutions <= maxSolutions)
+                return new Blueprint(cols, rows, labels, total, solutions);
+
+            //cut the pieces again where the solutions disagree
+            total = repair(random, labels, cols, rows, total, shapes, solver.getSolution(), solver.getSecondSolution());
+            repair++;
+        }
+
+        return null;
+    }
+
+    /**
+     * Find two neighboring pieces that can fill the locations they cover in more than one way
+     * @param labels The piece of each location
+     * @param cols The number of columns
+     * @param rows The number of rows
+     * @param total The number of pieces
+     * @param shapes The shape of each piece
+     * @return The pieces to cut again, null if every pair of neighboring pieces only fits one way
+     */
+    private static boolean[] getAmbiguousPair(final int[] labels, final int cols, final int rows, final int total, final List<Shape> shapes)
+    {
+        //the pairs already checked
+        final boolean[] checked = new boolean[total * total];
+
+        for (int index = 0; index < labels.length; index++)
+        {
+            if (labels[index] < 0)
+                continue;
+
+            //the neighbor to the east and to the south
+            for (int i = 0; i < 2; i++)
+            {
+                final int neighbor = (i == 0) ? ((index % cols < cols - 1) ? index + 1 : -1) : ((index + cols < labels.length) ? index + cols : -1);
+
+                if (neighbor < 0 || labels[neighbor] < 0 || labels[neighbor] == labels[index])
+                    continue;
+
+                final int piece1 = Math.min(labels[index], labels[neighbor]);
+                final int piece2 = Math.max(labels[index], labels[neighbor]);
+
+                if (checked[(piece1 * total) + piece2])
+                    continue;
+
+                checked[(piece1 * total) + piece2] = true;
+
+                //the locations covered by both pieces
+                final BitBoard locations = new BitBoard(cols, rows);
+
+                for (int z = 0; z < labels.length; z++)
+                {
+                    if (labels[z] == piece1 || labels[z] == piece2)
+                        locations.set(z);
+                }
+
+                final BitboardSolver solver = new BitboardSolver(locations, Arrays.asList(shapes.get(piece1), shapes.get(piece2)));
+
+                if (solver.count(2) > 1)
+                {
+                    final boolean[] cut = new boolean[total];
+                    cut[piece1] = true;
+                    cut[piece2] = true;
+                    return cut;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Cut the pieces that cover a location where two solutions place different pieces
+     * @param random Object used to make random decisions
+     * @param labels The piece of each location, this will be updated
+     * @param cols The number of columns
+     * @param rows The number of rows
+     * @param total The number of pieces
+     * @param shapes The shape of each piece
+     * @param first The first solution
+     * @param second The second solution
+     * @return The new number of pieces
+     */
+    private static int repair(final Random random, final int[] labels, final int cols, final int rows, final int total, final List<Shape> shapes, final Solution first, final Solution second)
+    {
+        final int[] pieces1 = getPieces(first, shapes, cols, rows);
+        final int[] pieces2 = getPieces(second, shapes, cols, rows);
+
+        //the pieces that will be cut again
+        final boolean[] cut = new boolean[total];
+
+        for (int index = 0; index < labels.length; index++)
+        {
+            if (labels[index] >= 0 && pieces1[index] != pieces2[index])
+                cut[labels[index]] = true;
+        }
+
+        return cut(random, labels, cols, rows, total, cut);
+    }
+
+    /**
+     * Cut the pieces again, the other pieces are kept
+     * @param random Object used to make random decisions
+     * @param labels The piece of each location, this will be updated
+     * @param cols The number of columns
+     * @param rows The number of rows
+     * @param total The number of pieces
+     * @param cut The pieces that will be cut again
+     * @return The new number of pieces
+     */
+    private static int cut(final Random random, final int[] labels, final int cols, final int rows, final int total, final boolean[] cut)
+    {
+        //the locations of those pieces
+        final BitBoard locations = new BitBoard(cols, rows);
+
+        //the new label of each piece that is kept
+        final int[] kept = new int[total];
+
+        int count = 0;
+
+        for (int label = 0; label < total; label++)
+        {
+            kept[label] = (cut[label]) ? -1 : count++;
+        }
+
+        for (int index = 0; index < labels.length; index++)
+        {
+            if (labels[index] >= 0 && cut[labels[index]])
+                locations.set(index);
+        }
+
+        final int[] groups = new int[labels.length];
+        final int added = PuzzleHelper.partition(random, locations, groups);
+
+        for (int index = 0; index < labels.length; index++)
+        {
+            if (labels[index] < 0)
+                continue;
+
+            if (cut[labels[index]])
+            {
+                //locations that are left in a group too small for a piece are no longer part of the puzzle
+                labels[index] = (groups[index] >= 0) ? count + groups[index] : -1;
+            }
+            else
+            {
+                labels[index] = kept[labels[index]];
+            }
+        }
+
+        return count + added;
+    }
+
+    /**
+     * Get the piece at every location of a solution
+     * @param solution The solution
+     * @param shapes The shape of each piece
+     * @param cols The number of columns
+     * @param rows The number of rows
+     * @return The piece of each location in row-major order, -1 where there is no piece
+     */
+    private static int[] getPieces(final Solution solution, final List<Shape> shapes, final int cols, final int rows)
+    {
+        final int[] pieces = new int[cols * rows];
+
+        Arrays.fill(pieces, -1);
+
+        for (int i = 0; i < solution.getPlacements().size(); i++)
+        {
+            final Placement placement = solution.getPlacements().get(i);
+            final Shape shape = shapes.get(placement.getPiece());
+
+            for (int z = 0; z < shape.getSize(); z++)
+            {
+                final int col = placement.getCol() + shape.getCol(placement.getOrientation(), z);
+                final int row = placement.getRow() + shape.getRow(placement.getOrientation(), z);
+
+                pieces[(row * cols) + col] = placement.getPiece();
+            }
+        }
+
+        return pieces;
+    }
+
+    /**
+     * Get the number of boards started
+     * @return The number of boards, each may have been checked several times
+     */
+    public long getBoards()
+    {
+        return this.boards.get();
+    }
+
+    /**
+     * Get the number of times the solver checked a board
+     * @return The number of checks
+     */
+    public long getChecks()
+    {
+        return this.checks.get();
+    }
+
+    /**
+     * Get the number of times two neighboring pieces that could be swapped were cut again
+     * @return The number of pairs
+     */
+    public long getPairs()
+    {
+        return this.pairs.get();
+    }
+
+    /**
+     * Get the number of boards thrown away because the solver reached the node limit
+     * @return The number of boards
+     */
+    public long getExceeded()
+    {
+        return this.exceeded.get();
+    }
+}
@@ -260,6 +260,9 @@ public class Intermission implements Disposable, IElement
         if (!isActive())
             return;
         
+        //the player and buildings are animated, and the game is drawn again when this finishes
+        engine.getDirtyRegion().markAll();
+        
         //do we reset
         if (reset)
         {
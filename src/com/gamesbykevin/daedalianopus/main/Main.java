@@ -1,6 +1,10 @@
 package com.gamesbykevin.daedalianopus.main;
 
 import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferStrategy;
+import java.awt.image.VolatileImage;
+import java.util.concurrent.locks.LockSupport;
 import javax.swing.*;
 
 import com.gamesbykevin.framework.resources.Disposable;
@@ -10,11 +14,20 @@ import com.gamesbykevin.daedalianopus.shared.Shared;
 
 public final class Main extends Thread implements Disposable
 {
-    //image where all game/menu elements will be written to
-    private Image bufferedImage;
+    //image where all game/menu elements will be written to, kept in video memory and the same size as the window
+    private VolatileImage bufferedImage;
     
-    //Graphics object used to draw buffered image
-    private Graphics bufferedImageGraphics;
+    //the component the game is drawn on, drawn by this thread and not by swing
+    private Canvas canvas;
+    
+    //the buffers the canvas flips between so a frame is never seen half drawn
+    private BufferStrategy strategy;
+    
+    //how many buffers the canvas flips between
+    private static final int BUFFERS = 2;
+    
+    //scales the game to the size of the window, calculated once each time the window changes size
+    private AffineTransform transform = new AffineTransform();
     
     //our dimensions for the original screen window
     private Rectangle originalSizeWindow;
@@ -34,21 +47,30 @@ public final class Main extends Thread implements Disposable
     //need double for accuracy
     private double nanoSecondsPerUpdate;
     
+    //the shortest time between frames drawn, based on the refresh rate of the display
+    private long nanoSecondsPerFrame;
+    
+    //the refresh rate used when the display doesn't report one
+    private static final int DEFAULT_REFRESH_RATE = 60;
+    
+    //the most updates run before drawing, any time still behind after that is dropped
+    private static final int MAX_UPDATES_PER_FRAME = 5;
+    
     //reference to our applet
     private JApplet applet;
     
     //reference to our panel
     private JPanel panel;
     
-    //cache this graphics object so we aren't constantly creating it
-    private Graphics graphics;
-    
-    //count how many updates
-    private int updates = 0;
+    //count how many updates and frames
+    private int updates = 0, frames = 0;
     
     //time used to track updates per second
     private long time = System.nanoTime();
     
+    //the area of the screen drawn in the current frame
+    private final Rectangle area = new Rectangle();
+    
     public Main(final int ups, final JApplet applet)
     {
         this(ups);
@@ -76,6 +98,33 @@ public final class Main extends Thread implements Disposable
 
         //duration of each update in nanoseconds
         this.nanoSecondsPerUpdate = NANO_SECONDS_PER_SECOND / ups;
+        
+        //duration of each frame in nanoseconds
+        this.nanoSecondsPerFrame = NANO_SECONDS_PER_SECOND / getRefreshRate();
+    }
+    
+    /**
+     * Get the refresh rate of the display
+     * @return The number of times the display is refreshed per second
+     */
+    private static int getRefreshRate()
+    {
+        try
+        {
+            if (!GraphicsEnvironment.isHeadless())
+            {
+                final int rate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+                
+                if (rate != DisplayMode.REFRESH_RATE_UNKNOWN)
+                    return rate;
+            }
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+        
+        return DEFAULT_REFRESH_RATE;
     }
     
     /**
@@ -90,17 +139,14 @@ public final class Main extends Thread implements Disposable
             bufferedImage = null;
         }
         
-        if (bufferedImageGraphics != null)
+        if (strategy != null)
         {
-            bufferedImageGraphics.dispose();
-            bufferedImageGraphics = null;
+            strategy.dispose();
+            strategy = null;
         }
         
-        if (graphics != null)
-        {
-            graphics.dispose();
-            graphics = null;
-        }
+        canvas = null;
+        transform = null;
         
         if (engine != null)
         {
@@ -132,19 +178,47 @@ public final class Main extends Thread implements Disposable
     {
         engine = new Engine(this);
         
+        //the canvas covers the container, swing only tells us when it has to be drawn again
+        canvas = new Canvas()
+        {
+            @Override
+            public void paint(final Graphics graphics)
+            {
+                //the window was covered or resized, the game thread will draw it
+                redraw();
+            }
+            
+            @Override
+            public void update(final Graphics graphics)
+            {
+                paint(graphics);
+            }
+        };
+        
+        canvas.setPreferredSize(new Dimension(originalSizeWindow.width, originalSizeWindow.height));
+        canvas.setBackground(Color.BLACK);
+        
         //now that engine is created apply listeners so we can detect key/mouse input
         if (applet != null)
         {
+            applet.add(canvas, BorderLayout.CENTER);
             applet.addKeyListener(engine);
             applet.addMouseMotionListener(engine);
             applet.addMouseListener(engine);
         }
         else
         {
+            panel.setLayout(new BorderLayout());
+            panel.add(canvas, BorderLayout.CENTER);
             panel.addKeyListener(engine);
             panel.addMouseMotionListener(engine);
             panel.addMouseListener(engine);
         }
+        
+        //the canvas is on top of the container so it receives the input
+        canvas.addKeyListener(engine);
+        canvas.addMouseMotionListener(engine);
+        canvas.addMouseListener(engine);
     }
     
     @Override
@@ -159,6 +233,9 @@ public final class Main extends Thread implements Disposable
         //set the current time
         time = previous;
         
+        //the earliest time the next frame can be drawn
+        long nextFrame = previous;
+        
         //variable to keep fps constant
         double delta = 0;
         
@@ -167,7 +244,7 @@ public final class Main extends Thread implements Disposable
             try
             {
                 //get the current time
-                final long now = System.nanoTime();
+                long now = System.nanoTime();
                 
                 //update these variables
                 delta += ((now - previous) / nanoSecondsPerUpdate);
@@ -175,28 +252,59 @@ public final class Main extends Thread implements Disposable
                 //set the current time as the last run
                 previous = now;
                 
-                while(delta >= 1)
+                //the number of updates since the last frame
+                int count = 0;
+                
+                while (delta >= 1 && count < MAX_UPDATES_PER_FRAME)
                 {
                     //update game
                     engine.update(this);
-
-                    //render image
-                    renderImage();
-                    
-                    //draw image
-                    drawScreen();
                     
                     //add to our counter
                     updates++;
+                    count++;
                     
                     //deduct from delta
                     delta--;
+                }
+                
+                //if we are still behind, skip the missed updates instead of falling further behind
+                if (delta >= 1)
+                    delta -= Math.floor(delta);
+                
+                //has the game changed since the last frame was drawn
+                final boolean dirty = engine.getDirtyRegion().isDirty();
+                
+                //draw once after the game has changed, but no more than once per display refresh
+                if (dirty && now >= nextFrame && engine.getDirtyRegion().take(area))
+                {
+                    //render the part of the image that changed and show it
+                    drawFrame(area);
+                    
+                    //add to our counter
+                    frames++;
                     
-                    //check if it is time to display ups
-                    checkCount();
+                    //stay in step with the display, unless drawing fell a whole frame behind
+                    nextFrame += nanoSecondsPerFrame;
+                    
+                    if (nextFrame <= now)
+                        nextFrame = now + nanoSecondsPerFrame;
                 }
                 
-                Thread.sleep(0, 10);
+                //check if it is time to display ups
+                checkCount();
+                
+                //wait until the next update is due, or the next frame can be drawn
+                now = System.nanoTime();
+                
+                long wait = (long)((1 - delta) * nanoSecondsPerUpdate) - (now - previous);
+                
+                //nothing has to be drawn until the game changes
+                if (dirty)
+                    wait = Math.min(wait, nextFrame - now);
+                
+                if (wait > 0)
+                    LockSupport.parkNanos(wait);
             }
             catch(Exception e)
             {
@@ -219,11 +327,12 @@ public final class Main extends Thread implements Disposable
                 //add 1 second to timer
                 time += NANO_SECONDS_PER_SECOND;
 
-                //display updates per second
-                System.out.println("UPS = " + updates);
+                //display updates and frames per second
+                System.out.println("UPS = " + updates + ", FPS = " + frames);
 
-                //reset update counter
+                //reset counters
                 updates = 0;
+                frames = 0;
             }
         }
     }
@@ -250,18 +359,27 @@ public final class Main extends Thread implements Disposable
     }
     
     /**
-     * Create buffered Image
+     * Create buffered Image, or create it again if it no longer works with the display
+     * @return true if the image is new or lost what was drawn on it, false if it is unchanged
      */
-    private void createBufferedImage()
+    private boolean validateBufferedImage()
     {
-        if (applet != null)
-        {
-            bufferedImage = applet.createImage(originalSizeWindow.width, originalSizeWindow.height);
-        }
-        else
+        if (bufferedImage != null)
         {
-            bufferedImage = panel.createImage(originalSizeWindow.width, originalSizeWindow.height);
+            final int status = bufferedImage.validate(canvas.getGraphicsConfiguration());
+            
+            if (status == VolatileImage.IMAGE_OK)
+                return false;
+            if (status == VolatileImage.IMAGE_RESTORED)
+                return true;
+            
+            //the image can't be used on this display any more
+            bufferedImage.flush();
         }
+        
+        bufferedImage = canvas.createVolatileImage(currentWindow.width, currentWindow.height);
+        
+        return true;
     }
     
     /**
@@ -278,7 +396,12 @@ public final class Main extends Thread implements Disposable
      */
     public void setFullScreen()
     {
-        if (applet != null)
+        //the frame is drawn on the canvas, so the image is the size of the canvas
+        if (canvas != null)
+        {
+            fullSizeWindow = new Rectangle(0, 0, canvas.getWidth(), canvas.getHeight());
+        }
+        else if (applet != null)
         {
             fullSizeWindow = new Rectangle(0, 0, applet.getWidth(), applet.getHeight());
         }
@@ -290,8 +413,35 @@ public final class Main extends Thread implements Disposable
         //set the current window size
         currentWindow = new Rectangle(fullSizeWindow);
         
-        //since full screen switched on/off create a new graphics object
-        createGraphicsObject();
+        //the game is written already scaled, so showing it is a copy without scaling
+        transform = AffineTransform.getScaleInstance(
+            (double)currentWindow.width / originalSizeWindow.width, 
+            (double)currentWindow.height / originalSizeWindow.height);
+        
+        //the image and buffers have to be created again at the new size
+        if (bufferedImage != null)
+        {
+            bufferedImage.flush();
+            bufferedImage = null;
+        }
+        
+        if (strategy != null)
+        {
+            strategy.dispose();
+            strategy = null;
+        }
+        
+        //the whole window has to be drawn at the new size
+        redraw();
+    }
+    
+    /**
+     * Draw the whole screen again on the next frame, for when the window was covered or resized
+     */
+    public void redraw()
+    {
+        if (engine != null)
+            engine.getDirtyRegion().markAll();
     }
     
     /**
@@ -303,29 +453,90 @@ public final class Main extends Thread implements Disposable
         return (long)nanoSecondsPerUpdate;
     }
     
+    /**
+     * Render the part of the image that changed and show the image in the window.<br>
+     * The image and the buffers are in video memory which can be lost at any time, for example when the
+     * display mode changes, so the frame is drawn again until nothing was lost.
+     * 
+     * @param area The part of the image that changed
+     * @throws Exception 
+     */
+    private void drawFrame(final Rectangle area) throws Exception
+    {
+        //the canvas can't be drawn on until it is displayed
+        if (canvas == null || !canvas.isDisplayable())
+        {
+            redraw();
+            return;
+        }
+        
+        //make sure current window dimensions are set, and follow the canvas when it is resized
+        if (currentWindow == null || currentWindow.width != canvas.getWidth() || currentWindow.height != canvas.getHeight())
+            setFullScreen();
+        
+        //nothing can be drawn until the canvas has a size
+        if (currentWindow.isEmpty())
+        {
+            redraw();
+            return;
+        }
+        
+        if (strategy == null)
+        {
+            canvas.createBufferStrategy(BUFFERS);
+            strategy = canvas.getBufferStrategy();
+        }
+        
+        do
+        {
+            //a new or restored image has nothing on it
+            if (validateBufferedImage())
+                area.setBounds(originalSizeWindow);
+            
+            //render image
+            renderImage(area);
+            
+            //if the image was lost while rendering, render all of it again
+            if (bufferedImage.contentsLost())
+            {
+                area.setBounds(originalSizeWindow);
+                continue;
+            }
+            
+            //draw image
+            drawScreen();
+        }
+        while (bufferedImage.contentsLost());
+    }
+    
     /**
      * Writes all game/menu elements in our 
      * engine to our single bufferedImage.
      * 
+     * @param area The part of the image that changed, nothing outside of it is written
      * @throws Exception 
      */
-    private void renderImage() throws Exception
+    private void renderImage(final Rectangle area) throws Exception
     {
-        if (bufferedImage != null)
+        final Graphics2D bufferedImageGraphics = bufferedImage.createGraphics();
+        
+        try
         {
-            if (bufferedImageGraphics == null)
-                bufferedImageGraphics = bufferedImage.getGraphics();
+            //the elements are written at the original size and scaled to the window
+            bufferedImageGraphics.transform(transform);
             
+            //only the changed area is written, everything else keeps what was drawn before
+            bufferedImageGraphics.setClip(area.x, area.y, area.width, area.height);
+
             //background by itself will be a black rectangle
             bufferedImageGraphics.setColor(Color.BLACK);
-            bufferedImageGraphics.fillRect(0, 0, Shared.ORIGINAL_WIDTH, Shared.ORIGINAL_HEIGHT);
+            bufferedImageGraphics.fillRect(area.x, area.y, area.width, area.height);
 
             engine.render(bufferedImageGraphics);
         }
-        else
+        finally
         {
-            //create the image that will be displayed to the user
-            createBufferedImage();
+            bufferedImageGraphics.dispose();
         }
     }
     
@@ -337,7 +548,7 @@ public final class Main extends Thread implements Disposable
     {
         if (applet != null)
         {
-            return applet.hasFocus();
+            return (applet.hasFocus() || canvas != null && canvas.hasFocus());
         }
         else
         {
@@ -346,55 +557,42 @@ public final class Main extends Thread implements Disposable
         }
     }
     
-    /**
-     * Set the graphic object for drawing the rendered image
-     */
-    private void createGraphicsObject()
-    {
-        if (applet != null)
-            graphics = applet.getGraphics();
-        
-        if (panel != null)
-            graphics = panel.getGraphics();
-    }
-    
     /**
      * Draw Image onto screen
      */
     private void drawScreen()
     {
-        //if no image has been rendered yet return
-        if (bufferedImage == null)
-            return;
-        
-        //cache graphics object to save resources
-        if (graphics == null)
-            createGraphicsObject();
-        
-        //make sure current window dimensions are set
-        if (currentWindow == null)
-            setFullScreen();
-        
         try
         {
-            //the destination will be the size of the window
-            int dx1 = currentWindow.x;
-            int dy1 = currentWindow.y;
-            int dx2 = currentWindow.x + currentWindow.width;
-            int dy2 = currentWindow.y + currentWindow.height;
-
-            //the source will be the entire image
-            int sx1 = 0;
-            int sy1 = 0;
-            int sx2 = bufferedImage.getWidth(null);
-            int sy2 = bufferedImage.getHeight(null);
+            do
+            {
+                do
+                {
+                    final Graphics graphics = strategy.getDrawGraphics();
+                    
+                    try
+                    {
+                        //the image is already the size of the window
+                        graphics.drawImage(bufferedImage, currentWindow.x, currentWindow.y, null);
+                    }
+                    finally
+                    {
+                        graphics.dispose();
+                    }
+                }
+                while (strategy.contentsRestored());
+                
+                //flip to the buffer that was drawn
+                strategy.show();
+            }
+            while (strategy.contentsLost());
             
-            //draw our rendered image at the specified location
-            graphics.drawImage(bufferedImage, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null);
+            //make sure the frame is sent to the display now and not buffered by the window system
+            Toolkit.getDefaultToolkit().sync();
         }
         catch(Exception e)
         {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+}
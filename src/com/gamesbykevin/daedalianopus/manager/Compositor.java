@@ -0,0 +1,438 @@
+package com.gamesbykevin.daedalianopus.manager;
+
+import com.gamesbykevin.framework.resources.Disposable;
+
+import com.gamesbykevin.daedalianopus.puzzle.Puzzle;
+import com.gamesbykevin.daedalianopus.puzzle.Viewport;
+import com.gamesbykevin.daedalianopus.puzzle.piece.Piece;
+import com.gamesbykevin.daedalianopus.puzzle.piece.Pieces;
+import com.gamesbykevin.daedalianopus.shared.Shared;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.Stroke;
+import java.awt.Transparency;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Draw the game from layers that are kept between frames.<br>
+ * The background and the puzzle are drawn into one layer and the outline of the puzzle into another, both are only
+ * drawn again when the puzzle or its location changes. The pieces have their own layer where only the area of a
+ * piece that moved, turned or was picked up is drawn again. Only the pieces the Pieces object reports as changed are
+ * checked, so a frame doesn't depend on the number of pieces unless the puzzle or its location changed. Each frame is
+ * then three images, with the cursor and the status drawn on top by the caller.
+ * @author GOD
+ */
+final class Compositor implements Disposable
+{
+    //the extra space around a piece covered by its outline
+    private static final int OUTLINE_PADDING = Puzzle.LINE_THICKNESS + 1;
+
+    //the layers, the background and puzzle, the pieces and the outline of the puzzle
+    private BufferedImage base, pieces, outline;
+
+    //the line thickness used for the outlines
+    private final Stroke stroke = new BasicStroke(Puzzle.LINE_THICKNESS);
+
+    //what the board layers were drawn for
+    private Image background;
+    private Puzzle puzzle;
+    private double puzzleX, puzzleY;
+
+    //the area each piece was drawn in, and the area found for the current frame
+    private Map<Piece, State> drawn = new IdentityHashMap<>();
+    private Map<Piece, State> current = new IdentityHashMap<>();
+
+    //the pieces reported as changed for the current frame
+    private final List<Piece> changes = new ArrayList<>();
+
+    //the area of the piece layer that has to be drawn again
+    private final Rectangle area = new Rectangle();
+
+    //the areas of the pieces and outline layers that have anything on them, only these are copied
+    private final Rectangle piecesBounds = new Rectangle(), outlineBounds = new Rectangle();
+
+    /**
+     * Create the layers
+     * @param screen The area of the screen
+     */
+    protected Compositor(final Rectangle screen)
+    {
+        this.base = Shared.createCompatibleImage(screen.width, screen.height, Transparency.OPAQUE);
+        this.pieces = Shared.createCompatibleImage(screen.width, screen.height, Transparency.TRANSLUCENT);
+        this.outline = Shared.createCompatibleImage(screen.width, screen.height, Transparency.TRANSLUCENT);
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (base != null)
+        {
+            base.flush();
+            base = null;
+        }
+
+        if (pieces != null)
+        {
+            pieces.flush();
+            pieces = null;
+        }
+
+        if (outline != null)
+        {
+            outline.flush();
+            outline = null;
+        }
+
+        background = null;
+        puzzle = null;
+
+        drawn.clear();
+        current.clear();
+        changes.clear();
+    }
+
+    /**
+     * Draw the background, the puzzle and the pieces
+     * @param graphics Object used to draw
+     * @param background The background image
+     * @param puzzle The current puzzle
+     * @param viewport The part of the puzzle that is visible
+     * @param pieces The pieces
+     */
+    protected void render(final Graphics graphics, final Image background, final Puzzle puzzle, final Viewport viewport, final Pieces pieces)
+    {
+        final boolean moved = updateBoard(background, puzzle, viewport);
+        updatePieces(pieces, puzzle, viewport, moved);
+
+        graphics.drawImage(this.base, 0, 0, null);
+        drawImage(graphics, this.pieces, piecesBounds);
+        drawImage(graphics, this.outline, outlineBounds);
+
+        //anything drawn on top uses the same thickness as the outline
+        ((Graphics2D)graphics).setStroke(stroke);
+    }
+
+    /**
+     * Draw part of a layer at the same location on the screen
+     * @param graphics Object used to draw
+     * @param layer The layer
+     * @param bounds The part of the layer to draw
+     */
+    private static void drawImage(final Graphics graphics, final BufferedImage layer, final Rectangle bounds)
+    {
+        if (bounds.isEmpty())
+            return;
+
+        graphics.drawImage(
+            layer, bounds.x, bounds.y, bounds.x + bounds.width, bounds.y + bounds.height,
+            bounds.x, bounds.y, bounds.x + bounds.width, bounds.y + bounds.height, null);
+    }
+
+    /**
+     * Draw the background, puzzle and outline layers again if the puzzle or its location changed
+     * @param background The background image
+     * @param puzzle The current puzzle
+     * @param viewport The part of the puzzle that is visible
+     * @return true if the layers were drawn again, false if nothing changed
+     */
+    private boolean updateBoard(final Image background, final Puzzle puzzle, final Viewport viewport)
+    {
+        if (background == this.background && puzzle == this.puzzle && puzzle.getX() == puzzleX && puzzle.getY() == puzzleY)
+            return false;
+
+        this.background = background;
+        this.puzzle = puzzle;
+        this.puzzleX = puzzle.getX();
+        this.puzzleY = puzzle.getY();
+
+        final Graphics2D graphics = base.createGraphics();
+
+        try
+        {
+            graphics.drawImage(background, 0, 0, null);
+            puzzle.render(graphics, viewport);
+        }
+        finally
+        {
+            graphics.dispose();
+        }
+
+        //the outline is only around the puzzle
+        outlineBounds.setBounds(
+            (int)puzzleX - OUTLINE_PADDING, (int)puzzleY - OUTLINE_PADDING,
+            (puzzle.getCols() * Puzzle.BLOCK_SIZE) + (OUTLINE_PADDING * 2), (puzzle.getRows() * Puzzle.BLOCK_SIZE) + (OUTLINE_PADDING * 2));
+        clip(outlineBounds, outline);
+
+        final Graphics2D tmp = createClearGraphics(outline, null);
+
+        try
+        {
+            puzzle.renderOutline(tmp, viewport);
+        }
+        finally
+        {
+            tmp.dispose();
+        }
+
+        return true;
+    }
+
+    /**
+     * Draw the pieces layer again where a piece changed
+     * @param pieces The pieces
+     * @param puzzle The current puzzle
+     * @param viewport The part of the puzzle that is visible
+     * @param moved Did the puzzle or its location change, which moves every piece
+     */
+    private void updatePieces(final Pieces pieces, final Puzzle puzzle, final Viewport viewport, final boolean moved)
+    {
+        //the changes are always taken so they don't build up
+        final boolean all = pieces.takeChanged(changes) || moved;
+
+        final boolean changed = (all) ? updateAll(pieces, puzzle) : updateChanges(pieces, puzzle);
+
+        changes.clear();
+
+        clip(piecesBounds, this.pieces);
+
+        if (!changed)
+            return;
+
+        //clear the area and draw every piece over it, only what is inside of the area is drawn
+        final Graphics2D graphics = createClearGraphics(this.pieces, area);
+
+        try
+        {
+            pieces.render(graphics, puzzle, viewport);
+        }
+        finally
+        {
+            graphics.dispose();
+        }
+    }
+
+    /**
+     * Check every piece in play, for when the pieces in play changed or the puzzle moved
+     * @param pieces The pieces
+     * @param puzzle The current puzzle
+     * @return true if anything has to be drawn again, false otherwise
+     */
+    private boolean updateAll(final Pieces pieces, final Puzzle puzzle)
+    {
+        boolean changed = false;
+
+        //the area covered by every piece
+        piecesBounds.setBounds(0, 0, 0, 0);
+
+        final List<Piece> play = pieces.getPiecesInPlay();
+
+        //the piece held by the player
+        final Piece selection = pieces.hasSelection() ? pieces.getSelection() : null;
+
+        for (int i = 0; i < play.size(); i++)
+        {
+            final Piece piece = play.get(i);
+
+            //reuse the state the piece was drawn with
+            State state = drawn.remove(piece);
+
+            if (state == null)
+                state = new State();
+
+            changed = update(state, piece, puzzle, selection, changed);
+
+            current.put(piece, state);
+        }
+
+        //the pieces no longer in play are removed
+        for (State state : drawn.values())
+        {
+            changed = add(state.bounds, changed);
+        }
+
+        drawn.clear();
+
+        //swap the states so they are reused next frame
+        final Map<Piece, State> tmp = drawn;
+        drawn = current;
+        current = tmp;
+
+        return changed;
+    }
+
+    /**
+     * Check only the pieces reported as changed
+     * @param pieces The pieces
+     * @param puzzle The current puzzle
+     * @return true if anything has to be drawn again, false otherwise
+     */
+    private boolean updateChanges(final Pieces pieces, final Puzzle puzzle)
+    {
+        boolean changed = false;
+
+        //the piece held by the player
+        final Piece selection = pieces.hasSelection() ? pieces.getSelection() : null;
+
+        for (int i = 0; i < changes.size(); i++)
+        {
+            final Piece piece = changes.get(i);
+
+            State state = drawn.get(piece);
+
+            if (state == null)
+            {
+                state = new State();
+                drawn.put(piece, state);
+            }
+
+            changed = update(state, piece, puzzle, selection, changed);
+        }
+
+        return changed;
+    }
+
+    /**
+     * Store how the piece is drawn now and add the area it covers
+     * @param state How the piece was drawn
+     * @param piece The piece
+     * @param puzzle The current puzzle
+     * @param selection The piece held by the player, null if none
+     * @param changed Was anything added to the area to draw again before
+     * @return true if anything has been added to the area to draw again
+     */
+    private boolean update(final State state, final Piece piece, final Puzzle puzzle, final Piece selection, final boolean changed)
+    {
+        //the pieces that aren't held are drawn from their location on the puzzle
+        final int x = (int)(puzzle.getX() + (piece.getCol() * Puzzle.BLOCK_SIZE));
+        final int y = (int)(puzzle.getY() + (piece.getRow() * Puzzle.BLOCK_SIZE));
+
+        boolean result = changed;
+
+        if (state.set(x, y, piece, selection == piece))
+        {
+            //the area the piece was drawn in and the area it is drawn in now
+            result = add(state.previous, result);
+            result = add(state.bounds, result);
+        }
+
+        //the layer is copied where any piece is, between full checks this area only grows
+        if (piecesBounds.isEmpty())
+        {
+            piecesBounds.setBounds(state.bounds);
+        }
+        else
+        {
+            piecesBounds.add(state.bounds);
+        }
+
+        return result;
+    }
+
+    /**
+     * Add to the area of the pieces layer that has to be drawn again
+     * @param bounds The area to add, may be empty
+     * @param changed Was anything added before
+     * @return true if anything has been added
+     */
+    private boolean add(final Rectangle bounds, final boolean changed)
+    {
+        if (bounds.isEmpty())
+            return changed;
+
+        if (changed)
+        {
+            area.add(bounds);
+        }
+        else
+        {
+            area.setBounds(bounds);
+        }
+
+        return true;
+    }
+
+    /**
+     * Keep the area inside of the layer
+     * @param bounds The area
+     * @param layer The layer
+     */
+    private static void clip(final Rectangle bounds, final BufferedImage layer)
+    {
+        Rectangle2D.intersect(bounds, new Rectangle(layer.getWidth(), layer.getHeight()), bounds);
+    }
+
+    /**
+     * Clear the layer and create an object to draw on it
+     * @param layer The layer
+     * @param clip The area to clear and draw on, null for the whole layer
+     * @return The object used to draw on the layer
+     */
+    private Graphics2D createClearGraphics(final BufferedImage layer, final Rectangle clip)
+    {
+        final Graphics2D graphics = layer.createGraphics();
+
+        if (clip != null)
+            graphics.setClip(clip.x, clip.y, clip.width, clip.height);
+
+        //make the area transparent
+        graphics.setComposite(AlphaComposite.Clear);
+        graphics.fillRect(0, 0, layer.getWidth(), layer.getHeight());
+        graphics.setComposite(AlphaComposite.SrcOver);
+
+        //the outlines are drawn with the same thickness as the puzzle
+        graphics.setStroke(stroke);
+
+        return graphics;
+    }
+
+    /**
+     * How a piece was drawn
+     */
+    private static final class State
+    {
+        //the area the piece covers, and the area it covered before
+        private final Rectangle bounds = new Rectangle();
+        private final Rectangle previous = new Rectangle();
+
+        private int orientation = -1;
+
+        private boolean selected = false;
+
+        /**
+         * Store how the piece is drawn now
+         * @param x The x-coordinate of the piece
+         * @param y The y-coordinate of the piece
+         * @param piece The piece
+         * @param selected Is the piece held by the player, it is drawn on top of the others
+         * @return true if the piece is drawn differently than before, false otherwise
+         */
+        private boolean set(final int x, final int y, final Piece piece, final boolean selected)
+        {
+            final int width = piece.getShape().getWidth(piece.getOrientation()) * Puzzle.BLOCK_SIZE;
+            final int height = piece.getShape().getHeight(piece.getOrientation()) * Puzzle.BLOCK_SIZE;
+
+            if (bounds.x == x - OUTLINE_PADDING && bounds.y == y - OUTLINE_PADDING &&
+                bounds.width == width + (OUTLINE_PADDING * 2) && bounds.height == height + (OUTLINE_PADDING * 2) &&
+                orientation == piece.getOrientation() && this.selected == selected)
+                return false;
+
+            previous.setBounds(bounds);
+            bounds.setBounds(x - OUTLINE_PADDING, y - OUTLINE_PADDING, width + (OUTLINE_PADDING * 2), height + (OUTLINE_PADDING * 2));
+
+            this.orientation = piece.getOrientation();
+            this.selected = selected;
+
+            return true;
+        }
+    }
+}
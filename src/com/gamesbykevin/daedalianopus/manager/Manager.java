@@ -10,8 +10,11 @@ import com.gamesbykevin.daedalianopus.menu.CustomMenu;
 import com.gamesbykevin.daedalianopus.menu.CustomMenu.*;
 import com.gamesbykevin.daedalianopus.puzzle.piece.Piece;
 import com.gamesbykevin.daedalianopus.puzzle.piece.Pieces;
+import com.gamesbykevin.daedalianopus.puzzle.LevelPool;
+import com.gamesbykevin.daedalianopus.puzzle.Puzzle;
 import com.gamesbykevin.daedalianopus.puzzle.Puzzles;
 import com.gamesbykevin.daedalianopus.puzzle.PuzzleHelper;
+import com.gamesbykevin.daedalianopus.puzzle.PuzzlePool;
 import com.gamesbykevin.daedalianopus.resources.*;
 import com.gamesbykevin.daedalianopus.shared.Shared;
 
@@ -20,6 +23,7 @@ import java.awt.Image;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.KeyEvent;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The parent class that contains all of the game elements
@@ -36,18 +40,33 @@ public final class Manager implements IManager
     //our pieces for the specified puzzle
     private Pieces pieces;
     
+    //random puzzles created in the background
+    private PuzzlePool pool;
+    
+    //campaign levels created in the background for when the standard levels are finished
+    private LevelPool levels;
+    
+    //how long to wait for the next generated level before the campaign ends, in milliseconds
+    private static final long LEVEL_TIMEOUT = 2000L;
+    
     //how we will handle switching to the next level
     private Intermission intermission;
     
     //background and victory image
     private Image background, victory;
     
+    //draws the background, puzzle and pieces from layers kept between frames
+    private Compositor compositor;
+    
     //are we generating random Levels
     private CustomMenu.Toggle random;
     
     //is the game over
     private boolean gameover = false;
     
+    //how many random puzzles are created when the pieces don't fit on the screen before the screen scrolls instead
+    private static final int SCRAMBLE_ATTEMPTS = 3;
+    
     /**
      * Constructor for Manager, this is the point where we load any menu option configurations
      * @param engine Engine for our game that contains all objects needed
@@ -64,6 +83,9 @@ public final class Manager implements IManager
         //set the game window where game play will occur
         setWindow(engine.getMain().getScreen());
         
+        //create the layers the game is drawn from
+        this.compositor = new Compositor(getWindow());
+        
         //create standard puzzles
         this.puzzles = new Puzzles(engine);
         
@@ -90,6 +112,14 @@ public final class Manager implements IManager
         //are we playing random Mode or Campaign
         random = CustomMenu.Toggle.values()[engine.getMenu().getOptionSelectionIndex(CustomMenu.LayerKey.Options, CustomMenu.OptionKey.Mode)];
         
+        //start creating random puzzles of the selected difficulty before they are needed
+        if (hasRandomMode())
+            pool = new PuzzlePool(puzzles, engine.getRandom().nextLong(), PuzzlePool.DEFAULT_CAPACITY, getDifficulty(engine));
+        
+        //start creating the levels after the standard levels so they are ready in time
+        if (!hasRandomMode())
+            levels = new LevelPool(engine.getRandom().nextLong(), LevelPool.DEFAULT_CAPACITY);
+        
         //set start level
         puzzles.setCurrent(engine.getMenu().getOptionSelectionIndex(CustomMenu.LayerKey.Options, CustomMenu.OptionKey.Level) - 1);
         
@@ -106,6 +136,16 @@ public final class Manager implements IManager
         return (random == Toggle.On);
     }
     
+    /**
+     * Get the difficulty selected in the menu
+     * @param engine Object containing the menu
+     * @return The difficulty of the random puzzles
+     */
+    private PuzzleHelper.Difficulty getDifficulty(final Engine engine)
+    {
+        return PuzzleHelper.Difficulty.values()[engine.getMenu().getOptionSelectionIndex(CustomMenu.LayerKey.Options, CustomMenu.OptionKey.Difficulty)];
+    }
+    
     public Puzzles getPuzzles()
     {
         return this.puzzles;
@@ -124,16 +164,54 @@ public final class Manager implements IManager
     @Override
     public void reset(final Engine engine) throws Exception
     {
+        //the next puzzle, the intermission or the victory screen will be drawn
+        engine.getDirtyRegion().markAll();
+        
         if (hasRandomMode())
         {
             //always will be random
             puzzles.setCurrent(-1);
             
-            //get the index of the difficulty selected
-            final int index = engine.getMenu().getOptionSelectionIndex(CustomMenu.LayerKey.Options, CustomMenu.OptionKey.Difficulty);
+            //get the difficulty selected
+            final PuzzleHelper.Difficulty difficulty = getDifficulty(engine);
             
-            //set the next random puzzle
-            puzzles.setRandomPuzzle(PuzzleHelper.createRandom(engine.getRandom(), pieces, PuzzleHelper.Difficulty.values()[index]));
+            //take a puzzle that is ready if there is one, the pool switches to the selected difficulty if it changed
+            final PuzzlePool.Prepared prepared = (pool != null) ? pool.poll(difficulty) : null;
+            
+            if (prepared != null)
+            {
+                //set the next random puzzle
+                puzzles.setRandomPuzzle(prepared.getPuzzle());
+                
+                //position in center
+                puzzles.resetPuzzleLocation();
+                
+                //the pieces were already scrambled
+                pieces.setRandomPieces(prepared.getPuzzle(), prepared.getPieces());
+            }
+            else
+            {
+                //create another puzzle if the pieces don't fit on the screen
+                for (int attempt = 1; ; attempt++)
+                {
+                    //set the next random puzzle
+                    puzzles.setRandomPuzzle(PuzzleHelper.createRandom(engine.getRandom(), pieces, difficulty));
+
+                    //position in center
+                    puzzles.resetPuzzleLocation();
+
+                    //the last puzzle is kept even if the pieces don't fit, the screen will scroll to them
+                    if (attempt >= SCRAMBLE_ATTEMPTS)
+                    {
+                        scramble(engine);
+                        break;
+                    }
+
+                    //now scramble the pieces on screen
+                    if (pieces.scramble(puzzles, engine.getRandom()))
+                        break;
+                }
+            }
         }
         else
         {
@@ -144,6 +222,16 @@ public final class Manager implements IManager
             //set next puzzle
             puzzles.setCurrent(puzzles.getCurrent() + 1);
             
+            //once the standard levels are finished keep playing generated levels
+            if (puzzles.getCurrent() >= puzzles.getPuzzlesCount() && levels != null)
+            {
+                //if no level is ready in time the campaign ends instead of waiting forever
+                final Puzzle level = levels.poll(LEVEL_TIMEOUT, TimeUnit.MILLISECONDS);
+                
+                if (level != null)
+                    puzzles.addLevel(level);
+            }
+            
             //determine if the game is over
             if (puzzles.getCurrent() >= puzzles.getPuzzlesCount())
             {
@@ -156,13 +244,13 @@ public final class Manager implements IManager
             
             //now set valid based on current puzzle
             pieces.setValidPieces(puzzles.getPuzzle().getValidPieces());
+            
+            //position in center
+            puzzles.resetPuzzleLocation();
+
+            //now scramble the pieces on screen
+            scramble(engine);
         }
-        
-        //position in center
-        puzzles.resetPuzzleLocation();
-        
-        //now scramble the pieces on screen
-        pieces.scramble(puzzles, engine.getRandom());
 
         //stop all sound
         engine.getResources().stopAllSound();
@@ -175,6 +263,20 @@ public final class Manager implements IManager
         }
     }
     
+    /**
+     * Scramble the pieces of the current puzzle, if they don't fit on the screen the screen will scroll to reach them
+     * @param engine Object containing the random numbers
+     */
+    private void scramble(final Engine engine)
+    {
+        if (pieces.scramble(puzzles, engine.getRandom()))
+            return;
+        
+        //pieces are only placed outside of the screen when the screen can follow the cursor to them
+        puzzles.getPuzzle().setScrolling(true);
+        pieces.scramble(puzzles, engine.getRandom());
+    }
+    
     @Override
     public Rectangle getWindow()
     {
@@ -201,6 +303,18 @@ public final class Manager implements IManager
         if (window != null)
             window = null;
         
+        if (pool != null)
+        {
+            pool.dispose();
+            pool = null;
+        }
+        
+        if (levels != null)
+        {
+            levels.dispose();
+            levels = null;
+        }
+        
         if (puzzles != null)
         {
             puzzles.dispose();
@@ -219,6 +333,12 @@ public final class Manager implements IManager
             intermission = null;
         }
         
+        if (compositor != null)
+        {
+            compositor.dispose();
+            compositor = null;
+        }
+        
         try
         {
             //recycle objects
@@ -277,17 +397,14 @@ public final class Manager implements IManager
             }
             else
             {
-                //draw the background
-                graphics.drawImage(background, 0, 0, null);
-
-                //draw the current puzzle
-                this.puzzles.render(graphics);
-
-                //draw the pieces
-                this.pieces.render(graphics);
-
-                //draw the outline of the current puzzle
-                this.puzzles.renderOutline(graphics);
+                //draw the background, the current puzzle, the pieces and the outline of the puzzle
+                this.compositor.render(graphics, background, puzzles.getPuzzle(), puzzles.getViewport(), pieces);
+                
+                //draw game status
+                this.puzzles.renderStatus(graphics);
+                
+                //draw where the hint piece goes
+                this.puzzles.renderHint(graphics);
 
                 //draw the cursor
                 this.puzzles.renderCursor(graphics);
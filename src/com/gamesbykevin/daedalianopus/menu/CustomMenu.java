@@ -239,6 +239,9 @@ public final class CustomMenu extends Menu implements IElement
             
             super.update(engine.getMouse(), engine.getKeyboard(), engine.getMain().getTime());
             
+            //the menu and the mouse can change every update while the menu is visible
+            engine.getDirtyRegion().markAll();
+            
             //if confirming exit from the game, stop sound
             if (super.isCurrentLayer(LayerKey.ExitGameConfirmed))
             {
@@ -264,6 +267,9 @@ public final class CustomMenu extends Menu implements IElement
             {
                 super.setLayer(LayerKey.OptionsInGame);
                 engine.getKeyboard().reset();
+                
+                //the options are drawn on top of the game
+                engine.getDirtyRegion().markAll();
             }
         }
     }
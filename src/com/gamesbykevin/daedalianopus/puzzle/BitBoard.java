@@ -0,0 +1,194 @@
+package com.gamesbykevin.daedalianopus.puzzle;
+
+import java.util.Arrays;
+
+/**
+ * A fixed size grid of on/off locations packed into longs.<br>
+ * Each (column, row) maps to a single bit in row-major order so membership is a shift and a mask.
+ * @author GOD
+ */
+public final class BitBoard
+{
+    //the number of bits in each word
+    private static final int WORD_SIZE = 64;
+
+    //shift used to find the word a bit is in
+    private static final int WORD_SHIFT = 6;
+
+    //the dimensions of the board
+    private final int cols, rows;
+
+    //the packed locations
+    private final long[] words;
+
+    public BitBoard(final int cols, final int rows)
+    {
+        this.cols = cols;
+        this.rows = rows;
+
+        //create enough words to hold every location
+        this.words = new long[((cols * rows) + WORD_SIZE - 1) >>> WORD_SHIFT];
+    }
+
+    /**
+     * Create a copy of the specified board
+     * @param board The board we want to copy
+     */
+    public BitBoard(final BitBoard board)
+    {
+        this.cols = board.cols;
+        this.rows = board.rows;
+        this.words = Arrays.copyOf(board.words, board.words.length);
+    }
+
+    public int getCols()
+    {
+        return this.cols;
+    }
+
+    public int getRows()
+    {
+        return this.rows;
+    }
+
+    /**
+     * Get the packed words, this is not a copy so be careful modifying it
+     * @return The array of longs that make up this board
+     */
+    public long[] getWords()
+    {
+        return this.words;
+    }
+
+    /**
+     * Is the location within the dimensions of this board
+     * @param col Column
+     * @param row Row
+     * @return true if the (column, row) is inside the board, false otherwise
+     */
+    public boolean contains(final int col, final int row)
+    {
+        return (col >= 0 && row >= 0 && col < cols && row < rows);
+    }
+
+    /**
+     * Get the bit index of the location
+     * @param col Column
+     * @param row Row
+     * @return The row-major index of the location
+     */
+    public int getIndex(final int col, final int row)
+    {
+        return (row * cols) + col;
+    }
+
+    /**
+     * Is the location set
+     * @param col Column
+     * @param row Row
+     * @return true if the location is on the board and set, false otherwise
+     */
+    public boolean get(final int col, final int row)
+    {
+        if (!contains(col, row))
+            return false;
+
+        return get(getIndex(col, row));
+    }
+
+    /**
+     * Is the bit set
+     * @param index The row-major index
+     * @return true if set, false otherwise
+     */
+    public boolean get(final int index)
+    {
+        return ((words[index >>> WORD_SHIFT] >>> index) & 1L) != 0;
+    }
+
+    /**
+     * Turn the location on
+     * @param col Column
+     * @param row Row
+     */
+    public void set(final int col, final int row)
+    {
+        set(getIndex(col, row));
+    }
+
+    public void set(final int index)
+    {
+        words[index >>> WORD_SHIFT] |= (1L << index);
+    }
+
+    /**
+     * Turn the location off
+     * @param col Column
+     * @param row Row
+     */
+    public void clear(final int col, final int row)
+    {
+        clear(getIndex(col, row));
+    }
+
+    public void clear(final int index)
+    {
+        words[index >>> WORD_SHIFT] &= ~(1L << index);
+    }
+
+    /**
+     * Turn every location off
+     */
+    public void clear()
+    {
+        Arrays.fill(words, 0L);
+    }
+
+    /**
+     * Count the number of locations that are set
+     * @return The total number of bits on
+     */
+    public int getCount()
+    {
+        int count = 0;
+
+        for (int i = 0; i < words.length; i++)
+        {
+            count += Long.bitCount(words[i]);
+        }
+
+        return count;
+    }
+
+    /**
+     * Are all the locations set in the mask also set in this board
+     * @param mask Board of the same dimensions
+     * @return true if every bit in the mask is also in this board, false otherwise
+     */
+    public boolean containsAll(final BitBoard mask)
+    {
+        for (int i = 0; i < words.length; i++)
+        {
+            if ((mask.words[i] & ~words[i]) != 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Do any of the locations set in the mask also exist in this board
+     * @param mask Board of the same dimensions
+     * @return true if at least one bit is shared, false otherwise
+     */
+    public boolean intersects(final BitBoard mask)
+    {
+        for (int i = 0; i < words.length; i++)
+        {
+            if ((mask.words[i] & words[i]) != 0)
+                return true;
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,104 @@
+package com.gamesbykevin.daedalianopus.puzzle;
+
+/**
+ * Union-find over the indexes 0 to size - 1.<br>
+ * Each group is identified by its root and the root keeps the size of the group,
+ * so merging two groups and checking their size is nearly constant time.
+ * @author GOD
+ */
+public final class DisjointSet
+{
+    //the parent of each index, a root is its own parent
+    private int[] parents;
+
+    //the size of each group, only correct for roots
+    private int[] sizes;
+
+    //the number of indexes in use
+    private int size;
+
+    public DisjointSet(final int size)
+    {
+        reset(size);
+    }
+
+    /**
+     * Put every index back in its own group, the arrays are only created again if they are too small
+     * @param size The number of indexes
+     */
+    public void reset(final int size)
+    {
+        if (parents == null || parents.length < size)
+        {
+            this.parents = new int[size];
+            this.sizes = new int[size];
+        }
+
+        this.size = size;
+
+        for (int i = 0; i < size; i++)
+        {
+            parents[i] = i;
+            sizes[i] = 1;
+        }
+    }
+
+    public int getSize()
+    {
+        return this.size;
+    }
+
+    /**
+     * Find the root of the group
+     * @param index The index we want to check
+     * @return The root of the group the index belongs to
+     */
+    public int find(int index)
+    {
+        while (parents[index] != index)
+        {
+            //point every other index on the path to its grandparent so later searches are shorter
+            parents[index] = parents[parents[index]];
+            index = parents[index];
+        }
+
+        return index;
+    }
+
+    /**
+     * Merge the groups of both indexes, the smaller group is added to the larger
+     * @param index1 Index in the first group
+     * @param index2 Index in the second group
+     * @return The root of the merged group
+     */
+    public int union(final int index1, final int index2)
+    {
+        int root1 = find(index1);
+        int root2 = find(index2);
+
+        if (root1 == root2)
+            return root1;
+
+        if (sizes[root1] < sizes[root2])
+        {
+            final int tmp = root1;
+            root1 = root2;
+            root2 = tmp;
+        }
+
+        parents[root2] = root1;
+        sizes[root1] += sizes[root2];
+
+        return root1;
+    }
+
+    /**
+     * Get the size of the group
+     * @param index Any index in the group
+     * @return The number of indexes in the group
+     */
+    public int getGroupSize(final int index)
+    {
+        return this.sizes[find(index)];
+    }
+}
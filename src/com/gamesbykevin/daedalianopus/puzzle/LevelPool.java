@@ -0,0 +1,142 @@
+package com.gamesbykevin.daedalianopus.puzzle;
+
+import com.gamesbykevin.framework.resources.Disposable;
+
+import com.gamesbykevin.daedalianopus.generator.Blueprint;
+import com.gamesbykevin.daedalianopus.solver.Rater;
+import com.gamesbykevin.daedalianopus.solver.SolutionCache;
+
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps generated campaign levels ready for when the standard levels are finished.<br>
+ * A background thread tiles new boards with the pieces in PiecesHelper, so the campaign can go on without an end.
+ * The boards have between MIN_PIECES and MAX_PIECES pieces, since larger boards take seconds to find one with a
+ * single solution, so the generated levels are smaller than the last standard levels.
+ * @author GOD
+ */
+public final class LevelPool implements Disposable
+{
+    /**
+     * The default number of levels kept ready
+     */
+    public static final int DEFAULT_CAPACITY = 2;
+
+    /**
+     * The range of the number of pieces of each level
+     */
+    public static final int MIN_PIECES = 8, MAX_PIECES = 10;
+
+    //the levels ready to play
+    private final BlockingQueue<Puzzle> queue;
+
+    //the thread creating the levels
+    private Thread thread;
+
+    //is the pool still running
+    private volatile boolean running = true;
+
+    //did the thread stop because a level couldn't be created
+    private volatile boolean failed = false;
+
+    /**
+     * Create the pool and start filling it
+     * @param seed Seed of the levels, the same seed will create the same levels
+     * @param capacity The number of levels to keep ready
+     */
+    public LevelPool(final long seed, final int capacity)
+    {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        this.thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                fill(seed);
+            }
+        }, "LevelPool");
+
+        //the thread should not keep the game running or take time from it
+        this.thread.setDaemon(true);
+        this.thread.setPriority(Thread.MIN_PRIORITY);
+        this.thread.start();
+    }
+
+    /**
+     * Keep the queue full until the pool is disposed, this runs on the background thread
+     * @param seed Seed of the levels
+     */
+    private void fill(final long seed)
+    {
+        final Iterator<Blueprint> levels = PuzzleHelper.streamLevels(seed, MIN_PIECES, MAX_PIECES).iterator();
+
+        try
+        {
+            while (running)
+            {
+                final Blueprint blueprint = levels.next();
+                final Puzzle level = blueprint.createLevel();
+                
+                //rate the level here so the game doesn't have to
+                level.setRating(Rater.rate(blueprint.getBoard(), blueprint.getShapes(), SolutionCache.getCache()));
+                
+                //wait until there is room for another level
+                queue.put(level);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            //the pool was disposed
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+
+            //no more levels will be created, so nobody should wait for one
+            failed = true;
+        }
+    }
+
+    /**
+     * Take the next level, waiting a limited time for it if none are ready yet
+     * @param timeout How long to wait
+     * @param unit The unit of the timeout
+     * @return The level, every piece of the level is valid for play, null if none was ready in time
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public Puzzle poll(final long timeout, final TimeUnit unit) throws InterruptedException
+    {
+        //the levels already created can still be played
+        if (failed || !running)
+            return queue.poll();
+
+        return queue.poll(timeout, unit);
+    }
+
+    /**
+     * Get the number of levels ready
+     * @return The number of levels waiting in the queue
+     */
+    public int getReadyCount()
+    {
+        return queue.size();
+    }
+
+    @Override
+    public void dispose()
+    {
+        running = false;
+
+        if (thread != null)
+        {
+            thread.interrupt();
+            thread = null;
+        }
+
+        queue.clear();
+    }
+}
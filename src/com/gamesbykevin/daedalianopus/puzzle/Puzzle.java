@@ -1,11 +1,11 @@
 package com.gamesbykevin.daedalianopus.puzzle;
 
-import com.gamesbykevin.framework.base.Cell;
 import com.gamesbykevin.framework.base.Sprite;
 import com.gamesbykevin.framework.resources.Disposable;
 
 import com.gamesbykevin.daedalianopus.puzzle.piece.Piece;
 import com.gamesbykevin.daedalianopus.puzzle.piece.PiecesHelper.Type;
+import com.gamesbykevin.daedalianopus.solver.Rating;
 
 import java.awt.Color;
 import java.awt.BasicStroke;
@@ -25,7 +25,15 @@ public final class Puzzle extends Sprite implements Disposable
     /**
      * The valid locations for this puzzle
      */
-    private List<Cell> valid;
+    private BitBoard valid;
+    
+    /**
+     * Re-usable mask used to check an entire piece against the valid locations
+     */
+    private BitBoard mask;
+    
+    //the number of valid locations
+    private int count = 0;
     
     //the size of each small block
     public static final int BLOCK_SIZE = 16;
@@ -35,8 +43,10 @@ public final class Puzzle extends Sprite implements Disposable
      */
     private BasicStroke stroke;
     
-    //border thickness
-    private static final int LINE_THICKNESS = 2;
+    /**
+     * The border thickness
+     */
+    public static final int LINE_THICKNESS = 2;
     
     //the pieces needed to solve the puzzle
     private List<Type> pieces;
@@ -44,6 +54,12 @@ public final class Puzzle extends Sprite implements Disposable
     //has this puzzle been solved
     private boolean solved = false;
     
+    //does the screen follow the cursor even though the puzzle fits on the screen
+    private boolean scrolling = false;
+    
+    //how hard the puzzle is, null until it has been rated
+    private Rating rating;
+    
     public Puzzle(final PuzzleHelper.Type type)
     {
         this();
@@ -63,13 +79,16 @@ public final class Puzzle extends Sprite implements Disposable
     {
         this.cols = cols;
         this.rows = rows;
+        
+        //create new board that contains the valid locations
+        this.valid = new BitBoard(cols, rows);
+        
+        //create the mask used to check pieces
+        this.mask = new BitBoard(cols, rows);
     }
     
     private Puzzle()
     {
-        //create new list that contains the valid locations
-        this.valid = new ArrayList<>();
-        
         //the list of pieces used for this puzzle
         this.pieces = new ArrayList<>();
     }
@@ -91,6 +110,38 @@ public final class Puzzle extends Sprite implements Disposable
         return this.solved;
     }
     
+    /**
+     * Let the screen follow the cursor, used when the pieces don't fit on the screen around the puzzle
+     * @param scrolling true if the screen follows the cursor, false if it only does when the puzzle is too large
+     */
+    public void setScrolling(final boolean scrolling)
+    {
+        this.scrolling = scrolling;
+    }
+    
+    public boolean hasScrolling()
+    {
+        return this.scrolling;
+    }
+    
+    /**
+     * Store how hard the puzzle is, so it is only rated once
+     * @param rating The rating
+     */
+    public void setRating(final Rating rating)
+    {
+        this.rating = rating;
+    }
+    
+    /**
+     * Get how hard the puzzle is
+     * @return The rating, null if the puzzle hasn't been rated
+     */
+    public Rating getRating()
+    {
+        return this.rating;
+    }
+    
     /**
      * Mark type of piece as valid for play.<br>
      * Type will not be added if it already exists.
@@ -130,36 +181,80 @@ public final class Puzzle extends Sprite implements Disposable
     }
     
     /**
-     * Add valid puzzle location to list
+     * Add valid puzzle location
      * @param col Column
      * @param row Row
      */
     protected void add(final int col, final int row)
     {
-        valid.add(new Cell(col, row));
+        //only count new locations
+        if (!valid.get(col, row))
+            count++;
+        
+        valid.set(col, row);
     }
     
     /**
-     * Does the piece intersect with any part of the puzzle
+     * Get the number of valid locations
+     * @return The total number of locations that need to be covered to solve the puzzle
+     */
+    public int getCount()
+    {
+        return this.count;
+    }
+    
+    /**
+     * Get the valid locations of this puzzle
+     * @return Board where each valid (column, row) is set
+     */
+    public BitBoard getBoard()
+    {
+        return this.valid;
+    }
+    
+    /**
+     * Write the parts of the piece that are within the puzzle dimensions to our mask
      * @param piece The piece we want to check
-     * @return true if one part of the piece is in the valid space, false otherwise
+     * @return true if every part of the piece is within the puzzle dimensions, false otherwise
      */
-    public boolean intersects(final Piece piece)
+    private boolean setMask(final Piece piece)
     {
-        for (int i = 0; i < piece.getSmallPieces().size(); i++)
+        //remove the previous piece
+        mask.clear();
+        
+        boolean inside = true;
+        
+        final int startCol = (int)piece.getCol();
+        final int startRow = (int)piece.getRow();
+        
+        for (int i = 0; i < piece.getSmallPieceCount(); i++)
         {
-            Cell cell = piece.getSmallPieces().get(i);
+            final int col = startCol + piece.getSmallCol(i);
+            final int row = startRow + piece.getSmallRow(i);
             
-            final int col = (int)(cell.getCol() + piece.getCol());
-            final int row = (int)(cell.getRow() + piece.getRow());
+            //parts outside of the puzzle can't be part of the mask
+            if (!mask.contains(col, row))
+            {
+                inside = false;
+                continue;
+            }
             
-            //if this piece is part of the puzzle return true
-            if (isValid(col, row))
-                return true;
+            mask.set(col, row);
         }
         
-        //this piece is inside the puzzle
-        return false;
+        return inside;
+    }
+    
+    /**
+     * Does the piece intersect with any part of the puzzle
+     * @param piece The piece we want to check
+     * @return true if one part of the piece is in the valid space, false otherwise
+     */
+    public boolean intersects(final Piece piece)
+    {
+        setMask(piece);
+        
+        return valid.intersects(mask);
     }
     
     /**
@@ -169,39 +264,24 @@ public final class Puzzle extends Sprite implements Disposable
      */
     public boolean isValid(final Piece piece)
     {
-        for (int i = 0; i < piece.getSmallPieces().size(); i++)
-        {
-            Cell cell = piece.getSmallPieces().get(i);
-            
-            final int col = (int)(piece.getCol() + cell.getCol());
-            final int row = (int)(piece.getRow() + cell.getRow());
-            
-            //if this piece is not part of the puzzle return false
-            if (!isValid(col, row))
-                return false;
-        }
+        //if part of the piece is outside the dimensions it can't be in the puzzle
+        if (!setMask(piece))
+            return false;
         
-        //this piece is inside the puzzle
-        return true;
+        return valid.containsAll(mask);
     }
     
     public boolean isValid(final int col, final int row)
     {
-        for (int i = 0; i < valid.size(); i++)
-        {
-            //if location is part of valid list
-            if (valid.get(i).equals(col, row))
-                return true;
-        }
-        
-        return false;
+        return valid.get(col, row);
     }
     
     @Override
     public void dispose()
     {
-        this.valid.clear();
         this.valid = null;
+        this.mask = null;
+        this.rating = null;
         
         if (pieces != null)
         {
@@ -216,13 +296,36 @@ public final class Puzzle extends Sprite implements Disposable
     }
     
     public void render(final Graphics graphics)
+    {
+        render(graphics, 0, 0, getCols(), getRows());
+    }
+    
+    /**
+     * Draw the part of the puzzle on the screen
+     * @param graphics Object used to draw
+     * @param viewport The part of the puzzle that is visible
+     */
+    public void render(final Graphics graphics, final Viewport viewport)
+    {
+        render(graphics, viewport.getStartCol(this), viewport.getStartRow(this), viewport.getEndCol(this), viewport.getEndRow(this));
+    }
+    
+    /**
+     * Draw the locations in the area
+     * @param graphics Object used to draw
+     * @param startCol The first column
+     * @param startRow The first row
+     * @param endCol The column after the last
+     * @param endRow The row after the last
+     */
+    private void render(final Graphics graphics, final int startCol, final int startRow, final int endCol, final int endRow)
     {
         graphics.setColor(Color.WHITE);
         
         //fill the background for the puzzle
-        for (int row = 0; row < getRows(); row++)
+        for (int row = Math.max(0, startRow); row < Math.min(getRows(), endRow); row++)
         {
-            for (int col = 0; col < getCols(); col++)
+            for (int col = Math.max(0, startCol); col < Math.min(getCols(), endCol); col++)
             {
                 if (!isValid(col, row))
                     continue;
@@ -237,6 +340,29 @@ public final class Puzzle extends Sprite implements Disposable
     }
     
     public void renderOutline(final Graphics graphics)
+    {
+        renderOutline(graphics, 0, 0, getCols(), getRows());
+    }
+    
+    /**
+     * Draw the border of the part of the puzzle on the screen
+     * @param graphics Object used to draw
+     * @param viewport The part of the puzzle that is visible
+     */
+    public void renderOutline(final Graphics graphics, final Viewport viewport)
+    {
+        renderOutline(graphics, viewport.getStartCol(this), viewport.getStartRow(this), viewport.getEndCol(this), viewport.getEndRow(this));
+    }
+    
+    /**
+     * Draw the border of the locations in the area
+     * @param graphics Object used to draw
+     * @param startCol The first column
+     * @param startRow The first row
+     * @param endCol The column after the last
+     * @param endRow The row after the last
+     */
+    private void renderOutline(final Graphics graphics, final int startCol, final int startRow, final int endCol, final int endRow)
     {
         //need graphics 2d for line thickness
         Graphics2D g2d = (Graphics2D)graphics;
@@ -250,9 +376,9 @@ public final class Puzzle extends Sprite implements Disposable
         g2d.setColor(Color.DARK_GRAY);
         
         //draw the border for the puzzle
-        for (int row = 0; row < getRows(); row++)
+        for (int row = Math.max(0, startRow); row < Math.min(getRows(), endRow); row++)
         {
-            for (int col = 0; col < getCols(); col++)
+            for (int col = Math.max(0, startCol); col < Math.min(getCols(), endCol); col++)
             {
                 //skip if not valid
                 if (!isValid(col, row))
@@ -1,24 +1,25 @@
 package com.gamesbykevin.daedalianopus.puzzle;
 
-import com.gamesbykevin.framework.base.Cell;
-
-import com.gamesbykevin.framework.maze.Room;
-import com.gamesbykevin.framework.maze.Room.Wall;
-
+import com.gamesbykevin.daedalianopus.generator.PuzzleStream;
+import com.gamesbykevin.daedalianopus.generator.RandomGenerator;
+import com.gamesbykevin.daedalianopus.generator.TilingGenerator;
 import com.gamesbykevin.daedalianopus.puzzle.piece.Piece;
 import com.gamesbykevin.daedalianopus.puzzle.piece.Pieces;
 import com.gamesbykevin.daedalianopus.puzzle.piece.PiecesHelper;
+import com.gamesbykevin.daedalianopus.puzzle.piece.Polyominoes;
+import com.gamesbykevin.daedalianopus.puzzle.piece.Shape;
+import com.gamesbykevin.daedalianopus.solver.Rater;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
-import java.util.UUID;
 
 public class PuzzleHelper 
 {
     public enum Difficulty
     {
-        Easy, Medium, Hard
+        Easy, Medium, Hard, Epic
     }
     
     public enum Type
@@ -86,6 +87,14 @@ public class PuzzleHelper
     private static final int MIN_DIMENSIONS_MEDIUM = 7;
     private static final int MAX_DIMENSIONS_HARD = 12;
     private static final int MIN_DIMENSIONS_HARD = 10;
+    private static final int MAX_DIMENSIONS_EPIC = 80;
+    private static final int MIN_DIMENSIONS_EPIC = 64;
+    
+    //the number of new rows added to each strip when creating a very large puzzle
+    private static final int STRIP_ROWS = 8;
+    
+    //the most puzzles created when looking for one with the right rating
+    private static final int MAX_RATING_ATTEMPTS = 12;
     
     //the maximum amount of small pieces to create a piece
     private static final int MAX_SMALL_PIECE_SIZE = 7;
@@ -96,69 +105,100 @@ public class PuzzleHelper
     //we can only join a piece where the count of that pieces group is less than 3
     private static final int MERGE_COUNT_MAX = 2;
     
-    /**
-     * Count how many locations have the same group
-     * @param locations Array of locations to check
-     * @param group The group we are looking for
-     * @return the total number of locations with the matching group
-     */
-    private static int getCount(final Room[][] locations, final UUID group)
+    //the arrays used to create random puzzles, each thread has its own
+    private static final ThreadLocal<Workspace> WORKSPACE = new ThreadLocal<Workspace>()
     {
-        int count = 0;
-        
-        for (int col = 0; col < locations[0].length; col++)
+        @Override
+        protected Workspace initialValue()
         {
-            for (int row = 0; row < locations.length; row++)
-            {
-                if (locations[row][col].hasId(group))
-                    count++;
-            }
+            return new Workspace();
         }
-        
-        return count;
-    }
+    };
     
     /**
-     * Mark all locations of the specified group as visited
-     * @param locations Array of locations to check
-     * @param group The group we are looking for
+     * The arrays used to create a random puzzle.<br>
+     * Every location is an index (row * columns) + col so no object is needed for each location,
+     * and the arrays are only created again when a larger puzzle is needed.
      */
-    private static void markVisited(final Room[][] locations, final UUID group)
+    private static final class Workspace
     {
-        for (int col = 0; col < locations[0].length; col++)
+        //the group of each location
+        private final DisjointSet groups = new DisjointSet(0);
+        
+        //flag for each root that can't grow any further
+        private boolean[] closed = new boolean[0];
+        
+        //the locations left to check
+        private int[] frontier = new int[0];
+        
+        //the label of each root, the locations sorted by label, and where each label starts
+        private int[] roots = new int[0], labels = new int[0], sorted = new int[0], starts = new int[1], next = new int[0];
+        
+        //the groups we can merge with
+        private final int[] options = new int[4];
+        
+        //the location of each small piece compared to the base
+        private final int[] pieceCols = new int[Shape.MAX_DIMENSION * Shape.MAX_DIMENSION];
+        private final int[] pieceRows = new int[Shape.MAX_DIMENSION * Shape.MAX_DIMENSION];
+        
+        /**
+         * Make sure the arrays are large enough
+         * @param count The number of locations in the puzzle
+         */
+        private void reset(final int count)
         {
-            for (int row = 0; row < locations.length; row++)
+            groups.reset(count);
+            
+            if (closed.length < count)
             {
-                if (locations[row][col].hasId(group))
-                    locations[row][col].setVisited(true);
+                closed = new boolean[count];
+                frontier = new int[count * 2];
+                roots = new int[count];
+                labels = new int[count];
+                sorted = new int[count];
+                starts = new int[count + 1];
+                next = new int[count];
             }
+            
+            Arrays.fill(closed, 0, count, false);
+            Arrays.fill(roots, 0, count, -1);
         }
     }
     
     /**
-     * Are all locations been visited
-     * @param locations Array of locations to check
-     * @return true if so, false otherwise
+     * Add the neighbor's group to the options if the current group is allowed to merge with it
+     * @param groups The group of each location
+     * @param closed Flag for each root that can't grow any further
+     * @param root The root of the current group
+     * @param neighbor The index of the neighboring location
+     * @param options The roots we can merge with
+     * @param total The number of options so far
+     * @return The number of options
      */
-    private static boolean allVisited(final Room[][] locations)
+    private static int addOption(final DisjointSet groups, final boolean[] closed, final int root, final int neighbor, final int[] options, final int total)
     {
-        for (int col = 0; col < locations[0].length; col++)
-        {
-            for (int row = 0; row < locations.length; row++)
-            {
-                if (!locations[row][col].hasVisited())
-                    return false;
-            }
-        }
+        final int other = groups.find(neighbor);
+        
+        //we can't merge with ourselves or a group that is finished
+        if (other == root || closed[other])
+            return total;
         
-        return true;
+        final int groupCount = groups.getGroupSize(root);
+        final int directionCount = groups.getGroupSize(other);
+        
+        if (groupCount + directionCount > MAX_SMALL_PIECE_SIZE || directionCount > MERGE_COUNT_MAX)
+            return total;
+        
+        options[total] = other;
+        
+        return total + 1;
     }
     
     /**
-     * Create a random puzzle
+     * Create a random puzzle that is rated as the difficulty when possible
      * @param random Object used to make random decisions
      * @param pieces Collection of pieces that can be used for play
-     * @param difficulty The difficulty level, which will determine the size of the puzzle
+     * @param difficulty The difficulty level
      * @return A puzzle with valid locations and types of pieces allowed for play
      */
     public static Puzzle createRandom(final Random random, final Pieces pieces, final Difficulty difficulty) throws Exception
@@ -169,286 +209,587 @@ public class PuzzleHelper
         //set all remaining as invalid
         pieces.markPiecesInvalid();
         
+        //the pieces created for the puzzle
+        final List<Piece> created = new ArrayList<>();
+        
+        final Puzzle puzzle = createRated(random, created, difficulty);
+        
+        //add pieces to list
+        for (int i = 0; i < created.size(); i++)
+        {
+            pieces.addPiece(created.get(i));
+        }
+        
+        return puzzle;
+    }
+    
+    /**
+     * Create a random puzzle without changing any pieces in play
+     * @param random Object used to make random decisions
+     * @param created List the pieces of the puzzle will be added to
+     * @param difficulty The difficulty level, which will determine the size of the puzzle
+     * @return A puzzle with valid locations
+     */
+    public static Puzzle createRandom(final Random random, final List<Piece> created, final Difficulty difficulty)
+    {
         //pick random size for our puzzle
-        final int columns, rows;
+        final int columns = getRandomSize(random, difficulty);
+        final int rows = getRandomSize(random, difficulty);
+        
+        //very large puzzles are created a strip at a time
+        if (difficulty == Difficulty.Epic)
+            return createRandomStrips(random, created, columns, rows);
+        
+        return createRandom(random, created, columns, rows);
+    }
+    
+    /**
+     * Create a random puzzle that is rated as the difficulty.<br>
+     * Puzzles of the size of the difficulty are created until one is rated the same, each rating only takes a few
+     * milliseconds. If none is found after a few attempts the last one is used. Epic puzzles are only a size.
+     * The ratings are not cached, since a random puzzle is almost never created again.
+     * @param random Object used to make random decisions
+     * @param created List the pieces of the puzzle will be added to
+     * @param difficulty The difficulty level
+     * @return A puzzle with valid locations
+     */
+    public static Puzzle createRated(final Random random, final List<Piece> created, final Difficulty difficulty)
+    {
+        if (difficulty == Difficulty.Epic)
+            return createRandom(random, created, difficulty);
         
+        for (int attempt = 1; ; attempt++)
+        {
+            //pick random size for our puzzle
+            final int columns = getRandomSize(random, difficulty);
+            final int rows = getRandomSize(random, difficulty);
+            
+            //every location can be part of a piece
+            final BitBoard locations = new BitBoard(columns, rows);
+            
+            for (int index = 0; index < columns * rows; index++)
+            {
+                locations.set(index);
+            }
+            
+            final Workspace workspace = WORKSPACE.get();
+            workspace.reset(columns * rows);
+            
+            final int[] labels = workspace.labels;
+            
+            //split the locations into groups
+            final int total = partition(random, locations, labels);
+            
+            //locations left out of every group are not part of the puzzle
+            for (int index = 0; index < columns * rows; index++)
+            {
+                if (labels[index] < 0)
+                    locations.clear(index);
+            }
+            
+            if (attempt >= MAX_RATING_ATTEMPTS || Rater.rate(locations, createShapes(labels, columns, rows, total)).getDifficulty() == difficulty)
+                return create(random, labels, columns, rows, total, created);
+        }
+    }
+    
+    /**
+     * Get every random puzzle of the difficulty as a stream without an end.<br>
+     * The puzzle at each index only depends on the seed and the index, so the stream can be split across threads.
+     * @param seed The seed of the puzzles, such as Engine.getSeed()
+     * @param difficulty The difficulty level, which will determine the size of the puzzles
+     * @return Stream of puzzles which are created when needed
+     */
+    public static PuzzleStream stream(final long seed, final Difficulty difficulty)
+    {
+        return new PuzzleStream(new RandomGenerator(difficulty), seed);
+    }
+    
+    /**
+     * Get campaign style puzzles as a stream without an end
+     * @param seed The seed of the puzzles, such as Engine.getSeed()
+     * @param minPieces The fewest pieces a puzzle can have
+     * @param maxPieces The most pieces a puzzle can have
+     * @return Stream of puzzles with a single solution which are created when needed
+     */
+    public static PuzzleStream streamLevels(final long seed, final int minPieces, final int maxPieces)
+    {
+        return new PuzzleStream(new TilingGenerator(minPieces, maxPieces, 1), seed);
+    }
+    
+    /**
+     * Pick a random number of columns or rows for a puzzle
+     * @param random Object used to make random decisions
+     * @param difficulty The difficulty level, which will determine the size of the puzzle
+     * @return The number of columns or rows
+     */
+    public static int getRandomSize(final Random random, final Difficulty difficulty)
+    {
         switch (difficulty)
         {
             case Easy:
             default:
-                columns = random.nextInt(MAX_DIMENSIONS_EASY - MIN_DIMENSIONS_EASY) + MIN_DIMENSIONS_EASY;
-                rows = random.nextInt(MAX_DIMENSIONS_EASY - MIN_DIMENSIONS_EASY) + MIN_DIMENSIONS_EASY;
-                break;
+                return random.nextInt(MAX_DIMENSIONS_EASY - MIN_DIMENSIONS_EASY) + MIN_DIMENSIONS_EASY;
                 
             case Medium:
-                columns = random.nextInt(MAX_DIMENSIONS_MEDIUM - MIN_DIMENSIONS_MEDIUM) + MIN_DIMENSIONS_MEDIUM;
-                rows = random.nextInt(MAX_DIMENSIONS_MEDIUM - MIN_DIMENSIONS_MEDIUM) + MIN_DIMENSIONS_MEDIUM;
-                break;
+                return random.nextInt(MAX_DIMENSIONS_MEDIUM - MIN_DIMENSIONS_MEDIUM) + MIN_DIMENSIONS_MEDIUM;
                 
             case Hard:
-                columns = random.nextInt(MAX_DIMENSIONS_HARD - MIN_DIMENSIONS_HARD) + MIN_DIMENSIONS_HARD;
-                rows = random.nextInt(MAX_DIMENSIONS_HARD - MIN_DIMENSIONS_HARD) + MIN_DIMENSIONS_HARD;
-                break;
+                return random.nextInt(MAX_DIMENSIONS_HARD - MIN_DIMENSIONS_HARD) + MIN_DIMENSIONS_HARD;
+                
+            case Epic:
+                return random.nextInt(MAX_DIMENSIONS_EPIC - MIN_DIMENSIONS_EPIC) + MIN_DIMENSIONS_EPIC;
         }
+    }
+    
+    /**
+     * Create a random puzzle of the specified size without changing any pieces in play
+     * @param random Object used to make random decisions
+     * @param created List the pieces of the puzzle will be added to
+     * @param columns The number of columns in the puzzle
+     * @param rows The number of rows in the puzzle
+     * @return A puzzle with valid locations
+     */
+    public static Puzzle createRandom(final Random random, final List<Piece> created, final int columns, final int rows)
+    {
+        //every location can be part of a piece
+        final BitBoard locations = new BitBoard(columns, rows);
+        
+        for (int index = 0; index < columns * rows; index++)
+        {
+            locations.set(index);
+        }
+        
+        final Workspace workspace = WORKSPACE.get();
+        workspace.reset(columns * rows);
+        
+        final int[] labels = workspace.labels;
+        
+        //split the locations into groups
+        final int total = partition(random, locations, labels);
         
+        return create(random, labels, columns, rows, total, created);
+    }
+    
+    /**
+     * Create a puzzle from the groups of a partition
+     * @param random Object used to make random decisions
+     * @param labels The group of each location, -1 if the location is not part of the puzzle
+     * @param columns The number of columns in the puzzle
+     * @param rows The number of rows in the puzzle
+     * @param total The number of groups
+     * @param created List a piece will be added to for each group
+     * @return A puzzle where every location with a group is valid
+     */
+    public static Puzzle create(final Random random, final int[] labels, final int columns, final int rows, final int total, final List<Piece> created)
+    {
         //create new puzzle of this size
         Puzzle puzzle = new Puzzle(columns, rows);
         
-        //array of locations
-        Room[][] locations = new Room[puzzle.getRows()][puzzle.getCols()];
-        
-        //list for walls
-        List<Wall> walls = new ArrayList<>();
+        for (int index = 0; index < columns * rows; index++)
+        {
+            //add valid location
+            if (labels[index] >= 0)
+                puzzle.add(index % columns, index / columns);
+        }
         
-        //list of groups
-        List<UUID> groups = new ArrayList<>();
+        //now create a piece for each group
+        final List<Shape> shapes = createShapes(labels, columns, rows, total);
         
-        //create all locations
-        for (int col = 0; col < locations[0].length; col++)
+        for (int i = 0; i < shapes.size(); i++)
         {
-            for (int row = 0; row < locations.length; row++)
-            {
-                //create new location
-                locations[row][col] = new Room(col, row);
-            }
+            //add piece to list
+            created.add(createPiece(random, shapes.get(i)));
         }
         
-        while (!allVisited(locations))
+        return puzzle;
+    }
+    
+    /**
+     * Create a very large random puzzle a strip of rows at a time.<br>
+     * Each strip is partitioned together with the groups of the previous strip that were still touching its last row,
+     * so the strips don't leave a straight seam across the puzzle. Only the locations of one strip are kept while
+     * creating the puzzle, so the memory used depends on the number of columns and not the number of rows.
+     * @param random Object used to make random decisions
+     * @param created List the pieces of the puzzle will be added to
+     * @param columns The number of columns in the puzzle
+     * @param rows The number of rows in the puzzle
+     * @return A puzzle with valid locations
+     */
+    public static Puzzle createRandomStrips(final Random random, final List<Piece> created, final int columns, final int rows)
+    {
+        final Puzzle puzzle = new Puzzle(columns, rows);
+        
+        //a carried group can reach at most MAX_SMALL_PIECE_SIZE - 1 rows above the new rows
+        final int height = STRIP_ROWS + MAX_SMALL_PIECE_SIZE;
+        
+        //the locations of the current strip, and the locations carried into the next strip
+        final BitBoard window = new BitBoard(columns, height);
+        final BitBoard carried = new BitBoard(columns, height);
+        
+        //the group of each location in the strip, and the groups carried into the next strip
+        final int[] labels = new int[columns * height];
+        final boolean[] carry = new boolean[columns * height];
+        
+        //the first row of the strip, and the first row that hasn't been part of a strip yet
+        int top = 0, next = 0;
+        
+        while (top < rows)
         {
-            //add all locations to list
-            for (int col = 0; col < locations[0].length; col++)
+            final int end = Math.min(rows, next + STRIP_ROWS);
+            final int last = end - top - 1;
+            
+            //the carried locations and every location of the new rows
+            window.clear();
+            
+            for (int row = top; row < end; row++)
             {
-                for (int row = 0; row < locations.length; row++)
+                for (int col = 0; col < columns; col++)
                 {
-                    //get the group of the current location
-                    final UUID group = locations[row][col].getId();
-                    
-                    //clear wall selection list
-                    walls.clear();
-
-                    //count how many already belong to the current group
-                    final int groupCount = getCount(locations, group);
-                    
-                    int directionCount = 0;
-                    
-                    if (row < locations.length - 1)
-                    {
-                        Room south = locations[row + 1][col];
-                        
-                        if (!south.hasVisited() && !south.hasId(group))
-                        {
-                            directionCount = getCount(locations, south.getId());
-                            
-                            if (groupCount + directionCount <= MAX_SMALL_PIECE_SIZE && directionCount <= MERGE_COUNT_MAX)
-                            {
-                                walls.add(Wall.South);
-                            }
-                        }
-                    }
-                    
-                    if (row > 0)
-                    {
-                        Room north = locations[row - 1][col]; 
-                        
-                        if (!north.hasVisited() && !north.hasId(group))
-                        {
-                            directionCount = getCount(locations, north.getId());
-                            
-                            if (groupCount + directionCount <= MAX_SMALL_PIECE_SIZE && directionCount <= MERGE_COUNT_MAX)
-                            {
-                                walls.add(Wall.North);
-                            }
-                        }
-                    }
-                    
-                    if (col < locations[0].length - 1)
-                    {
-                        Room east = locations[row][col + 1];
-                        
-                        if (!east.hasVisited() && !east.hasId(group))
-                        {
-                            directionCount = getCount(locations, east.getId());
-                            
-                            if (groupCount + directionCount <= MAX_SMALL_PIECE_SIZE && directionCount <= MERGE_COUNT_MAX)
-                            {
-                                walls.add(Wall.East);
-                            }
-                        }
-                    }
+                    if (row >= next || carried.get(col, row - top))
+                        window.set(col, row - top);
+                }
+            }
+            
+            next = end;
+            
+            final int total = partition(random, window, labels);
+            
+            Arrays.fill(carry, 0, total, false);
+            
+            //groups on the last row may still grow into the next strip
+            if (end < rows)
+            {
+                for (int col = 0; col < columns; col++)
+                {
+                    final int index = (last * columns) + col;
                     
-                    if (col > 0)
-                    {
-                        Room west = locations[row][col - 1];
-                        
-                        if (!west.hasVisited() && !west.hasId(group))
-                        {
-                            directionCount = getCount(locations, west.getId());
-                            
-                            if (groupCount + directionCount <= MAX_SMALL_PIECE_SIZE && directionCount <= MERGE_COUNT_MAX)
-                            {
-                                walls.add(Wall.West);
-                            }
-                        }
-                    }
-
-                    //if there is an option continue
-                    if (!walls.isEmpty())
-                    {
-                        //pick random direction
-                        Wall wall = walls.get(random.nextInt(walls.size()));
-
-                        switch (wall)
-                        {
-                            case North:
-                                //mark as part of group
-                                locations[row - 1][col].setId(group);
-                                break;
-
-                            case South:
-                                locations[row + 1][col].setId(group);
-                                break;
-
-                            case East:
-                                locations[row][col + 1].setId(group);
-                                break;
-
-                            case West:
-                                locations[row][col - 1].setId(group);
-                                break;
-                        }
-
-                        //count how many are part of group
-                        final int count = getCount(locations, group);
-
-                        //if meet maximum requirements mark all visited
-                        if (count >= MAX_SMALL_PIECE_SIZE)
-                        {
-                            //mark all of this group visited
-                            markVisited(locations, group);
-                        }
-                    }
-                    else
-                    {
-                        //mark all of this group visited
-                        markVisited(locations, group);
-                    }
+                    if (labels[index] >= 0)
+                        carry[labels[index]] = true;
                 }
             }
-        }
-        
-        //get all unique groups in the locations
-        for (int col = 0; col < locations[0].length; col++)
-        {
-            for (int row = 0; row < locations.length; row++)
+            
+            //find where the next strip starts
+            int nextTop = end;
+            
+            for (int index = 0; index < (last + 1) * columns; index++)
             {
-                final UUID group = locations[row][col].getId();
+                if (window.get(index) && isCarried(labels, carry, index, last, columns, end < rows))
+                    nextTop = Math.min(nextTop, top + (index / columns));
+            }
+            
+            carried.clear();
+            
+            for (int index = 0; index < (last + 1) * columns; index++)
+            {
+                if (!window.get(index))
+                    continue;
                 
-                boolean valid = true;
+                final int col = index % columns;
+                final int row = top + (index / columns);
                 
-                for (int i = 0; i < groups.size(); i++)
+                if (isCarried(labels, carry, index, last, columns, end < rows))
                 {
-                    if (groups.get(i) == group)
-                    {
-                        valid = false;
-                        break;
-                    }
+                    carried.set(col, row - nextTop);
+                }
+                else if (labels[index] >= 0)
+                {
+                    //add valid location
+                    puzzle.add(col, row);
                 }
-                
-                if (valid)
-                    groups.add(group);
             }
+            
+            //create a piece for each group that is finished
+            final List<Shape> shapes = createShapes(labels, columns, height, total);
+            
+            for (int label = 0; label < total; label++)
+            {
+                if (!carry[label])
+                    created.add(createPiece(random, shapes.get(label)));
+            }
+            
+            top = nextTop;
         }
         
-        //this list will contain invalid locations for puzzle
-        List<Cell> invalid = new ArrayList<>();
+        return puzzle;
+    }
+    
+    /**
+     * Is the location of a strip carried into the next strip
+     * @param labels The group of each location in the strip
+     * @param carry Flag for each group that is carried
+     * @param index The location
+     * @param last The last row of the strip
+     * @param columns The number of columns
+     * @param more Is there another strip after this one
+     * @return true if the location belongs to a carried group, or is a location on the last row too small to be a piece
+     */
+    private static boolean isCarried(final int[] labels, final boolean[] carry, final int index, final int last, final int columns, final boolean more)
+    {
+        if (!more)
+            return false;
         
-        //list of smaller pieces to create piece
-        List<Cell> cells = new ArrayList<>();
+        if (labels[index] >= 0)
+            return carry[labels[index]];
         
-        //now check each group to see if we have enough to make a piece
-        for (int i = 0; i < groups.size(); i++)
+        return (index / columns == last);
+    }
+    
+    /**
+     * Create a random piece
+     * @param random Object used to make random decisions
+     * @param shape The shape of the piece
+     * @return A valid piece with a random color and orientation
+     */
+    private static Piece createPiece(final Random random, final Shape shape)
+    {
+        //create new piece
+        Piece piece = new Piece(shape);
+        
+        //choose random color
+        piece.setColor(random.nextInt(200) + 56, random.nextInt(200) + 56, random.nextInt(200) + 56);
+        
+        //yes piece is valid
+        piece.setValid(true);
+        
+        if (random.nextBoolean())
+            piece.rotate();
+        if (random.nextBoolean())
+            piece.flipVertical();
+        if (random.nextBoolean())
+            piece.flipHorizontal();
+        
+        return piece;
+    }
+    
+    /**
+     * Create a campaign style puzzle from the groups of a partition, every group must be one of the pieces in PiecesHelper
+     * @param labels The group of each location, -1 if the location is not part of the puzzle
+     * @param columns The number of columns in the puzzle
+     * @param rows The number of rows in the puzzle
+     * @param total The number of groups
+     * @return A puzzle where every location with a group is valid, and the type of each group is valid for play
+     * @throws Exception if a group does not match the shape of any type of piece
+     */
+    public static Puzzle createLevel(final int[] labels, final int columns, final int rows, final int total) throws Exception
+    {
+        //create new puzzle of this size
+        Puzzle puzzle = new Puzzle(columns, rows);
+        
+        for (int index = 0; index < columns * rows; index++)
         {
-            //list of small pieces that make a piece
-            cells.clear();
-
-            //base point of piece
-            Cell base = null;
-
-            for (int row = 0; row < locations.length; row++)
+            //add valid location
+            if (labels[index] >= 0)
+                puzzle.add(index % columns, index / columns);
+        }
+        
+        final List<Shape> shapes = createShapes(labels, columns, rows, total);
+        
+        for (int i = 0; i < shapes.size(); i++)
+        {
+            final PiecesHelper.Type match = Polyominoes.getType(shapes.get(i));
+            
+            if (match == null)
+                throw new Exception("Group does not match any type of piece " + i);
+            
+            puzzle.add(match);
+        }
+        
+        return puzzle;
+    }
+    
+    /**
+     * Split the locations into random connected groups.<br>
+     * Each group grows by merging with neighboring groups of at most MERGE_COUNT_MAX locations,
+     * until no neighbor can be added without going over MAX_SMALL_PIECE_SIZE.
+     * @param random Object used to make random decisions
+     * @param locations The locations that can be part of a group
+     * @param labels Array where the group of each location is stored, -1 if the location is not part of a
+     * group large enough to make a piece, groups are numbered in row-major order of their first location
+     * @return The number of groups
+     */
+    public static int partition(final Random random, final BitBoard locations, final int[] labels)
+    {
+        final int columns = locations.getCols();
+        final int rows = locations.getRows();
+        
+        //the total number of locations, each index is (row * columns) + col
+        final int count = columns * rows;
+        
+        //re-use the arrays of the previous puzzle created on this thread
+        final Workspace workspace = WORKSPACE.get();
+        workspace.reset(count);
+        
+        final DisjointSet groups = workspace.groups;
+        final boolean[] closed = workspace.closed;
+        final int[] frontier = workspace.frontier;
+        final int[] options = workspace.options;
+        
+        int head = 0, tail = 0;
+        
+        //the locations left to check, a location is added to the end again each time its group grows
+        for (int col = 0; col < columns; col++)
+        {
+            for (int row = 0; row < rows; row++)
             {
-                for (int col = 0; col < locations[0].length; col++)
+                final int index = (row * columns) + col;
+                
+                if (locations.get(index))
                 {
-                    if (locations[row][col].hasId(groups.get(i)))
-                    {
-                        cells.add(new Cell(col, row));
-
-                        if (base == null)
-                            base = new Cell(col, row);
-                    }
+                    frontier[tail++] = index;
+                }
+                else
+                {
+                    //locations that aren't used can't be merged with
+                    closed[index] = true;
                 }
             }
+        }
+        
+        while (head < tail)
+        {
+            final int index = frontier[head++];
+            final int root = groups.find(index);
+            
+            //this group is finished
+            if (closed[root])
+                continue;
+            
+            final int col = index % columns;
+            final int row = index / columns;
+            
+            int total = 0;
             
-            //we have enough to create a piece
-            if (cells.size() >= MIN_SMALL_PIECE_SIZE)
+            if (row < rows - 1)
+                total = addOption(groups, closed, root, index + columns, options, total);
+            if (row > 0)
+                total = addOption(groups, closed, root, index - columns, options, total);
+            if (col < columns - 1)
+                total = addOption(groups, closed, root, index + 1, options, total);
+            if (col > 0)
+                total = addOption(groups, closed, root, index - 1, options, total);
+            
+            //if there is no option this group is finished
+            if (total == 0)
             {
-                //create new piece
-                Piece piece = new Piece();
-
-                //add small pieces to puzzle
-                for (int z = 0; z < cells.size(); z++)
-                {
-                    piece.add(cells.get(z).getCol() - base.getCol(), cells.get(z).getRow() - base.getRow());
-                }
-                
-                //choose random color
-                piece.setColor(random.nextInt(200) + 56, random.nextInt(200) + 56, random.nextInt(200) + 56);
-
-                //yes piece is valid
-                piece.setValid(true);
-
-                if (random.nextBoolean())
-                    piece.rotate();
-                if (random.nextBoolean())
-                    piece.flipVertical();
-                if (random.nextBoolean())
-                    piece.flipHorizontal();
-
-                //add piece to list
-                pieces.addPiece(piece);
+                closed[root] = true;
+                continue;
+            }
+            
+            //pick random neighbor to merge with
+            final int merged = groups.union(root, options[random.nextInt(total)]);
+            
+            //if meet maximum requirements the group is finished, otherwise check this location again later
+            if (groups.getGroupSize(merged) >= MAX_SMALL_PIECE_SIZE)
+            {
+                closed[merged] = true;
             }
             else
             {
-                //not enough for piece, so mark all invalid
-                for (int z = 0; z < cells.size(); z++)
-                {
-                    invalid.add(cells.get(z));
-                }
+                frontier[tail++] = index;
             }
         }
         
-        //add valid locations
-        for (int col = 0; col < puzzle.getCols(); col++)
+        //the label of each root, -1 until the root is found
+        final int[] roots = workspace.roots;
+        
+        int total = 0;
+        
+        //give each group large enough to make a piece a label, in the order the groups are found
+        for (int index = 0; index < count; index++)
         {
-            for (int row = 0; row < puzzle.getRows(); row++)
+            final int root = groups.find(index);
+            
+            //groups that are too small to make a piece are not part of the puzzle
+            if (!locations.get(index) || groups.getGroupSize(root) < MIN_SMALL_PIECE_SIZE)
             {
-                boolean valid = true;
-                
-                for (int z = 0; z < invalid.size(); z++)
-                {
-                    //if invalid mark valid false
-                    if (invalid.get(z).equals(col, row))
-                    {
-                        valid = false;
-                        break;
-                    }
-                }
+                labels[index] = -1;
+                continue;
+            }
+            
+            if (roots[root] < 0)
+                roots[root] = total++;
+            
+            labels[index] = roots[root];
+        }
+        
+        return total;
+    }
+    
+    /**
+     * Create the shape of each group
+     * @param labels The group of each location, -1 if the location is not part of a group
+     * @param columns The number of columns
+     * @param rows The number of rows
+     * @param total The number of groups
+     * @return The shape of each group in order of the labels, groups with the same geometry share one interned shape
+     */
+    public static List<Shape> createShapes(final int[] labels, final int columns, final int rows, final int total)
+    {
+        final int count = columns * rows;
+        
+        final Workspace workspace = WORKSPACE.get();
+        
+        //the labels may be in the workspace so only grow the arrays we need here
+        if (workspace.starts.length < total + 1 || workspace.sorted.length < count)
+        {
+            workspace.starts = new int[Math.max(total + 1, count + 1)];
+            workspace.next = new int[Math.max(total, count)];
+            workspace.sorted = new int[count];
+        }
+        
+        //the first location of each label in the sorted locations
+        final int[] starts = workspace.starts;
+        final int[] sorted = workspace.sorted;
+        final int[] next = workspace.next;
+        
+        Arrays.fill(starts, 0, total + 1, 0);
+        
+        //count the size of each label
+        for (int index = 0; index < count; index++)
+        {
+            if (labels[index] >= 0)
+                starts[labels[index] + 1]++;
+        }
+        
+        for (int label = 0; label < total; label++)
+        {
+            starts[label + 1] += starts[label];
+        }
+        
+        //sort the locations by label, each label stays in row-major order
+        System.arraycopy(starts, 0, next, 0, total);
+        
+        for (int index = 0; index < count; index++)
+        {
+            if (labels[index] >= 0)
+                sorted[next[labels[index]]++] = index;
+        }
+        
+        //the location of each small piece compared to the base
+        final int[] pieceCols = workspace.pieceCols;
+        final int[] pieceRows = workspace.pieceRows;
+        
+        final List<Shape> shapes = new ArrayList<>(total);
+        
+        for (int label = 0; label < total; label++)
+        {
+            //base point of piece
+            final int base = sorted[starts[label]];
+            final int size = starts[label + 1] - starts[label];
+            
+            for (int z = 0; z < size; z++)
+            {
+                final int index = sorted[starts[label] + z];
                 
-                if (valid)
-                    puzzle.add(col, row);
+                pieceCols[z] = (index % columns) - (base % columns);
+                pieceRows[z] = (index / columns) - (base / columns);
             }
+            
+            //identical groups share one shape
+            shapes.add(Polyominoes.intern(pieceCols, pieceRows, size));
         }
         
-        return puzzle;
+        return shapes;
     }
     
     /**
@@ -0,0 +1,226 @@
+package com.gamesbykevin.daedalianopus.puzzle;
+
+import com.gamesbykevin.framework.resources.Disposable;
+
+import com.gamesbykevin.daedalianopus.puzzle.piece.Piece;
+import com.gamesbykevin.daedalianopus.puzzle.piece.Pieces;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Keeps random puzzles ready for the selected difficulty.<br>
+ * A background thread creates each puzzle with its pieces already scrambled,
+ * so starting the next random level only has to take one from the queue.
+ * Only the difficulty being played is kept ready, when another one is selected the queue is emptied and filled again.
+ * @author GOD
+ */
+public final class PuzzlePool implements Disposable
+{
+    /**
+     * The default number of puzzles kept ready
+     */
+    public static final int DEFAULT_CAPACITY = 3;
+
+    //the puzzles ready for the selected difficulty
+    private final BlockingQueue<Prepared> queue;
+
+    //the difficulty of the puzzles kept ready
+    private volatile PuzzleHelper.Difficulty difficulty;
+
+    //used to position the puzzles
+    private final Puzzles puzzles;
+
+    //the thread creating the puzzles
+    private Thread thread;
+
+    //is the pool still running
+    private volatile boolean running = true;
+
+    /**
+     * A random puzzle and its pieces
+     */
+    public static final class Prepared
+    {
+        private final Puzzle puzzle;
+        private final List<Piece> pieces;
+
+        private Prepared(final Puzzle puzzle, final List<Piece> pieces)
+        {
+            this.puzzle = puzzle;
+            this.pieces = pieces;
+        }
+
+        public Puzzle getPuzzle()
+        {
+            return this.puzzle;
+        }
+
+        /**
+         * Get the pieces of the puzzle
+         * @return The pieces, already positioned around the puzzle
+         */
+        public List<Piece> getPieces()
+        {
+            return this.pieces;
+        }
+    }
+
+    /**
+     * Create the pool and start filling it
+     * @param puzzles Used to position each puzzle the same way the game does
+     * @param seed Seed of the random numbers used to create the puzzles
+     * @param capacity The number of puzzles to keep ready
+     * @param difficulty The difficulty selected
+     */
+    public PuzzlePool(final Puzzles puzzles, final long seed, final int capacity, final PuzzleHelper.Difficulty difficulty)
+    {
+        this.puzzles = puzzles;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.difficulty = difficulty;
+
+        this.thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                fill(new Random(seed));
+            }
+        }, "PuzzlePool");
+
+        //the thread should not keep the game running or take time from it
+        this.thread.setDaemon(true);
+        this.thread.setPriority(Thread.MIN_PRIORITY);
+        this.thread.start();
+    }
+
+    /**
+     * Keep the queue full until the pool is disposed, this runs on the background thread
+     * @param random Object used to make random decisions
+     */
+    private void fill(final Random random)
+    {
+        //the pieces are created here and then handed to the game
+        final Pieces pieces = new Pieces();
+
+        try
+        {
+            while (running)
+            {
+                //wait until a puzzle is taken or another difficulty is selected
+                synchronized (this)
+                {
+                    while (running && queue.remainingCapacity() == 0)
+                    {
+                        wait();
+                    }
+                }
+
+                if (!running)
+                    break;
+
+                final PuzzleHelper.Difficulty tmp = difficulty;
+
+                //create the puzzle and scramble the pieces around it
+                final Puzzle puzzle = PuzzleHelper.createRandom(random, pieces, tmp);
+                puzzles.resetLocation(puzzle);
+
+                //don't keep puzzles where some pieces would be off the screen
+                if (!pieces.scramble(puzzle, random))
+                {
+                    pieces.removeRandomPieces();
+                    continue;
+                }
+
+                final List<Piece> created = pieces.getPiecesInPlay();
+
+                //let go of the pieces before the game can use them
+                pieces.removeRandomPieces();
+
+                synchronized (this)
+                {
+                    //the puzzle is thrown away if another difficulty was selected while it was created
+                    if (tmp == difficulty)
+                        queue.offer(new Prepared(puzzle, created));
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            //the pool was disposed
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+        finally
+        {
+            pieces.dispose();
+        }
+    }
+
+    /**
+     * Set the difficulty of the puzzles kept ready, the puzzles of any other difficulty are thrown away
+     * @param difficulty The difficulty selected
+     */
+    public synchronized void setDifficulty(final PuzzleHelper.Difficulty difficulty)
+    {
+        if (this.difficulty == difficulty)
+            return;
+
+        this.difficulty = difficulty;
+
+        queue.clear();
+
+        //let the thread know there is room for puzzles of the new difficulty
+        notifyAll();
+    }
+
+    public PuzzleHelper.Difficulty getDifficulty()
+    {
+        return this.difficulty;
+    }
+
+    /**
+     * Take a puzzle without waiting
+     * @param difficulty The difficulty of the puzzle, if it isn't the one kept ready it will be from now on
+     * @return The puzzle and its pieces, null if none are ready yet
+     */
+    public synchronized Prepared poll(final PuzzleHelper.Difficulty difficulty)
+    {
+        setDifficulty(difficulty);
+
+        final Prepared prepared = queue.poll();
+
+        //let the thread know there is room for another puzzle
+        if (prepared != null)
+            notifyAll();
+
+        return prepared;
+    }
+
+    /**
+     * Get the number of puzzles ready
+     * @return The number of puzzles of the selected difficulty waiting in the queue
+     */
+    public int getReadyCount()
+    {
+        return queue.size();
+    }
+
+    @Override
+    public void dispose()
+    {
+        running = false;
+
+        if (thread != null)
+        {
+            thread.interrupt();
+            thread = null;
+        }
+
+        queue.clear();
+    }
+}
@@ -6,13 +6,20 @@ import com.gamesbykevin.framework.resources.Disposable;
 import com.gamesbykevin.framework.util.Timer;
 
 import com.gamesbykevin.daedalianopus.engine.Engine;
+import com.gamesbykevin.daedalianopus.puzzle.piece.Piece;
 import com.gamesbykevin.daedalianopus.puzzle.piece.Pieces;
 import com.gamesbykevin.daedalianopus.resources.GameAudio;
 import com.gamesbykevin.daedalianopus.resources.GameImages;
+import com.gamesbykevin.daedalianopus.shared.DirtyRegion;
 import com.gamesbykevin.daedalianopus.shared.IElement;
+import com.gamesbykevin.daedalianopus.solver.Hints;
+import com.gamesbykevin.daedalianopus.solver.Placement;
+import com.gamesbykevin.daedalianopus.solver.Rater;
+import com.gamesbykevin.daedalianopus.solver.Rating;
 import com.gamesbykevin.framework.util.Timers;
 import java.awt.Color;
 
+import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Image;
 import java.awt.Point;
@@ -53,6 +60,27 @@ public final class Puzzles implements Disposable, IElement
     //time until next level
     private static final long NEXT_LEVEL_COUNTDOWN = Timers.toNanoSeconds(5000L);
     
+    //object used to find the next correct placement
+    private Hints hints;
+    
+    //how long we will search for a hint
+    private static final long HINT_TIME_LIMIT = Timers.toNanoSeconds(1000L);
+    
+    //the part of the puzzle that is on the screen
+    private Viewport viewport;
+    
+    //where the time is drawn
+    private static final int TIMER_X = 225, TIMER_Y = 40;
+    
+    //the area of the screen the time was last drawn in, empty until the time is drawn
+    private final Rectangle timerBounds = new Rectangle();
+    
+    //the time and countdown that were last drawn, only what changed is drawn again
+    private String timerDesc, countdownDesc;
+    
+    //the status of the hint that was last drawn
+    private Hints.Status hintStatus;
+    
     public Puzzles(final Engine engine)
     {
         //store the mouse image
@@ -67,9 +95,15 @@ public final class Puzzles implements Disposable, IElement
         //create new countdown
         this.countdown = new Timer(NEXT_LEVEL_COUNTDOWN);
         
+        //create the hint engine
+        this.hints = new Hints(HINT_TIME_LIMIT);
+        
         //the location of the cursor
         this.location = new Cell();
         
+        //the screen follows the cursor on puzzles that don't fit
+        this.viewport = new Viewport(window);
+        
         //center place of map
         this.center = new Point(window.x + (window.width / 2), window.y + (window.height / 2));
         
@@ -104,8 +138,15 @@ public final class Puzzles implements Disposable, IElement
             puzzles.set(i, null);
         }
         
+        if (hints != null)
+        {
+            hints.dispose();
+            hints = null;
+        }
+        
         this.timer = null;
         this.center = null;
+        this.viewport = null;
         
         this.puzzles.clear();
         this.puzzles = null;
@@ -114,9 +155,21 @@ public final class Puzzles implements Disposable, IElement
     @Override
     public void update(final Engine engine) throws Exception
     {
+        //the area of the screen that changed
+        final DirtyRegion dirty = engine.getDirtyRegion();
+        
         //don't continue if we solved the puzzle
         if (getPuzzle().isSolved())
         {
+            //the countdown is drawn again each time the displayed time changes
+            final String desc = countdown.getDescRemaining(Timers.FORMAT_5);
+            
+            if (!desc.equals(countdownDesc))
+            {
+                countdownDesc = desc;
+                dirty.markAll();
+            }
+            
             if (countdown.hasTimePassed())
             {
                 //reset timers
@@ -138,6 +191,33 @@ public final class Puzzles implements Disposable, IElement
         //update timer
         timer.update(engine.getMain().getTime());
         
+        //only the time is drawn again when the displayed time changes
+        final String desc = timer.getDescPassed(Timers.FORMAT_3);
+        
+        if (!desc.equals(timerDesc))
+        {
+            timerDesc = desc;
+            
+            if (timerBounds.isEmpty())
+            {
+                dirty.markAll();
+            }
+            else
+            {
+                dirty.mark(timerBounds);
+            }
+        }
+        
+        //the hint is searched for in the background so its status can change at any time
+        if (hints.getStatus() != hintStatus)
+        {
+            hintStatus = hints.getStatus();
+            dirty.markAll();
+        }
+        
+        //was a key handled
+        boolean input = true;
+        
         //get keyboard input
         Keyboard keyboard = engine.getKeyboard();
         
@@ -151,7 +231,7 @@ public final class Puzzles implements Disposable, IElement
             //update selected piece location
             if (pieces.hasSelection())
             {
-                pieces.getSelection().setCol(location);
+                pieces.getSelection().setAnchor(location);
                 
                 //play move sound effect
                 engine.getResources().playGameAudio(GameAudio.Keys.SfxMove);
@@ -164,7 +244,7 @@ public final class Puzzles implements Disposable, IElement
             //update selected piece location
             if (pieces.hasSelection())
             {
-                pieces.getSelection().setCol(location);
+                pieces.getSelection().setAnchor(location);
                 
                 //play move sound effect
                 engine.getResources().playGameAudio(GameAudio.Keys.SfxMove);
@@ -180,7 +260,7 @@ public final class Puzzles implements Disposable, IElement
             //update selected piece location
             if (pieces.hasSelection())
             {
-                pieces.getSelection().setRow(location);
+                pieces.getSelection().setAnchor(location);
                 
                 //play move sound effect
                 engine.getResources().playGameAudio(GameAudio.Keys.SfxMove);
@@ -193,7 +273,7 @@ public final class Puzzles implements Disposable, IElement
             //update selected piece location
             if (pieces.hasSelection())
             {
-                pieces.getSelection().setRow(location);
+                pieces.getSelection().setAnchor(location);
                 
                 //play move sound effect
                 engine.getResources().playGameAudio(GameAudio.Keys.SfxMove);
@@ -229,8 +309,17 @@ public final class Puzzles implements Disposable, IElement
                 engine.getResources().playGameAudio(GameAudio.Keys.SfxFlip);
             }
         }
+        else if (keyboard.hasKeyPressed(KeyEvent.VK_H))
+        {
+            //look for a hint when the player isn't holding a piece
+            if (!pieces.hasSelection())
+                hints.request(getPuzzle(), pieces.getPiecesInPlay());
+        }
         else if (keyboard.hasKeyPressed(KeyEvent.VK_ENTER))
         {
+            //any hint no longer applies once the pieces change
+            hints.reset();
+            
             //if there is already a selected piece
             if (pieces.hasSelection())
             {
@@ -249,8 +338,8 @@ public final class Puzzles implements Disposable, IElement
                         //no longer hide cursor
                         hide = false;
 
-                        //unselect current
-                        pieces.setSelection(Pieces.NO_SELECTION);
+                        //place the current piece and unselect it
+                        pieces.placeSelection(getPuzzle());
 
                         if (pieces.hasSolved(getPuzzle()))
                         {
@@ -295,11 +384,26 @@ public final class Puzzles implements Disposable, IElement
                 if (hide)
                 {
                     engine.getResources().playGameAudio(GameAudio.Keys.SfxPickup);
-                    pieces.getSelection().setCol(location);
-                    pieces.getSelection().setRow(location);
+                    
+                    //the piece is held at its anchor, so the cursor moves to it instead of the piece moving
+                    location.setCol(pieces.getSelection().getAnchorCol());
+                    location.setRow(pieces.getSelection().getAnchorRow());
                 }
             }
         }
+        else
+        {
+            //no key was pressed
+            input = false;
+        }
+        
+        //the cursor and pieces are drawn again after any key
+        if (input)
+            dirty.markAll();
+        
+        //keep the cursor on the screen if the puzzle is too large to fit
+        if (Viewport.hasScrolling(getPuzzle()))
+            viewport.follow(getPuzzle(), (int)location.getCol(), (int)location.getRow());
         
         //reset input
         keyboard.reset();
@@ -307,13 +411,22 @@ public final class Puzzles implements Disposable, IElement
     
     /**
      * Get the puzzle count
-     * @return The total number of campaign puzzles
+     * @return The total number of campaign puzzles, including the generated levels added
      */
     public int getPuzzlesCount()
     {
         return this.puzzles.size();
     }
     
+    /**
+     * Add a generated level after the campaign puzzles
+     * @param level The level, every piece of the level is valid for play
+     */
+    public void addLevel(final Puzzle level)
+    {
+        this.puzzles.add(level);
+    }
+    
     /**
      * The index of the current puzzle in play
      * @return The index of the list of the current puzzle
@@ -323,6 +436,15 @@ public final class Puzzles implements Disposable, IElement
         return this.index;
     }
     
+    /**
+     * Get the rating of the current campaign puzzle
+     * @return The rating, null if a random puzzle is in play or the puzzle isn't rated
+     */
+    public Rating getRating()
+    {
+        return (getCurrent() < 0) ? null : getPuzzle().getRating();
+    }
+    
     /**
      * Set the current puzzle we are to play
      * @param index The position in the list of puzzles that we want to play.
@@ -332,6 +454,13 @@ public final class Puzzles implements Disposable, IElement
         //store index location
         this.index = index;
         
+        //a standard level is rated when it is started, generated levels were rated when they were created
+        if (index >= 0 && index < PuzzleHelper.Type.values().length && puzzles.get(index).getRating() == null)
+            puzzles.get(index).setRating(Rater.getRating(PuzzleHelper.Type.values()[index]));
+        
+        //the hint was for the previous puzzle
+        this.hints.reset();
+        
         //reset timer when setting puzzle
         this.timer.reset();
     }
@@ -342,14 +471,23 @@ public final class Puzzles implements Disposable, IElement
     public void resetPuzzleLocation()
     {
         //now that current puzzle is set, position in center
-        getPuzzle().setLocation(
-            center.x - ((getPuzzle().getCols() / 2) * Puzzle.BLOCK_SIZE), 
-            center.y - ((getPuzzle().getRows() / 2) * Puzzle.BLOCK_SIZE));
+        resetLocation(getPuzzle());
         
         //reset cursor location
         resetCursorLocation();
     }
     
+    /**
+     * Position the puzzle in the center
+     * @param puzzle The puzzle we want to position
+     */
+    public void resetLocation(final Puzzle puzzle)
+    {
+        puzzle.setLocation(
+            center.x - ((puzzle.getCols() / 2) * Puzzle.BLOCK_SIZE), 
+            center.y - ((puzzle.getRows() / 2) * Puzzle.BLOCK_SIZE));
+    }
+    
     /**
      * Reset the cursor to be in the center of the puzzle
      */
@@ -370,6 +508,18 @@ public final class Puzzles implements Disposable, IElement
     public void setRandomPuzzle(final Puzzle random)
     {
         this.random = random;
+        
+        //the hint was for the previous puzzle
+        this.hints.reset();
+    }
+    
+    /**
+     * Get the part of the puzzle that is on the screen
+     * @return The viewport
+     */
+    public Viewport getViewport()
+    {
+        return this.viewport;
     }
     
     /**
@@ -395,12 +545,30 @@ public final class Puzzles implements Disposable, IElement
     @Override
     public void render(final Graphics graphics)
     {
-        //draw puzzle
-        getPuzzle().render(graphics);
+        //draw the visible part of the puzzle
+        getPuzzle().render(graphics, viewport);
         
+        //draw game status
+        renderStatus(graphics);
+    }
+    
+    /**
+     * Draw the status message(s), the time, level and hint status
+     * @param graphics
+     */
+    public void renderStatus(final Graphics graphics)
+    {
         //draw game status
         graphics.setColor(Color.BLACK);
-        graphics.drawString("Time - " + timer.getDescPassed(Timers.FORMAT_3), 225, 40);
+        graphics.drawString("Time - " + timer.getDescPassed(Timers.FORMAT_3), TIMER_X, TIMER_Y);
+        
+        //the time can get wider, so the area reaches the right side of the screen
+        final FontMetrics metrics = graphics.getFontMetrics();
+        final Rectangle screen = viewport.getScreen();
+        
+        timerBounds.setBounds(
+            TIMER_X, TIMER_Y - metrics.getAscent(), 
+            screen.x + screen.width - TIMER_X, metrics.getAscent() + metrics.getDescent());
         
         if (getPuzzle().isSolved())
         {
@@ -410,12 +578,69 @@ public final class Puzzles implements Disposable, IElement
         {
             if (getCurrent() > -1)
             {
-                graphics.drawString("Level - " + (index+1), 50, 40);
+                final Rating rating = getRating();
+                
+                if (rating != null)
+                {
+                    graphics.drawString("Level - " + (index+1) + " (" + rating.getDifficulty() + ")", 50, 40);
+                }
+                else
+                {
+                    graphics.drawString("Level - " + (index+1), 50, 40);
+                }
             }
             else
             {
                 graphics.drawString("Random", 50, 40);
             }
+            
+            //display the status of the hint
+            switch (hints.getStatus())
+            {
+                case Searching:
+                    graphics.drawString("Hint - Searching", 50, 370);
+                    break;
+                    
+                case Unsolvable:
+                    graphics.drawString("Hint - No Solution", 50, 370);
+                    break;
+                    
+                case TimedOut:
+                    graphics.drawString("Hint - Not Found", 50, 370);
+                    break;
+                    
+                case Unavailable:
+                    graphics.drawString("Hint - Not Available", 50, 370);
+                    break;
+            }
+        }
+    }
+    
+    /**
+     * Draw where the hint piece goes
+     * @param graphics 
+     */
+    public void renderHint(final Graphics graphics)
+    {
+        //the hint is read once since it can be replaced at any time
+        final Hints.Result result = hints.getResult();
+        final Piece piece = result.getPiece();
+        final Placement placement = result.getPlacement();
+        
+        if (piece == null || placement == null || getPuzzle().isSolved())
+            return;
+        
+        graphics.setColor(Color.YELLOW);
+        
+        for (int i = 0; i < piece.getShape().getSize(); i++)
+        {
+            final int col = placement.getCol() + piece.getShape().getCol(placement.getOrientation(), i);
+            final int row = placement.getRow() + piece.getShape().getRow(placement.getOrientation(), i);
+            
+            final int x = (int)(getPuzzle().getX() + (col * Puzzle.BLOCK_SIZE));
+            final int y = (int)(getPuzzle().getY() + (row * Puzzle.BLOCK_SIZE));
+            
+            graphics.drawRect(x + 2, y + 2, Puzzle.BLOCK_SIZE - 4, Puzzle.BLOCK_SIZE - 4);
         }
     }
     
@@ -425,7 +650,7 @@ public final class Puzzles implements Disposable, IElement
      */
     public void renderOutline(final Graphics graphics)
     {
-        getPuzzle().renderOutline(graphics);
+        getPuzzle().renderOutline(graphics, viewport);
     }
     
     /**
@@ -0,0 +1,116 @@
+package com.gamesbykevin.daedalianopus.puzzle;
+
+import com.gamesbykevin.daedalianopus.shared.Shared;
+
+import java.awt.Rectangle;
+
+/**
+ * The part of the puzzle that is visible on the screen.<br>
+ * A puzzle larger than the screen is moved so the cursor stays visible, which is how the camera scrolls,
+ * and only the locations on the screen are drawn so the time to draw doesn't depend on the size of the puzzle.
+ * @author GOD
+ */
+public final class Viewport
+{
+    //how many locations are kept between the cursor and the edge of the screen
+    private static final int MARGIN = 4;
+
+    //the area of the screen where the puzzle is drawn
+    private final Rectangle screen;
+
+    public Viewport(final Rectangle screen)
+    {
+        this.screen = new Rectangle(screen);
+    }
+
+    public Rectangle getScreen()
+    {
+        return this.screen;
+    }
+
+    /**
+     * Is the puzzle too large to fit on the screen, or set to scroll because its pieces don't fit
+     * @param puzzle The puzzle
+     * @return true if the puzzle has to scroll to be seen, false otherwise
+     */
+    public static boolean hasScrolling(final Puzzle puzzle)
+    {
+        return (puzzle.hasScrolling() || puzzle.getCols() * Puzzle.BLOCK_SIZE > Shared.ORIGINAL_WIDTH || puzzle.getRows() * Puzzle.BLOCK_SIZE > Shared.ORIGINAL_HEIGHT);
+    }
+
+    /**
+     * Move the puzzle so the location is on the screen
+     * @param puzzle The puzzle
+     * @param col Column of the location
+     * @param row Row of the location
+     */
+    public void follow(final Puzzle puzzle, final int col, final int row)
+    {
+        final int x = (int)puzzle.getX() + (col * Puzzle.BLOCK_SIZE);
+        final int y = (int)puzzle.getY() + (row * Puzzle.BLOCK_SIZE);
+
+        //the area the location has to stay inside
+        final int minX = screen.x + (MARGIN * Puzzle.BLOCK_SIZE);
+        final int minY = screen.y + (MARGIN * Puzzle.BLOCK_SIZE);
+        final int maxX = screen.x + screen.width - ((MARGIN + 1) * Puzzle.BLOCK_SIZE);
+        final int maxY = screen.y + screen.height - ((MARGIN + 1) * Puzzle.BLOCK_SIZE);
+
+        if (x < minX)
+        {
+            puzzle.setX(puzzle.getX() + (minX - x));
+        }
+        else if (x > maxX)
+        {
+            puzzle.setX(puzzle.getX() - (x - maxX));
+        }
+
+        if (y < minY)
+        {
+            puzzle.setY(puzzle.getY() + (minY - y));
+        }
+        else if (y > maxY)
+        {
+            puzzle.setY(puzzle.getY() - (y - maxY));
+        }
+    }
+
+    /**
+     * Get the first column on the screen
+     * @param puzzle The puzzle
+     * @return The column, which may be outside of the puzzle
+     */
+    public int getStartCol(final Puzzle puzzle)
+    {
+        return (int)Math.floor((screen.x - puzzle.getX()) / Puzzle.BLOCK_SIZE);
+    }
+
+    /**
+     * Get the column after the last column on the screen
+     * @param puzzle The puzzle
+     * @return The column, which may be outside of the puzzle
+     */
+    public int getEndCol(final Puzzle puzzle)
+    {
+        return (int)Math.ceil((screen.x + screen.width - puzzle.getX()) / Puzzle.BLOCK_SIZE);
+    }
+
+    /**
+     * Get the first row on the screen
+     * @param puzzle The puzzle
+     * @return The row, which may be outside of the puzzle
+     */
+    public int getStartRow(final Puzzle puzzle)
+    {
+        return (int)Math.floor((screen.y - puzzle.getY()) / Puzzle.BLOCK_SIZE);
+    }
+
+    /**
+     * Get the row after the last row on the screen
+     * @param puzzle The puzzle
+     * @return The row, which may be outside of the puzzle
+     */
+    public int getEndRow(final Puzzle puzzle)
+    {
+        return (int)Math.ceil((screen.y + screen.height - puzzle.getY()) / Puzzle.BLOCK_SIZE);
+    }
+}
@@ -0,0 +1,156 @@
+package com.gamesbykevin.daedalianopus.puzzle.piece;
+
+import java.util.Arrays;
+
+/**
+ * Grid that maps each (column, row) to the piece that currently owns it.<br>
+ * Locations are relative to the puzzle and cover both the puzzle and the area around it,
+ * the grid will grow when a piece is placed outside of the current bounds.
+ * @author GOD
+ */
+final class Occupancy
+{
+    //extra space added on each side when the grid grows
+    private static final int PADDING = 8;
+
+    //the location of the top-left of the grid
+    private int startCol, startRow;
+
+    //the dimensions of the grid
+    private int cols, rows;
+
+    //the owner of each location, null if empty
+    private Piece[] owners;
+
+    protected Occupancy()
+    {
+        this.owners = new Piece[0];
+    }
+
+    /**
+     * Remove all pieces from the grid
+     */
+    protected void clear()
+    {
+        Arrays.fill(owners, null);
+    }
+
+    /**
+     * Get the piece at the location
+     * @param col Column
+     * @param row Row
+     * @return The piece occupying the location, null if no piece exists
+     */
+    protected Piece get(final int col, final int row)
+    {
+        final int x = col - startCol;
+        final int y = row - startRow;
+
+        if (x < 0 || y < 0 || x >= cols || y >= rows)
+            return null;
+
+        return owners[(y * cols) + x];
+    }
+
+    /**
+     * Does any part of the piece land on a location owned by another piece
+     * @param piece The piece we want to check
+     * @return true if a different piece owns one of the locations, false otherwise
+     */
+    protected boolean intersects(final Piece piece)
+    {
+        final int col = (int)piece.getCol();
+        final int row = (int)piece.getRow();
+
+        for (int i = 0; i < piece.getSmallPieceCount(); i++)
+        {
+            final Piece owner = get(col + piece.getSmallCol(i), row + piece.getSmallRow(i));
+
+            if (owner != null && owner != piece)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Mark the locations of the piece as owned by the piece
+     * @param piece The piece we are placing
+     */
+    protected void add(final Piece piece)
+    {
+        final int col = (int)piece.getCol();
+        final int row = (int)piece.getRow();
+
+        //make sure the grid is large enough
+        grow(col, row, col + piece.getShape().getWidth(piece.getOrientation()), row + piece.getShape().getHeight(piece.getOrientation()));
+
+        for (int i = 0; i < piece.getSmallPieceCount(); i++)
+        {
+            final int x = col + piece.getSmallCol(i) - startCol;
+            final int y = row + piece.getSmallRow(i) - startRow;
+
+            owners[(y * cols) + x] = piece;
+        }
+    }
+
+    /**
+     * Remove the piece from the locations it currently occupies
+     * @param piece The piece we are picking up
+     */
+    protected void remove(final Piece piece)
+    {
+        final int col = (int)piece.getCol();
+        final int row = (int)piece.getRow();
+
+        for (int i = 0; i < piece.getSmallPieceCount(); i++)
+        {
+            final int x = col + piece.getSmallCol(i) - startCol;
+            final int y = row + piece.getSmallRow(i) - startRow;
+
+            if (x < 0 || y < 0 || x >= cols || y >= rows)
+                continue;
+
+            //only remove if the location belongs to this piece
+            if (owners[(y * cols) + x] == piece)
+                owners[(y * cols) + x] = null;
+        }
+    }
+
+    /**
+     * Make sure the grid covers the area
+     * @param col1 Start column
+     * @param row1 Start row
+     * @param col2 End column (exclusive)
+     * @param row2 End row (exclusive)
+     */
+    private void grow(final int col1, final int row1, final int col2, final int row2)
+    {
+        //if the area is already covered there is nothing to do
+        if (col1 >= startCol && row1 >= startRow && col2 <= startCol + cols && row2 <= startRow + rows)
+            return;
+
+        //the new bounds will contain the old bounds and the area plus padding
+        final int newStartCol = (cols == 0) ? col1 - PADDING : Math.min(startCol, col1 - PADDING);
+        final int newStartRow = (rows == 0) ? row1 - PADDING : Math.min(startRow, row1 - PADDING);
+        final int newEndCol = (cols == 0) ? col2 + PADDING : Math.max(startCol + cols, col2 + PADDING);
+        final int newEndRow = (rows == 0) ? row2 + PADDING : Math.max(startRow + rows, row2 + PADDING);
+
+        final Piece[] tmp = new Piece[(newEndCol - newStartCol) * (newEndRow - newStartRow)];
+
+        //copy the existing owners to their new location
+        for (int y = 0; y < rows; y++)
+        {
+            System.arraycopy(
+                owners, y * cols,
+                tmp, ((y + startRow - newStartRow) * (newEndCol - newStartCol)) + (startCol - newStartCol),
+                cols);
+        }
+
+        this.owners = tmp;
+        this.startCol = newStartCol;
+        this.startRow = newStartRow;
+        this.cols = newEndCol - newStartCol;
+        this.rows = newEndRow - newStartRow;
+    }
+}
@@ -8,13 +8,14 @@ import com.gamesbykevin.framework.resources.Disposable;
 
 import java.awt.Color;
 import java.awt.Graphics;
-import java.util.ArrayList;
-import java.util.List;
 
 public final class Piece extends Sprite implements Disposable
 {
-    //the little pieces that create this piece
-    private List<Cell> smallPieces;
+    //the geometry of this piece
+    private Shape shape;
+    
+    //the current orientation of the shape
+    private int orientation = 0;
     
     //the color of the piece
     private Color color;
@@ -25,6 +26,9 @@ public final class Piece extends Sprite implements Disposable
     //is the piece currently being used
     private boolean valid = false;
     
+    //has the piece been placed entirely inside the puzzle
+    private boolean placed = false;
+    
     private Type type;
     
     /**
@@ -33,7 +37,7 @@ public final class Piece extends Sprite implements Disposable
      */
     public Piece(final Type type)
     {
-        this();
+        this(PiecesHelper.getShape(type));
         
         //store the type
         this.type = type;
@@ -44,11 +48,12 @@ public final class Piece extends Sprite implements Disposable
     
     /**
      * Create random Piece
+     * @param shape The geometry of the piece
      */
-    public Piece()
+    public Piece(final Shape shape)
     {
-        //create list of small pieces that make this piece
-        this.smallPieces = new ArrayList<>();
+        //store the shape
+        this.shape = shape;
     }
     
     public void setColor(final int red, final int green, final int blue)
@@ -64,17 +69,55 @@ public final class Piece extends Sprite implements Disposable
     }
     
     /**
-     * Get the list of pieces
-     * @return The list of pieces that make up this piece
+     * Get the geometry of this piece
+     * @return The shape containing all orientations
      */
-    public List<Cell> getSmallPieces()
+    public Shape getShape()
     {
-        return this.smallPieces;
+        return this.shape;
+    }
+    
+    /**
+     * Get the current orientation
+     * @return The index of the orientation in the shape
+     */
+    public int getOrientation()
+    {
+        return this.orientation;
+    }
+    
+    /**
+     * Set the current orientation
+     * @param orientation The index of the orientation in the shape
+     */
+    public void setOrientation(final int orientation)
+    {
+        this.orientation = orientation;
     }
     
     public int getSmallPieceCount()
     {
-        return this.smallPieces.size();
+        return this.shape.getSize();
+    }
+    
+    /**
+     * Get the column of the small piece
+     * @param index The small piece
+     * @return The column compared to the origin of this piece (0,0)
+     */
+    public int getSmallCol(final int index)
+    {
+        return shape.getCol(orientation, index);
+    }
+    
+    /**
+     * Get the row of the small piece
+     * @param index The small piece
+     * @return The row compared to the origin of this piece (0,0)
+     */
+    public int getSmallRow(final int index)
+    {
+        return shape.getRow(orientation, index);
     }
     
     /**
@@ -96,74 +139,85 @@ public final class Piece extends Sprite implements Disposable
     }
     
     /**
-     * Add small piece to this Piece
-     * @param cell The location of the small piece compared to the origin of this piece (0,0)
+     * Flag the piece as placed entirely inside the puzzle
+     * @param placed true if every small piece is on the puzzle, false otherwise
      */
-    public void add(final Cell cell)
-    {
-        add((int)cell.getCol(), (int)cell.getRow());
-    }
-    
-    public void add(final double col, final double row)
+    public void setPlaced(final boolean placed)
     {
-        add((int)col, (int)row);
+        this.placed = placed;
     }
     
-    public void add(final int col, final int row)
+    /**
+     * Has this piece been placed entirely inside the puzzle
+     * @return true if so, false otherwise
+     */
+    public boolean isPlaced()
     {
-        this.smallPieces.add(new Cell(col, row));
+        return this.placed;
     }
     
     /**
-     * Rotate the piece 90 degrees
+     * Rotate the piece 90 degrees around its anchor
      */
     public void rotate()
     {
-        for (int i = 0; i < smallPieces.size(); i++)
-        {
-            //get the currect part of this piece
-            Cell cell = smallPieces.get(i);
-            
-            //store the current location
-            final double col = smallPieces.get(i).getCol();
-            final double row = smallPieces.get(i).getRow();
-            
-            //now flip the piece
-            cell.setCol(row);
-            cell.setRow(-col);
-        }
+        turn(shape.rotate(orientation));
     }
     
     /**
-     * Flip the piece horizontal
+     * Flip the piece horizontal around its anchor
      */
     public void flipHorizontal()
     {
-        //while flipping horizontal the y (row) will stay the same only the x (column) will change
-        for (int i = 0; i < smallPieces.size(); i++)
-        {
-            //get the currect part of this piece
-            Cell cell = smallPieces.get(i);
-            
-            //flip column
-            cell.setCol(-cell.getCol());
-        }
+        turn(shape.flipHorizontal(orientation));
     }
     
     /**
-     * Flip the piece vertical
+     * Flip the piece vertical around its anchor
      */
     public void flipVertical()
     {
-        //while flipping vertical the x (column) will stay the same only the y (row) will change
-        for (int i = 0; i < smallPieces.size(); i++)
-        {
-            //get the currect part of this piece
-            Cell cell = smallPieces.get(i);
-            
-            //flip row
-            cell.setRow(-cell.getRow());
-        }
+        turn(shape.flipVertical(orientation));
+    }
+    
+    /**
+     * Change the orientation while the anchor stays at the same location
+     * @param next The new orientation
+     */
+    private void turn(final int next)
+    {
+        setCol(getCol() + shape.getAnchorCol(orientation) - shape.getAnchorCol(next));
+        setRow(getRow() + shape.getAnchorRow(orientation) - shape.getAnchorRow(next));
+        
+        this.orientation = next;
+    }
+    
+    /**
+     * Get the column of the anchor, the location the piece is held and turned at
+     * @return The column
+     */
+    public int getAnchorCol()
+    {
+        return (int)getCol() + shape.getAnchorCol(orientation);
+    }
+    
+    /**
+     * Get the row of the anchor, the location the piece is held and turned at
+     * @return The row
+     */
+    public int getAnchorRow()
+    {
+        return (int)getRow() + shape.getAnchorRow(orientation);
+    }
+    
+    /**
+     * Move the piece so its anchor is at the location
+     * @param location The location
+     */
+    public void setAnchor(final Cell location)
+    {
+        setCol(location.getCol() - shape.getAnchorCol(orientation));
+        setRow(location.getRow() - shape.getAnchorRow(orientation));
     }
     
     @Override
@@ -171,8 +225,7 @@ public final class Piece extends Sprite implements Disposable
     {
         this.type = null;
         this.color = null;
-        this.smallPieces.clear();
-        this.smallPieces = null;
+        this.shape = null;
     }
     
     /**
@@ -182,15 +235,13 @@ public final class Piece extends Sprite implements Disposable
      */
     public boolean hasCollision(final Piece piece)
     {
-        for (int i = 0; i < piece.getSmallPieces().size(); i++)
+        final int col = (int)piece.getCol();
+        final int row = (int)piece.getRow();
+        
+        for (int i = 0; i < piece.getSmallPieceCount(); i++)
         {
-            Cell cell1 = piece.getSmallPieces().get(i);
-            
             //calculate the absolute row, col for this piece
-            final int row1 = (int)(cell1.getRow() + piece.getRow());
-            final int col1 = (int)(cell1.getCol() + piece.getCol());
-            
-            if (hasCollision(col1, row1))
+            if (hasCollision(col + piece.getSmallCol(i), row + piece.getSmallRow(i)))
                 return true;
         }
         
@@ -210,47 +261,52 @@ public final class Piece extends Sprite implements Disposable
      */
     public boolean hasCollision(final int col, final int row)
     {
-        for (int i = 0; i < smallPieces.size(); i++)
-        {
-            Cell cell = smallPieces.get(i);
-            
-            //calculate the absolute row, col for this piece
-            final int row2 = (int)(cell.getRow() + getRow());
-            final int col2 = (int)(cell.getCol() + getCol());
-            
-            //if the (column, row) matches this piece's (col2, row2) we have collision
-            if (col == col2 && row == row2)
-                return true;
-        }
+        //the location compared to the origin of this piece
+        final int x = col - (int)getCol();
+        final int y = row - (int)getRow();
         
-        //no collision found
-        return false;
+        //if outside the dimensions of the current orientation there is no collision
+        if (x < 0 || y < 0 || x >= shape.getWidth(orientation) || y >= shape.getHeight(orientation))
+            return false;
+        
+        //check the bit for this location
+        return ((shape.getMask(orientation) >>> ((y * Shape.MAX_DIMENSION) + x)) & 1L) != 0;
     }
     
-    public void render(final Graphics graphics)
+    /**
+     * Fill one small piece
+     * @param graphics Object used to draw
+     * @param x The x-coordinate of the small piece
+     * @param y The y-coordinate of the small piece
+     */
+    public void renderBlock(final Graphics graphics, final int x, final int y)
     {
         graphics.setColor(color);
-        
-        for (int i = 0; i < smallPieces.size(); i++)
-        {
-            Cell cell = smallPieces.get(i);
-            
-            final int x = (int)(getX() + (cell.getCol() * Puzzle.BLOCK_SIZE));
-            final int y = (int)(getY() + (cell.getRow() * Puzzle.BLOCK_SIZE));
-            
-            graphics.fillRect(x, y, Puzzle.BLOCK_SIZE, Puzzle.BLOCK_SIZE);
-        }
-        
+        graphics.fillRect(x, y, Puzzle.BLOCK_SIZE, Puzzle.BLOCK_SIZE);
+    }
+    
+    /**
+     * Draw the outline of one small piece
+     * @param graphics Object used to draw
+     * @param x The x-coordinate of the small piece
+     * @param y The y-coordinate of the small piece
+     */
+    public void renderBlockOutline(final Graphics graphics, final int x, final int y)
+    {
         graphics.setColor(outline);
-        
-        for (int i = 0; i < smallPieces.size(); i++)
-        {
-            Cell cell = smallPieces.get(i);
-            
-            final int x = (int)(getX() + (cell.getCol() * Puzzle.BLOCK_SIZE));
-            final int y = (int)(getY() + (cell.getRow() * Puzzle.BLOCK_SIZE));
-            
-            graphics.drawRect(x, y, Puzzle.BLOCK_SIZE, Puzzle.BLOCK_SIZE);
-        }
+        graphics.drawRect(x, y, Puzzle.BLOCK_SIZE, Puzzle.BLOCK_SIZE);
+    }
+    
+    /**
+     * Draw the piece at its location, the current orientation is drawn once and then reused as an image
+     * @param graphics Object used to draw
+     */
+    public void render(final Graphics graphics)
+    {
+        graphics.drawImage(
+            PieceSprites.get(shape, orientation, color), 
+            (int)getX() - PieceSprites.PADDING, 
+            (int)getY() - PieceSprites.PADDING, 
+            null);
     }
 }
\ No newline at end of file
@@ -0,0 +1,181 @@
+package com.gamesbykevin.daedalianopus.puzzle.piece;
+
+import com.gamesbykevin.daedalianopus.puzzle.Puzzle;
+import com.gamesbykevin.daedalianopus.shared.Shared;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Images of each orientation of a piece, drawn the first time they are needed.<br>
+ * A piece is drawn as a single image instead of a fill and an outline for every small piece. The images are
+ * shared by every piece with the same shape and color, and since shapes are interned identical pieces share them
+ * as well. Only the most recently used images are kept so random pieces don't fill the memory.
+ * @author GOD
+ */
+public final class PieceSprites
+{
+    /**
+     * The space around the small pieces of an image for the outline
+     */
+    public static final int PADDING = Puzzle.LINE_THICKNESS;
+
+    //the most images kept
+    private static final int MAX_SPRITES = 256;
+
+    //the outline is drawn as thick as the outline of the puzzle
+    private static final BasicStroke STROKE = new BasicStroke(Puzzle.LINE_THICKNESS);
+
+    //the images in order of use, the least recently used is removed first
+    private static final Map<Key, BufferedImage> SPRITES = new LinkedHashMap<Key, BufferedImage>(MAX_SPRITES, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Key, BufferedImage> eldest)
+        {
+            if (size() <= MAX_SPRITES)
+                return false;
+
+            eldest.getValue().flush();
+            return true;
+        }
+    };
+
+    private PieceSprites()
+    {
+        //this class only has static methods
+    }
+
+    /**
+     * Get the image of the orientation
+     * @param shape The shape
+     * @param orientation The orientation of the shape
+     * @param color The fill color, the outline is a darker version of it
+     * @return The image, the first small piece location is PADDING pixels from the top-left
+     */
+    public static synchronized BufferedImage get(final Shape shape, final int orientation, final Color color)
+    {
+        final Key key = new Key(shape, orientation, color.getRGB());
+
+        BufferedImage sprite = SPRITES.get(key);
+
+        if (sprite == null)
+        {
+            sprite = create(shape, orientation, color);
+            SPRITES.put(key, sprite);
+        }
+
+        return sprite;
+    }
+
+    /**
+     * Get the number of images kept
+     * @return The number of images
+     */
+    public static synchronized int getCount()
+    {
+        return SPRITES.size();
+    }
+
+    /**
+     * Remove every image
+     */
+    public static synchronized void clear()
+    {
+        for (BufferedImage sprite : SPRITES.values())
+        {
+            sprite.flush();
+        }
+
+        SPRITES.clear();
+    }
+
+    /**
+     * Draw the orientation into a new image
+     * @param shape The shape
+     * @param orientation The orientation of the shape
+     * @param color The fill color
+     * @return The image
+     */
+    private static BufferedImage create(final Shape shape, final int orientation, final Color color)
+    {
+        //the outline of the last small piece reaches one pixel past the block
+        final int width = (shape.getWidth(orientation) * Puzzle.BLOCK_SIZE) + (PADDING * 2) + 1;
+        final int height = (shape.getHeight(orientation) * Puzzle.BLOCK_SIZE) + (PADDING * 2) + 1;
+
+        //every pixel is either solid or empty, which can be copied faster than partly transparent images
+        final BufferedImage sprite = Shared.createCompatibleImage(width, height, Transparency.BITMASK);
+
+        final Graphics2D graphics = sprite.createGraphics();
+
+        try
+        {
+            graphics.setStroke(STROKE);
+
+            //fill every small piece first so the outlines are drawn on top
+            graphics.setColor(color);
+
+            for (int i = 0; i < shape.getSize(); i++)
+            {
+                final int x = PADDING + (shape.getCol(orientation, i) * Puzzle.BLOCK_SIZE);
+                final int y = PADDING + (shape.getRow(orientation, i) * Puzzle.BLOCK_SIZE);
+
+                graphics.fillRect(x, y, Puzzle.BLOCK_SIZE, Puzzle.BLOCK_SIZE);
+            }
+
+            graphics.setColor(color.darker());
+
+            for (int i = 0; i < shape.getSize(); i++)
+            {
+                final int x = PADDING + (shape.getCol(orientation, i) * Puzzle.BLOCK_SIZE);
+                final int y = PADDING + (shape.getRow(orientation, i) * Puzzle.BLOCK_SIZE);
+
+                graphics.drawRect(x, y, Puzzle.BLOCK_SIZE, Puzzle.BLOCK_SIZE);
+            }
+        }
+        finally
+        {
+            graphics.dispose();
+        }
+
+        return sprite;
+    }
+
+    /**
+     * Identifies an image, shapes are compared by reference since they are interned
+     */
+    private static final class Key
+    {
+        private final Shape shape;
+        private final int orientation;
+        private final int rgb;
+
+        private Key(final Shape shape, final int orientation, final int rgb)
+        {
+            this.shape = shape;
+            this.orientation = orientation;
+            this.rgb = rgb;
+        }
+
+        @Override
+        public boolean equals(final Object object)
+        {
+            if (!(object instanceof Key))
+                return false;
+
+            final Key key = (Key)object;
+
+            return (key.shape == shape && key.orientation == orientation && key.rgb == rgb);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (((System.identityHashCode(shape) * 31) + orientation) * 31) + rgb;
+        }
+    }
+}
@@ -7,7 +7,9 @@ import com.gamesbykevin.daedalianopus.engine.Engine;
 import com.gamesbykevin.daedalianopus.puzzle.piece.PiecesHelper.Type;
 import com.gamesbykevin.daedalianopus.puzzle.Puzzle;
 import com.gamesbykevin.daedalianopus.puzzle.Puzzles;
+import com.gamesbykevin.daedalianopus.puzzle.Viewport;
 import com.gamesbykevin.daedalianopus.shared.IElement;
+import com.gamesbykevin.daedalianopus.shared.Shared;
 
 import java.awt.Graphics;
 import java.awt.Rectangle;
@@ -35,8 +37,24 @@ public final class Pieces implements Disposable, IElement
     //area where pieces can be placed
     private Rectangle piecesArea;
     
+    //which piece occupies each location
+    private Occupancy occupancy;
+    
+    //the number of pieces in play, and how many of those are placed inside the puzzle
+    private int total = 0, placed = 0;
+    
+    //the number of puzzle locations covered by placed pieces
+    private int covered = 0;
+    
+    //the pieces that may look different since they were last drawn, and have all pieces changed
+    private final List<Piece> changed = new ArrayList<>();
+    private boolean changedAll = true;
+    
     public Pieces()
     {
+        //create new grid to track piece locations
+        this.occupancy = new Occupancy();
+        
         //create new area for the pieces
         this.piecesArea = new Rectangle(95, 60, 300, 295);
         
@@ -58,6 +76,8 @@ public final class Pieces implements Disposable, IElement
     public void addPiece(final Piece piece)
     {
         this.pieces.add(piece);
+        
+        markChangedAll();
     }
     
     /**
@@ -71,32 +91,33 @@ public final class Pieces implements Disposable, IElement
             //if no type, then it is a random piece
             if (pieces.get(i).getType() == null)
             {
+                occupancy.remove(pieces.get(i));
                 pieces.remove(i);
                 i--;
             }
         }
+        
+        markChangedAll();
     }
     
     /**
      * Is the current puzzle solved?<br>
-     * @param puzzle
+     * The placed pieces are tracked as they are picked up and placed so no pieces need to be checked here.
+     * @param puzzle The current puzzle
      * @return true if all pieces in play are inside the puzzle, false otherwise
      */
     public boolean hasSolved(final Puzzle puzzle)
     {
-        for (int i = pieces.size() - 1; i >= 0; i--)
-        {
-            Piece piece = getPiece(i);
-            
-            //don't check pieces that aren't marked in play
-            if (piece == null)
-                continue;
-            
-            if (!puzzle.isValid(piece))
-                return false;
-        }
-        
-        return true;
+        return (placed == total && covered == puzzle.getCount());
+    }
+    
+    /**
+     * Get the number of puzzle locations covered
+     * @return The total number of small pieces placed inside the puzzle
+     */
+    public int getCovered()
+    {
+        return this.covered;
     }
     
     public boolean hasSelection()
@@ -134,6 +155,23 @@ public final class Pieces implements Disposable, IElement
         return null;
     }
     
+    /**
+     * Get the pieces currently in play
+     * @return New list containing every piece in play
+     */
+    public List<Piece> getPiecesInPlay()
+    {
+        final List<Piece> tmp = new ArrayList<>();
+        
+        for (int i = 0; i < pieces.size(); i++)
+        {
+            if (getPiece(i) != null)
+                tmp.add(getPiece(i));
+        }
+        
+        return tmp;
+    }
+    
     /**
      * Get the piece
      * @param index Location of piece we want
@@ -154,28 +192,106 @@ public final class Pieces implements Disposable, IElement
      */
     public void setSelection(final Cell location)
     {
-        for (int i = pieces.size() - 1; i >= 0; i--)
+        //get the piece at the location
+        final Piece piece = occupancy.get((int)location.getCol(), (int)location.getRow());
+        
+        if (piece != null && piece.isValid())
         {
-            Piece piece = getPiece(i);
+            //the piece is picked up so it no longer occupies the location
+            occupancy.remove(piece);
             
-            if (piece == null)
-                continue;
-            
-            if (piece.hasCollision(location))
+            //if the piece was in the puzzle it no longer is
+            if (piece.isPlaced())
             {
-                //store selection and return
-                setSelection(i);
-                return;
+                piece.setPlaced(false);
+                placed--;
+                covered -= piece.getSmallPieceCount();
             }
+            
+            //store selection and return
+            setSelection(pieces.indexOf(piece));
+            return;
         }
         
         //nothing was selected so set no selection
         setSelection(NO_SELECTION);
     }
     
+    /**
+     * Place the selected piece at its current location and remove the selection
+     * @param puzzle The current puzzle
+     */
+    public void placeSelection(final Puzzle puzzle)
+    {
+        if (hasSelection())
+        {
+            final Piece piece = getSelection();
+            
+            occupancy.add(piece);
+            
+            //keep track if the piece was placed inside the puzzle
+            if (puzzle.isValid(piece))
+            {
+                piece.setPlaced(true);
+                placed++;
+                covered += piece.getSmallPieceCount();
+            }
+        }
+        
+        setSelection(NO_SELECTION);
+    }
+    
     public void setSelection(final int index)
     {
+        //the piece put down and the piece picked up are drawn differently
+        if (hasSelection())
+            changed.add(getSelection());
+        
         this.index = index;
+        
+        if (hasSelection())
+            changed.add(getSelection());
+    }
+    
+    /**
+     * Every piece has to be drawn again, for when the pieces in play or their locations change
+     */
+    private void markChangedAll()
+    {
+        changed.clear();
+        changedAll = true;
+    }
+    
+    /**
+     * Get the pieces that may look different since the last time this was called.<br>
+     * Only the held piece can move, turn or flip, so outside of a new puzzle the only pieces that change are the
+     * held piece and the pieces picked up or put down.
+     * @param list List the changed pieces are added to, a piece may be added more than once
+     * @return true if every piece may have changed and the list was not filled, false otherwise
+     */
+    public boolean takeChanged(final List<Piece> list)
+    {
+        if (changedAll)
+        {
+            changedAll = false;
+            changed.clear();
+            return true;
+        }
+        
+        for (int i = 0; i < changed.size(); i++)
+        {
+            //pieces no longer in play were removed with every piece marked
+            if (changed.get(i).isValid())
+                list.add(changed.get(i));
+        }
+        
+        changed.clear();
+        
+        //the held piece can change at any time
+        if (hasSelection())
+            list.add(getSelection());
+        
+        return false;
     }
     
     /**
@@ -183,11 +299,16 @@ public final class Pieces implements Disposable, IElement
      */
     public void markPiecesInvalid()
     {
+        //no pieces are in play so nothing occupies the grid
+        occupancy.clear();
+        
         //default all to invalid
         for (int i = 0; i < pieces.size(); i++)
         {
             pieces.get(i).setValid(false);
         }
+        
+        markChangedAll();
     }
     
     /**
@@ -210,6 +331,8 @@ public final class Pieces implements Disposable, IElement
                 }
             }
         }
+        
+        markChangedAll();
     }
     
     /**
@@ -228,41 +351,95 @@ public final class Pieces implements Disposable, IElement
      */
     public boolean intersects(final Piece piece)
     {
+        return occupancy.intersects(piece);
+    }
+    
+    /**
+     * Nothing is selected and no pieces are placed
+     */
+    private void resetPlacement()
+    {
+        setSelection(NO_SELECTION);
+        occupancy.clear();
+        total = 0;
+        placed = 0;
+        covered = 0;
+        
+        //the pieces are about to be positioned again
+        markChangedAll();
+    }
+    
+    /**
+     * Replace the random pieces with pieces that were already scrambled around the puzzle
+     * @param puzzle The puzzle the pieces were created for
+     * @param random The pieces of the puzzle, already positioned by scramble
+     */
+    public void setRandomPieces(final Puzzle puzzle, final List<Piece> random)
+    {
+        //remove any existing random pieces
+        removeRandomPieces();
+        
+        //set all remaining as invalid
+        markPiecesInvalid();
+        
+        for (int i = 0; i < random.size(); i++)
+        {
+            addPiece(random.get(i));
+        }
+        
+        //the pieces were positioned with the puzzle here
+        puzzle.setY(piecesArea.y);
+        
+        //nothing is selected and no pieces are placed yet
+        resetPlacement();
+        
         for (int i = 0; i < pieces.size(); i++)
         {
-            Piece tmp = getPiece(i);
+            Piece piece = getPiece(i);
             
-            //only check pieces in play
-            if (tmp == null)
+            //only want pieces in play
+            if (piece == null)
                 continue;
             
-            //don't check self
-            if (piece.getId() == tmp.getId())
-                continue;
+            piece.setPlaced(false);
+            total++;
             
-            //does the currect selected piece intersect with this piece
-            if (piece.hasCollision(tmp))
-                return true;
+            //the piece occupies its location
+            occupancy.add(piece);
         }
-        
-        return false;
     }
     
     /**
      * Place the pieces around the puzzle
      * @param puzzles Object containing the current puzzle
      * @param random Object used to make random decisions
+     * @return true if every piece was placed where the player can reach it, false otherwise
      */
-    public void scramble(final Puzzles puzzles, final Random random)
+    public boolean scramble(final Puzzles puzzles, final Random random)
+    {
+        return scramble(puzzles.getPuzzle(), random);
+    }
+    
+    /**
+     * Place the pieces around the puzzle.<br>
+     * The pieces are packed into the area for pieces, then the whole screen if they don't fit.
+     * Puzzles that scroll have their pieces packed around the puzzle, since the screen can follow the cursor to them.
+     * Pieces are never placed outside of the screen of a puzzle that doesn't scroll, if they don't fit
+     * the caller has to create another puzzle or let this one scroll.
+     * @param puzzle The puzzle the pieces are for
+     * @param random Object used to make random decisions
+     * @return true if every piece is on the screen or the puzzle scrolls, false if the pieces were not placed
+     */
+    public boolean scramble(final Puzzle puzzle, final Random random)
     {
-        //get the current puzzle
-        Puzzle puzzle = puzzles.getPuzzle();
-        
         //adjust y
         puzzle.setY(piecesArea.y);
         
-        //keep track of piece index
-        int count = 0;
+        //nothing is selected and no pieces are placed yet
+        resetPlacement();
+        
+        //the pieces we need to place
+        final List<Piece> play = new ArrayList<>();
         
         //randomly choose to rotate pieces
         for (int i = 0; i < pieces.size(); i++)
@@ -273,6 +450,11 @@ public final class Pieces implements Disposable, IElement
             if (piece == null)
                 continue;
             
+            //count the pieces in play, none start inside the puzzle
+            piece.setPlaced(false);
+            total++;
+            play.add(piece);
+            
             if (random.nextBoolean())
             {
                 piece.rotate();
@@ -287,63 +469,81 @@ public final class Pieces implements Disposable, IElement
             }
         }
         
-        for (int row = 0; row < puzzle.getRows() + (VERTICAL_COLUMN_REQUIREMENT * 2); row++)
+        if (!Viewport.hasScrolling(puzzle))
         {
-            for (int col = -SIDE_COLUMN_REQUIREMENT; col < puzzle.getCols() + SIDE_COLUMN_REQUIREMENT; col++)
+            //the screen can't reach pieces outside of it
+            if (!pack(puzzle, play, piecesArea) && !pack(puzzle, play, new Rectangle(0, 0, Shared.ORIGINAL_WIDTH, Shared.ORIGINAL_HEIGHT)))
+                return false;
+        }
+        else
+        {
+            //the number of columns on each side and rows below the puzzle where pieces can be placed
+            int side = SIDE_COLUMN_REQUIREMENT, below = VERTICAL_COLUMN_REQUIREMENT * 2;
+            
+            //make the area around the puzzle at least twice the size of all the pieces
+            while ((puzzle.getCols() + (side * 2)) * (puzzle.getRows() + below) - (puzzle.getCols() * puzzle.getRows()) < puzzle.getCount() * 2)
             {
-                //we only want to check the pieces that are valid
-                while (getPiece(count) == null)
-                {
-                    count++;
-                    
-                    //we are done checking all pieces return
-                    if (count >= pieces.size())
-                        return;
-                }
-                
-                //the current piece we are placing
-                Piece piece = getPiece(count);
-                
-                //set location
-                piece.setCol(col);
-                piece.setRow(row);
-                
-                boolean valid = true;
-                
-                //make sure all locations are within pieces area
-                for (int i = 0; i < piece.getSmallPieces().size(); i++)
-                {
-                    Cell cell = piece.getSmallPieces().get(i);
-                    
-                    final int tx = (int)(puzzle.getX() + ((piece.getCol() + cell.getCol()) * Puzzle.BLOCK_SIZE));
-                    final int ty = (int)(puzzle.getY() + ((piece.getRow() + cell.getRow()) * Puzzle.BLOCK_SIZE));
-                    
-                    //if this location is not part of the area, it is not a valid location
-                    if (!piecesArea.contains(tx, ty))
-                    {
-                        valid = false;
-                        break;
-                    }
-                }
-                
-                if (!valid)
-                    continue;
-                
-                //if location is part of puzzle skip
-                if (puzzle.intersects(piece))
-                    continue;
-                
-                //don't continue if the location intersects with another piece
-                if (intersects(piece))
-                    continue;
-                
-                count++;
-                
-                //we are done checking all pieces return
-                if (count >= pieces.size())
-                    return;
+                side++;
+                below++;
+            }
+            
+            //there is no limit to the area so keep growing it until every piece fits
+            while (!pack(puzzle, play, -side, 0, puzzle.getCols() + side, puzzle.getRows() + below))
+            {
+                side += SIDE_COLUMN_REQUIREMENT;
+                below += VERTICAL_COLUMN_REQUIREMENT;
             }
         }
+        
+        //the pieces now occupy their location
+        for (int i = 0; i < play.size(); i++)
+        {
+            occupancy.add(play.get(i));
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Pack the pieces into the locations that are inside an area of the screen
+     * @param puzzle The puzzle the pieces are for
+     * @param play The pieces to place
+     * @param area The area of the screen, a location is inside when its top-left corner is
+     * @return true if every piece was placed, false otherwise
+     */
+    private boolean pack(final Puzzle puzzle, final List<Piece> play, final Rectangle area)
+    {
+        return pack(puzzle, play,
+            (int)Math.ceil((area.x - puzzle.getX()) / Puzzle.BLOCK_SIZE),
+            (int)Math.ceil((area.y - puzzle.getY()) / Puzzle.BLOCK_SIZE),
+            (int)Math.ceil((area.x + area.width - puzzle.getX()) / Puzzle.BLOCK_SIZE),
+            (int)Math.ceil((area.y + area.height - puzzle.getY()) / Puzzle.BLOCK_SIZE));
+    }
+    
+    /**
+     * Pack the pieces into an area around the puzzle, pieces are never placed on the puzzle
+     * @param puzzle The puzzle the pieces are for
+     * @param play The pieces to place
+     * @param startCol The first column relative to the puzzle
+     * @param startRow The first row relative to the puzzle
+     * @param endCol The column after the last
+     * @param endRow The row after the last
+     * @return true if every piece was placed, false otherwise
+     */
+    private boolean pack(final Puzzle puzzle, final List<Piece> play, final int startCol, final int startRow, final int endCol, final int endRow)
+    {
+        final ShelfPacker packer = new ShelfPacker(startCol, startRow, endCol, endRow);
+        
+        for (int row = 0; row < puzzle.getRows(); row++)
+        {
+            for (int col = 0; col < puzzle.getCols(); col++)
+            {
+                if (puzzle.isValid(col, row))
+                    packer.block(col, row);
+            }
+        }
+        
+        return packer.pack(play);
     }
     
     @Override
@@ -352,25 +552,62 @@ public final class Pieces implements Disposable, IElement
         //get the current puzzle
         Puzzle puzzle = engine.getManager().getPuzzles().getPuzzle();
         
-        //update location of pieces based on their base (col, row)
-        for (int i = 0; i < pieces.size(); i++)
+        //did any piece move
+        boolean moved = false;
+        
+        //only the selection is drawn by its coordinates on puzzles that scroll
+        if (Viewport.hasScrolling(puzzle))
         {
-            Piece piece = getPiece(i);
-            
-            //only want pieces in play
-            if (piece == null)
-                continue;
-            
-            //set correct coordinates
-            piece.setX(puzzle.getX() + (piece.getCol() * Puzzle.BLOCK_SIZE));
-            piece.setY(puzzle.getY() + (piece.getRow() * Puzzle.BLOCK_SIZE));
+            if (hasSelection())
+                moved = setLocation(getSelection(), puzzle);
         }
+        else
+        {
+            //update location of pieces based on their base (col, row)
+            for (int i = 0; i < pieces.size(); i++)
+            {
+                Piece piece = getPiece(i);
+
+                //only want pieces in play
+                if (piece == null)
+                    continue;
+
+                //set correct coordinates
+                if (setLocation(piece, puzzle))
+                    moved = true;
+            }
+        }
+        
+        //the pieces have to be drawn again
+        if (moved)
+            engine.getDirtyRegion().markAll();
+    }
+    
+    /**
+     * Set the coordinates of the piece based on its (col, row)
+     * @param piece The piece
+     * @param puzzle The puzzle the (col, row) is relative to
+     * @return true if the coordinates changed, false otherwise
+     */
+    private static boolean setLocation(final Piece piece, final Puzzle puzzle)
+    {
+        final double x = puzzle.getX() + (piece.getCol() * Puzzle.BLOCK_SIZE);
+        final double y = puzzle.getY() + (piece.getRow() * Puzzle.BLOCK_SIZE);
+        
+        if (piece.getX() == x && piece.getY() == y)
+            return false;
+        
+        piece.setX(x);
+        piece.setY(y);
+        
+        return true;
     }
     
     @Override
     public void dispose()
     {
         this.piecesArea = null;
+        this.occupancy = null;
         
         if (pieces != null)
         {
@@ -409,4 +646,63 @@ public final class Pieces implements Disposable, IElement
             }
         }
     }
+    
+    /**
+     * Draw the pieces on the screen.<br>
+     * When the puzzle is larger than the screen only the visible locations are drawn,
+     * using the owner of each location instead of checking every piece.
+     * @param graphics Object used to draw
+     * @param puzzle The current puzzle
+     * @param viewport The part of the puzzle that is visible
+     */
+    public void render(final Graphics graphics, final Puzzle puzzle, final Viewport viewport)
+    {
+        if (pieces == null)
+            return;
+        
+        if (!Viewport.hasScrolling(puzzle))
+        {
+            render(graphics);
+            return;
+        }
+        
+        final int startCol = viewport.getStartCol(puzzle);
+        final int startRow = viewport.getStartRow(puzzle);
+        final int endCol = viewport.getEndCol(puzzle);
+        final int endRow = viewport.getEndRow(puzzle);
+        
+        //fill every location first so the outlines are drawn on top
+        for (int pass = 0; pass < 2; pass++)
+        {
+            for (int row = startRow; row < endRow; row++)
+            {
+                for (int col = startCol; col < endCol; col++)
+                {
+                    final Piece piece = occupancy.get(col, row);
+                    
+                    //skip empty locations and pieces not in play
+                    if (piece == null || !piece.isValid())
+                        continue;
+                    
+                    final int x = (int)puzzle.getX() + (col * Puzzle.BLOCK_SIZE);
+                    final int y = (int)puzzle.getY() + (row * Puzzle.BLOCK_SIZE);
+                    
+                    if (pass == 0)
+                    {
+                        piece.renderBlock(graphics, x, y);
+                    }
+                    else
+                    {
+                        piece.renderBlockOutline(graphics, x, y);
+                    }
+                }
+            }
+        }
+        
+        //draw user selection last, it doesn't occupy any location while it is held
+        if (hasSelection())
+        {
+            pieces.get(index).render(graphics);
+        }
+    }
 }
\ No newline at end of file
@@ -43,6 +43,9 @@ public final class PiecesHelper
         }
     }
     
+    //the geometry of each type, created once and shared by every piece of that type
+    private static final Shape[] SHAPES = new Shape[Type.values().length];
+    
     /**
      * Create a puzzle piece of specified type
      * @param type The type of piece
@@ -50,109 +53,70 @@ public final class PiecesHelper
      */
     public static Piece create(final Type type)
     {
-        //create new piece
-        final Piece piece = new Piece(type);
+        return new Piece(type);
+    }
+    
+    /**
+     * Get the shape of the specified type
+     * @param type The type of piece
+     * @return The shape containing every orientation of the type
+     */
+    public static synchronized Shape getShape(final Type type)
+    {
+        //create the shape the first time it is needed
+        if (SHAPES[type.ordinal()] == null)
+            SHAPES[type.ordinal()] = createShape(type);
         
+        return SHAPES[type.ordinal()];
+    }
+    
+    /**
+     * Create the shape of specified type
+     * @param type The type of piece
+     * @return The shape containing every orientation of the type
+     */
+    private static Shape createShape(final Type type)
+    {
         try
         {
-            //add pieces to piece
+            //the (column, row) of each small piece
             switch (type)
             {
                 case LightBlueL:
-                    piece.add(0, 0);
-                    piece.add(1, 0);
-                    piece.add(2, 0);
-                    piece.add(3, 0);
-                    piece.add(0, 1);
-                    break;
+                    return new Shape(new int[]{0, 1, 2, 3, 0}, new int[]{0, 0, 0, 0, 1}, 5);
 
                 case GrayTetrisPiece:
-                    piece.add(0, 0);
-                    piece.add(1, 0);
-                    piece.add(2, 0);
-                    piece.add(3, 0);
-                    piece.add(1, -1);
-                    break;
+                    return new Shape(new int[]{0, 1, 2, 3, 1}, new int[]{0, 0, 0, 0, -1}, 5);
 
                 case BurgondyT:
-                    piece.add(0, 0);
-                    piece.add(1, 0);
-                    piece.add(2, 0);
-                    piece.add(2, -1);
-                    piece.add(2, 1);
-                    break;
+                    return new Shape(new int[]{0, 1, 2, 2, 2}, new int[]{0, 0, 0, -1, 1}, 5);
 
                 case PinkBox:
-                    piece.add(0, 0);
-                    piece.add(0, 1);
-                    piece.add(1, 1);
-                    piece.add(0, 2);
-                    piece.add(1, 2);
-                    break;
+                    return new Shape(new int[]{0, 0, 1, 0, 1}, new int[]{0, 1, 1, 2, 2}, 5);
 
                 case GreenLine:
-                    piece.add(0, 0);
-                    piece.add(1, 0);
-                    piece.add(2, 0);
-                    piece.add(3, 0);
-                    piece.add(4, 0);
-                    break;
+                    return new Shape(new int[]{0, 1, 2, 3, 4}, new int[]{0, 0, 0, 0, 0}, 5);
 
                 case DarkBlueL:
-                    piece.add(0, 0);
-                    piece.add(0, 1);
-                    piece.add(0, 2);
-                    piece.add(1, 2);
-                    piece.add(2, 2);
-                    break;
+                    return new Shape(new int[]{0, 0, 0, 1, 2}, new int[]{0, 1, 2, 2, 2}, 5);
 
                 case RedC:
-                    piece.add(0, 0);
-                    piece.add(1, 0);
-                    piece.add(0, 1);
-                    piece.add(0, 2);
-                    piece.add(1, 2);
-                    break;
+                    return new Shape(new int[]{0, 1, 0, 0, 1}, new int[]{0, 0, 1, 2, 2}, 5);
 
                 case BlueZ:
-                    piece.add(0, 0);
-                    piece.add(0, 1);
-                    piece.add(1, 1);
-                    piece.add(1, 2);
-                    piece.add(1, 3);
-                    break;
+                    return new Shape(new int[]{0, 0, 1, 1, 1}, new int[]{0, 1, 1, 2, 3}, 5);
 
                 case BrownPlus:
-                    piece.add(0, 0);
-                    piece.add(1, 0);
-                    piece.add(-1, 0);
-                    piece.add(0, -1);
-                    piece.add(0, 1);
-                    break;
+                    return new Shape(new int[]{0, 1, -1, 0, 0}, new int[]{0, 0, 0, -1, 1}, 5);
 
                 case DarkGreenSteps:
-                    piece.add(0, 0);
-                    piece.add(0, 1);
-                    piece.add(1, 1);
-                    piece.add(1, 2);
-                    piece.add(2, 2);
-                    break;
+                    return new Shape(new int[]{0, 0, 1, 1, 2}, new int[]{0, 1, 1, 2, 2}, 5);
 
                 case LightGreenZ:
-                    piece.add(0, 0);
-                    piece.add(0, 1);
-                    piece.add(1, 1);
-                    piece.add(2, 1);
-                    piece.add(2, 2);
-                    break;
+                    return new Shape(new int[]{0, 0, 1, 2, 2}, new int[]{0, 1, 1, 1, 2}, 5);
 
                 case YellowMisc:
-                    piece.add(0, 0);
-                    piece.add(1, 0);
-                    piece.add(1, 1);
-                    piece.add(2, 1);
-                    piece.add(1, 2);
-                    break;
+                    return new Shape(new int[]{0, 1, 1, 2, 1}, new int[]{0, 0, 1, 1, 2}, 5);
 
                 default:
                     throw new Exception("Piece is not mapped here");
@@ -163,6 +127,6 @@ public final class PiecesHelper
             e.printStackTrace();
         }
         
-        return piece;
+        return null;
     }
 }
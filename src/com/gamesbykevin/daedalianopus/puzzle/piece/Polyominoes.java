@@ -0,0 +1,292 @@
+package com.gamesbykevin.daedalianopus.puzzle.piece;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Library of polyomino shapes identified by their canonical form.<br>
+ * The canonical form is the smallest orientation mask over every rotation and reflection, so two groups of
+ * small pieces have the same key exactly when they are the same free polyomino.
+ * Shapes are interned by key, so identical pieces share one shape and its orientation table, and the
+ * orientation 0 of an interned shape is always the canonical orientation so the result doesn't depend on
+ * which piece was seen first.
+ * @author GOD
+ */
+public final class Polyominoes
+{
+    /**
+     * The largest polyomino that can be enumerated, every one of this size fits in a shape mask
+     */
+    public static final int MAX_ENUMERATION_SIZE = Shape.MAX_DIMENSION;
+
+    //every shape created so far by key
+    private static final ConcurrentMap<Long, Shape> SHAPES = new ConcurrentHashMap<>();
+
+    //the free polyominoes of each size, created the first time they are needed
+    private static final List<List<Shape>> FREE = new ArrayList<>();
+
+    private Polyominoes()
+    {
+        //this class only has static methods
+    }
+
+    /**
+     * Get the canonical form of the small pieces
+     * @param cols The column of each small piece
+     * @param rows The row of each small piece
+     * @param size The number of small pieces
+     * @return The key, the same for every rotation and reflection
+     */
+    public static long getKey(final int[] cols, final int[] rows, final int size)
+    {
+        return Shape.getKey(cols, rows, size);
+    }
+
+    /**
+     * Get the shared shape of the small pieces
+     * @param cols The column of each small piece
+     * @param rows The row of each small piece
+     * @param size The number of small pieces
+     * @return The interned shape, orientation 0 is the canonical orientation
+     */
+    public static Shape intern(final int[] cols, final int[] rows, final int size)
+    {
+        return getShape(getKey(cols, rows, size));
+    }
+
+    /**
+     * Get the shared shape of the key
+     * @param key The canonical form of the shape
+     * @return The interned shape, orientation 0 is the canonical orientation
+     */
+    public static Shape getShape(final long key)
+    {
+        Shape shape = SHAPES.get(key);
+
+        if (shape == null)
+        {
+            //unpack the mask, the bit of each small piece is (row * MAX_DIMENSION) + col
+            final int size = Long.bitCount(key);
+            final int[] cols = new int[size];
+            final int[] rows = new int[size];
+
+            int index = 0;
+
+            for (long bits = key; bits != 0; bits &= (bits - 1))
+            {
+                final int offset = Long.numberOfTrailingZeros(bits);
+
+                cols[index] = offset % Shape.MAX_DIMENSION;
+                rows[index] = offset / Shape.MAX_DIMENSION;
+                index++;
+            }
+
+            //another thread may have created the same shape at the same time, only one is kept
+            final Shape previous = SHAPES.putIfAbsent(key, new Shape(cols, rows, size));
+            shape = (previous != null) ? previous : SHAPES.get(key);
+        }
+
+        return shape;
+    }
+
+    /**
+     * Get the number of shapes interned
+     * @return The number of distinct shapes
+     */
+    public static int getInternedCount()
+    {
+        return SHAPES.size();
+    }
+
+    /**
+     * Find the type of piece with the same shape
+     * @param shape The shape
+     * @return The type with the same canonical form, null if it doesn't match any type
+     */
+    public static PiecesHelper.Type getType(final Shape shape)
+    {
+        final long key = shape.getKey();
+
+        for (PiecesHelper.Type type : PiecesHelper.Type.values())
+        {
+            if (PiecesHelper.getShape(type).getKey() == key)
+                return type;
+        }
+
+        return null;
+    }
+
+    /**
+     * Get every free polyomino of the size, each one only once regardless of rotation and reflection
+     * @param size The number of small pieces, from 1 to MAX_ENUMERATION_SIZE
+     * @return List of interned shapes ordered by key
+     */
+    public static synchronized List<Shape> getFree(final int size)
+    {
+        if (size < 1 || size > MAX_ENUMERATION_SIZE)
+            throw new IllegalArgumentException("Size must be from 1 to " + MAX_ENUMERATION_SIZE);
+
+        //enumerate every size up to this one at the same time
+        if (FREE.size() <= size)
+        {
+            final List<TreeSet<Long>> keys = enumerate(size);
+
+            FREE.clear();
+            FREE.add(Collections.<Shape>emptyList());
+
+            for (int i = 1; i <= size; i++)
+            {
+                final List<Shape> shapes = new ArrayList<>(keys.get(i).size());
+
+                for (Long key : keys.get(i))
+                {
+                    shapes.add(getShape(key));
+                }
+
+                FREE.add(Collections.unmodifiableList(shapes));
+            }
+        }
+
+        return FREE.get(size);
+    }
+
+    /**
+     * Enumerate every fixed polyomino up to a size using Redelmeier's algorithm and keep the canonical form of each.<br>
+     * A polyomino grows one cell at a time from the cell (0,0), only adding cells above row 0 or to the right of
+     * (0,0) on row 0, and each cell is only offered once along a branch, so every fixed polyomino is created once.
+     * @param max The largest size
+     * @return The canonical keys of each size
+     */
+    private static List<TreeSet<Long>> enumerate(final int max)
+    {
+        final List<TreeSet<Long>> keys = new ArrayList<>(max + 1);
+
+        for (int i = 0; i <= max; i++)
+        {
+            keys.add(new TreeSet<Long>());
+        }
+
+        final Redelmeier search = new Redelmeier(max, keys);
+        search.untried[0][0] = search.getIndex(0, 0);
+        search.reached[search.untried[0][0]] = true;
+        search.grow(1, 0);
+
+        return keys;
+    }
+
+    /**
+     * The state of the enumeration
+     */
+    private static final class Redelmeier
+    {
+        //the largest size
+        private final int max;
+
+        //the canonical keys found for each size
+        private final List<TreeSet<Long>> keys;
+
+        //the grid is wide enough to reach max - 1 cells left or right of (0,0) and max - 1 rows up
+        private final int width, height;
+
+        //has the cell been offered on the current branch
+        private final boolean[] reached;
+
+        //the cells that can still be added at each size, each size starts with a copy of the previous one
+        private final int[][] untried;
+
+        //the cells of the current polyomino
+        private final int[] cols, rows;
+
+        private Redelmeier(final int max, final List<TreeSet<Long>> keys)
+        {
+            this.max = max;
+            this.keys = keys;
+            this.width = (max * 2) - 1;
+            this.height = max;
+            this.reached = new boolean[width * height];
+            this.untried = new int[max][width * height];
+            this.cols = new int[max];
+            this.rows = new int[max];
+        }
+
+        private int getIndex(final int col, final int row)
+        {
+            return (row * width) + col + (max - 1);
+        }
+
+        /**
+         * Can the cell be part of a polyomino, cells below (0,0) or to the left of it on row 0 are never used
+         * @param col Column compared to (0,0)
+         * @param row Row compared to (0,0)
+         * @return true if the cell can be used, false otherwise
+         */
+        private boolean isAllowed(final int col, final int row)
+        {
+            if (row < 0 || row >= height || col <= -max || col >= max)
+                return false;
+
+            return (row > 0 || col >= 0);
+        }
+
+        /**
+         * Add each untried cell in turn and grow from there
+         * @param count The number of untried cells
+         * @param size The number of cells in the polyomino
+         */
+        private void grow(int count, final int size)
+        {
+            final int[] cells = untried[size];
+
+            while (count > 0)
+            {
+                //take the last untried cell, it won't be offered again on this branch
+                final int cell = cells[--count];
+                final int col = (cell % width) - (max - 1);
+                final int row = cell / width;
+
+                cols[size] = col;
+                rows[size] = row;
+
+                keys.get(size + 1).add(Shape.getKey(cols, rows, size + 1));
+
+                if (size + 1 == max)
+                    continue;
+
+                //offer the neighbors that have not been offered yet
+                final int[] next = untried[size + 1];
+                System.arraycopy(cells, 0, next, 0, count);
+
+                int added = count;
+
+                for (int direction = 0; direction < 4; direction++)
+                {
+                    final int nextCol = col + ((direction == 0) ? -1 : (direction == 1) ? 1 : 0);
+                    final int nextRow = row + ((direction == 2) ? -1 : (direction == 3) ? 1 : 0);
+
+                    if (!isAllowed(nextCol, nextRow))
+                        continue;
+
+                    final int index = getIndex(nextCol, nextRow);
+
+                    if (!reached[index])
+                    {
+                        reached[index] = true;
+                        next[added++] = index;
+                    }
+                }
+
+                grow(added, size + 1);
+
+                //the neighbors can be offered again by other branches
+                for (int i = count; i < added; i++)
+                {
+                    reached[next[i]] = false;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package com.gamesbykevin.daedalianopus.puzzle.piece;
+
+/**
+ * The immutable geometry of a piece.<br>
+ * Every distinct orientation (up to 4 rotations x 2 reflections) is calculated once when created.
+ * Each orientation is normalized so the top-most row and left-most column are 0, and each small piece is stored
+ * as a packed offset (row * MAX_DIMENSION) + col which is also its bit in the orientation mask.
+ * Since the top-left of an orientation can be an empty location, each orientation also has an anchor, the location
+ * the first small piece the shape was created with ends up at. A piece is positioned and turned around its anchor.
+ * @author GOD
+ */
+public final class Shape
+{
+    /**
+     * The largest width/height an orientation can have so the mask will fit in a long
+     */
+    public static final int MAX_DIMENSION = 8;
+
+    //the shift used to pack the row into the offset
+    private static final int ROW_SHIFT = 3;
+
+    //the mask used to unpack the column from the offset
+    private static final int COL_MASK = MAX_DIMENSION - 1;
+
+    //the number of transformations (4 rotations, each may be mirrored)
+    private static final int TRANSFORMATIONS = 8;
+
+    //the packed offsets of the small pieces for each orientation, ordered by row then column
+    private final int[][] offsets;
+
+    //the bit mask of each orientation
+    private final long[] masks;
+
+    //the dimensions of each orientation
+    private final int[] widths, heights;
+
+    //the location of the anchor in each orientation
+    private final int[] anchorCols, anchorRows;
+
+    //the orientation we end up at after each operation
+    private final int[] rotate, flipHorizontal, flipVertical;
+
+    /**
+     * Create a shape from the locations of its small pieces
+     * @param cols The column of each small piece
+     * @param rows The row of each small piece
+     * @param size The number of small pieces
+     */
+    public Shape(final int[] cols, final int[] rows, final int size)
+    {
+        //temporary storage of all transformations, and the anchor of each
+        final long[] candidates = new long[TRANSFORMATIONS];
+        final int[] anchors = new int[TRANSFORMATIONS];
+
+        int count = 0;
+
+        for (int i = 0; i < TRANSFORMATIONS; i++)
+        {
+            final long mask = getMask(cols, rows, size, i);
+
+            //only keep the distinct orientations
+            if (indexOf(candidates, count, mask) < 0)
+            {
+                anchors[count] = getAnchor(cols, rows, size, i);
+                candidates[count++] = mask;
+            }
+        }
+
+        this.offsets = new int[count][];
+        this.masks = new long[count];
+        this.widths = new int[count];
+        this.heights = new int[count];
+        this.anchorCols = new int[count];
+        this.anchorRows = new int[count];
+        this.rotate = new int[count];
+        this.flipHorizontal = new int[count];
+        this.flipVertical = new int[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            final long mask = candidates[i];
+
+            masks[i] = mask;
+            offsets[i] = new int[size];
+            anchorCols[i] = anchors[i] & COL_MASK;
+            anchorRows[i] = anchors[i] >>> ROW_SHIFT;
+
+            int index = 0;
+
+            //unpack the mask in row-major order
+            for (long bits = mask; bits != 0; bits &= (bits - 1))
+            {
+                final int offset = Long.numberOfTrailingZeros(bits);
+
+                offsets[i][index++] = offset;
+                widths[i] = Math.max(widths[i], (offset & COL_MASK) + 1);
+                heights[i] = Math.max(heights[i], (offset >>> ROW_SHIFT) + 1);
+            }
+        }
+
+        //now that the orientations exist determine where each operation leads
+        final int[] tmpCols = new int[size];
+        final int[] tmpRows = new int[size];
+
+        for (int i = 0; i < count; i++)
+        {
+            for (int z = 0; z < size; z++)
+            {
+                tmpCols[z] = getCol(i, z);
+                tmpRows[z] = getRow(i, z);
+            }
+
+            rotate[i] = indexOf(masks, count, getMask(tmpCols, tmpRows, size, 1));
+            flipHorizontal[i] = indexOf(masks, count, getMask(tmpCols, tmpRows, size, 4));
+            flipVertical[i] = indexOf(masks, count, getMask(tmpCols, tmpRows, size, 6));
+        }
+    }
+
+    /**
+     * Get the normalized mask of the small pieces after a transformation
+     * @param cols The column of each small piece
+     * @param rows The row of each small piece
+     * @param size The number of small pieces
+     * @param transformation 0-3 is the number of 90 degree rotations, 4-7 is the same but mirrored horizontally first
+     * @return The mask of the small pieces with the top-left at (0,0)
+     */
+    private static long getMask(final int[] cols, final int[] rows, final int size, final int transformation)
+    {
+        int minCol = Integer.MAX_VALUE, minRow = Integer.MAX_VALUE;
+
+        //transform once to find the bounds and once to write the mask
+        for (int pass = 0; pass < 2; pass++)
+        {
+            long mask = 0;
+
+            for (int i = 0; i < size; i++)
+            {
+                int col = (transformation >= 4) ? -cols[i] : cols[i];
+                int row = rows[i];
+
+                //rotate 90 degrees the required number of times
+                for (int r = 0; r < (transformation & 3); r++)
+                {
+                    final int tmp = col;
+                    col = row;
+                    row = -tmp;
+                }
+
+                if (pass == 0)
+                {
+                    minCol = Math.min(minCol, col);
+                    minRow = Math.min(minRow, row);
+                }
+                else
+                {
+                    mask |= (1L << (((row - minRow) << ROW_SHIFT) + (col - minCol)));
+                }
+            }
+
+            if (pass == 1)
+                return mask;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Get where the first small piece ends up after a transformation
+     * @param cols The column of each small piece
+     * @param rows The row of each small piece
+     * @param size The number of small pieces
+     * @param transformation 0-3 is the number of 90 degree rotations, 4-7 is the same but mirrored horizontally first
+     * @return The packed offset (row * MAX_DIMENSION) + col of the first small piece with the top-left at (0,0)
+     */
+    private static int getAnchor(final int[] cols, final int[] rows, final int size, final int transformation)
+    {
+        int minCol = Integer.MAX_VALUE, minRow = Integer.MAX_VALUE;
+        int anchorCol = 0, anchorRow = 0;
+
+        for (int i = 0; i < size; i++)
+        {
+            int col = (transformation >= 4) ? -cols[i] : cols[i];
+            int row = rows[i];
+
+            //rotate 90 degrees the required number of times
+            for (int r = 0; r < (transformation & 3); r++)
+            {
+                final int tmp = col;
+                col = row;
+                row = -tmp;
+            }
+
+            minCol = Math.min(minCol, col);
+            minRow = Math.min(minRow, row);
+
+            if (i == 0)
+            {
+                anchorCol = col;
+                anchorRow = row;
+            }
+        }
+
+        return ((anchorRow - minRow) << ROW_SHIFT) + (anchorCol - minCol);
+    }
+
+    /**
+     * Find the mask in the array
+     * @param masks Array of masks
+     * @param count The number of masks to check
+     * @param mask The mask we are looking for
+     * @return The index of the mask, -1 if not found
+     */
+    private static int indexOf(final long[] masks, final int count, final long mask)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            if (masks[i] == mask)
+                return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Get the canonical form of the shape, every shape with the same geometry has the same key
+     * regardless of which orientation it was created in
+     * @return The smallest mask of all orientations
+     */
+    public long getKey()
+    {
+        long key = masks[0];
+
+        for (int i = 1; i < masks.length; i++)
+        {
+            key = Math.min(key, masks[i]);
+        }
+
+        return key;
+    }
+
+    /**
+     * Get the canonical form of the small pieces without creating a shape
+     * @param cols The column of each small piece
+     * @param rows The row of each small piece
+     * @param size The number of small pieces
+     * @return The smallest mask of all transformations, the same value getKey() returns for a shape of these small pieces
+     */
+    public static long getKey(final int[] cols, final int[] rows, final int size)
+    {
+        long key = getMask(cols, rows, size, 0);
+
+        for (int i = 1; i < TRANSFORMATIONS; i++)
+        {
+            key = Math.min(key, getMask(cols, rows, size, i));
+        }
+
+        return key;
+    }
+
+    /**
+     * Find the orientation with the mask
+     * @param mask Mask where bit (row * MAX_DIMENSION) + col is set for each small piece, with the top-left at (0,0)
+     * @return The orientation, -1 if the shape has no orientation with this mask
+     */
+    public int getOrientation(final long mask)
+    {
+        return indexOf(masks, masks.length, mask);
+    }
+
+    /**
+     * Get the number of distinct orientations
+     * @return The number of orientations, between 1 and 8
+     */
+    public int getOrientationCount()
+    {
+        return this.masks.length;
+    }
+
+    /**
+     * Get the number of small pieces
+     * @return The number of small pieces that make up this shape
+     */
+    public int getSize()
+    {
+        return this.offsets[0].length;
+    }
+
+    /**
+     * Get the packed offsets of the orientation, this is not a copy so it should not be modified
+     * @param orientation The orientation
+     * @return Array of (row * MAX_DIMENSION) + col for each small piece
+     */
+    public int[] getOffsets(final int orientation)
+    {
+        return this.offsets[orientation];
+    }
+
+    public int getCol(final int orientation, final int index)
+    {
+        return (offsets[orientation][index] & COL_MASK);
+    }
+
+    public int getRow(final int orientation, final int index)
+    {
+        return (offsets[orientation][index] >>> ROW_SHIFT);
+    }
+
+    /**
+     * Get the mask of the orientation
+     * @param orientation The orientation
+     * @return Mask where bit (row * MAX_DIMENSION) + col is set for each small piece
+     */
+    public long getMask(final int orientation)
+    {
+        return this.masks[orientation];
+    }
+
+    /**
+     * Get the column of the anchor
+     * @param orientation The orientation
+     * @return The column of the first small piece the shape was created with
+     */
+    public int getAnchorCol(final int orientation)
+    {
+        return this.anchorCols[orientation];
+    }
+
+    /**
+     * Get the row of the anchor
+     * @param orientation The orientation
+     * @return The row of the first small piece the shape was created with
+     */
+    public int getAnchorRow(final int orientation)
+    {
+        return this.anchorRows[orientation];
+    }
+
+    public int getWidth(final int orientation)
+    {
+        return this.widths[orientation];
+    }
+
+    public int getHeight(final int orientation)
+    {
+        return this.heights[orientation];
+    }
+
+    /**
+     * Get the orientation after rotating 90 degrees
+     * @param orientation The current orientation
+     * @return The new orientation
+     */
+    public int rotate(final int orientation)
+    {
+        return this.rotate[orientation];
+    }
+
+    /**
+     * Get the orientation after flipping horizontal
+     * @param orientation The current orientation
+     * @return The new orientation
+     */
+    public int flipHorizontal(final int orientation)
+    {
+        return this.flipHorizontal[orientation];
+    }
+
+    /**
+     * Get the orientation after flipping vertical
+     * @param orientation The current orientation
+     * @return The new orientation
+     */
+    public int flipVertical(final int orientation)
+    {
+        return this.flipVertical[orientation];
+    }
+}
@@ -0,0 +1,168 @@
+package com.gamesbykevin.daedalianopus.puzzle.piece;
+
+import com.gamesbykevin.daedalianopus.puzzle.BitBoard;
+
+import java.util.List;
+
+/**
+ * Place pieces in an area one shelf at a time.<br>
+ * The pieces are sorted from tallest to shortest and placed left to right along a shelf, when a piece doesn't fit
+ * on the shelf a new shelf is started below the tallest piece of the current one. Locations that can't be used,
+ * like the puzzle, are marked in a bitmap of the area so pieces skip over them and can fit into each other.
+ * Each shelf is only crossed once, so the time depends on the number of pieces and the size of the area.
+ * @author GOD
+ */
+final class ShelfPacker
+{
+    //the top-left of the area, relative to the puzzle
+    private final int startCol, startRow;
+
+    //the locations of the area that are already used
+    private final BitBoard used;
+
+    /**
+     * Create an empty area
+     * @param startCol The first column
+     * @param startRow The first row
+     * @param endCol The column after the last
+     * @param endRow The row after the last
+     */
+    protected ShelfPacker(final int startCol, final int startRow, final int endCol, final int endRow)
+    {
+        this.startCol = startCol;
+        this.startRow = startRow;
+        this.used = new BitBoard(Math.max(0, endCol - startCol), Math.max(0, endRow - startRow));
+    }
+
+    /**
+     * Mark a location so no piece will be placed on it
+     * @param col Column relative to the puzzle
+     * @param row Row relative to the puzzle
+     */
+    protected void block(final int col, final int row)
+    {
+        if (used.contains(col - startCol, row - startRow))
+            used.set(col - startCol, row - startRow);
+    }
+
+    /**
+     * Place the pieces in the area, each piece keeps its orientation
+     * @param pieces The pieces to place
+     * @return true if every piece was placed, false if at least one piece didn't fit and was not moved
+     */
+    protected boolean pack(final List<Piece> pieces)
+    {
+        //sort the pieces by height, tallest first, the height of a piece is never more than the maximum dimension
+        final int[] counts = new int[Shape.MAX_DIMENSION + 2];
+
+        for (int i = 0; i < pieces.size(); i++)
+        {
+            counts[Shape.MAX_DIMENSION - getHeight(pieces.get(i)) + 1]++;
+        }
+
+        for (int i = 1; i < counts.length; i++)
+        {
+            counts[i] += counts[i - 1];
+        }
+
+        final Piece[] sorted = new Piece[pieces.size()];
+
+        for (int i = 0; i < pieces.size(); i++)
+        {
+            sorted[counts[Shape.MAX_DIMENSION - getHeight(pieces.get(i))]++] = pieces.get(i);
+        }
+
+        //the top of the current shelf, its height and the first column a piece can be placed at
+        int shelf = 0, height = 0, cursor = 0;
+
+        boolean success = true;
+
+        for (int i = 0; i < sorted.length; i++)
+        {
+            final Piece piece = sorted[i];
+
+            while (true)
+            {
+                //no more shelves fit in the area
+                if (shelf + getHeight(piece) > used.getRows())
+                {
+                    success = false;
+                    break;
+                }
+
+                //find the first column on the shelf where the piece fits
+                int col = cursor;
+
+                while (col + getWidth(piece) <= used.getCols() && !fits(piece, col, shelf))
+                {
+                    col++;
+                }
+
+                if (col + getWidth(piece) <= used.getCols())
+                {
+                    place(piece, col, shelf);
+
+                    //the shelf is as tall as its first piece
+                    if (height == 0)
+                        height = getHeight(piece);
+
+                    //the next piece may still fit into this one
+                    cursor = col + 1;
+                    break;
+                }
+
+                //start a new shelf below the current one
+                shelf += Math.max(1, height);
+                height = 0;
+                cursor = 0;
+            }
+        }
+
+        return success;
+    }
+
+    /**
+     * Can the piece be placed without landing on a used location
+     * @param piece The piece
+     * @param col Column in the area
+     * @param row Row in the area
+     * @return true if every location of the piece is free, false otherwise
+     */
+    private boolean fits(final Piece piece, final int col, final int row)
+    {
+        for (int i = 0; i < piece.getSmallPieceCount(); i++)
+        {
+            if (used.get(col + piece.getSmallCol(i), row + piece.getSmallRow(i)))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Move the piece to the location and mark its locations as used
+     * @param piece The piece
+     * @param col Column in the area
+     * @param row Row in the area
+     */
+    private void place(final Piece piece, final int col, final int row)
+    {
+        piece.setCol(startCol + col);
+        piece.setRow(startRow + row);
+
+        for (int i = 0; i < piece.getSmallPieceCount(); i++)
+        {
+            used.set(col + piece.getSmallCol(i), row + piece.getSmallRow(i));
+        }
+    }
+
+    private static int getWidth(final Piece piece)
+    {
+        return piece.getShape().getWidth(piece.getOrientation());
+    }
+
+    private static int getHeight(final Piece piece)
+    {
+        return piece.getShape().getHeight(piece.getOrientation());
+    }
+}
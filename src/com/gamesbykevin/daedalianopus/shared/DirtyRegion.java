@@ -0,0 +1,88 @@
+package com.gamesbykevin.daedalianopus.shared;
+
+import java.awt.Rectangle;
+import javax.swing.SwingUtilities;
+
+/**
+ * The area of the screen that changed since the last frame was drawn.<br>
+ * Game elements mark what they changed while they update, and the game loop only draws when something was marked,
+ * so an idle screen isn't drawn again. The marked areas are combined into one rectangle that covers all of them.
+ * @author GOD
+ */
+public final class DirtyRegion
+{
+    //the whole screen, nothing outside of it is ever drawn
+    private final Rectangle screen;
+
+    //the area that changed, only valid when dirty
+    private final Rectangle bounds = new Rectangle();
+
+    //has anything changed
+    private boolean dirty;
+
+    /**
+     * Create the region, the whole screen starts out changed so the first frame is always drawn
+     * @param screen The area of the screen
+     */
+    public DirtyRegion(final Rectangle screen)
+    {
+        this.screen = new Rectangle(screen);
+
+        markAll();
+    }
+
+    /**
+     * Mark the whole screen as changed
+     */
+    public synchronized void markAll()
+    {
+        this.bounds.setBounds(screen);
+        this.dirty = true;
+    }
+
+    /**
+     * Mark an area of the screen as changed
+     * @param area The area that changed
+     */
+    public synchronized void mark(final Rectangle area)
+    {
+        if (!dirty)
+        {
+            this.bounds.setBounds(area);
+            this.dirty = true;
+        }
+        else
+        {
+            this.bounds.add(area);
+        }
+
+        //nothing outside of the screen will be drawn
+        SwingUtilities.computeIntersection(screen.x, screen.y, screen.width, screen.height, bounds);
+    }
+
+    /**
+     * Has anything changed since the last frame was drawn
+     * @return true if something needs to be drawn, false otherwise
+     */
+    public synchronized boolean isDirty()
+    {
+        return this.dirty;
+    }
+
+    /**
+     * Get the area that changed and mark everything as drawn
+     * @param area Object the changed area will be copied to
+     * @return true if something changed, false if the area wasn't set
+     */
+    public synchronized boolean take(final Rectangle area)
+    {
+        if (!dirty)
+            return false;
+
+        area.setBounds(bounds);
+
+        this.dirty = false;
+
+        return true;
+    }
+}
@@ -1,8 +1,10 @@
 package com.gamesbykevin.daedalianopus.shared;
 
 import java.awt.Cursor;
+import java.awt.GraphicsEnvironment;
 import java.awt.Point;
 import java.awt.Toolkit;
+import java.awt.Transparency;
 import java.awt.image.BufferedImage;
 
 /**
@@ -37,4 +39,24 @@ public final class Shared
     
     //blank cursor created here to hide the mouse cursor
     public static final Cursor CURSOR = Toolkit.getDefaultToolkit().createCustomCursor(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB), new Point(0, 0), "blank cursor");
+    
+    /**
+     * Create an image in the same format as the display so drawing it doesn't need any conversion
+     * @param width The width of the image
+     * @param height The height of the image
+     * @param transparency Transparency of the image, for example Transparency.TRANSLUCENT
+     * @return The new image
+     */
+    public static BufferedImage createCompatibleImage(final int width, final int height, final int transparency)
+    {
+        if (!GraphicsEnvironment.isHeadless())
+        {
+            return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration().createCompatibleImage(width, height, transparency);
+        }
+        else
+        {
+            //there is no display so any format will do
+            return new BufferedImage(width, height, (transparency == Transparency.OPAQUE) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        }
+    }
 }
\ No newline at end of file
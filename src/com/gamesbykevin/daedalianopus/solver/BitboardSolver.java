@@ -0,0 +1,837 @@
+package com.gamesbykevin.daedalianopus.solver;
+
+import com.gamesbykevin.daedalianopus.puzzle.BitBoard;
+import com.gamesbykevin.daedalianopus.puzzle.piece.Shape;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Backtracking solver that works directly on the packed puzzle locations.<br>
+ * The lowest empty location is always filled next, so every placement is pre-calculated for the location
+ * it covers first. After each placement the empty locations are split into regions with a bit-parallel flood fill,
+ * and the branch is pruned if a region can't be built from the sizes of the remaining pieces.
+ * Pieces with the same shape are interchangeable, so each arrangement is only counted once no matter
+ * how many identical pieces there are.
+ * @author GOD
+ */
+public final class BitboardSolver
+{
+    //the number of bits in each word
+    private static final int WORD_SIZE = 64;
+
+    //the dimensions of the puzzle
+    private final int cols, rows;
+
+    //the number of words needed for every location
+    private final int words;
+
+    //the shape of each piece
+    private final Shape[] shapes;
+
+    //the number of small pieces of each piece
+    private final int[] sizes;
+
+    //the size of every piece if they are all the same, otherwise 0
+    private final int uniform;
+
+    //has each piece been placed
+    private final boolean[] used;
+
+    //the previous piece with the same shape, -1 if there is none
+    private final int[] twins;
+
+    //the empty locations
+    private final long[] empty;
+
+    //every location except the first and last column
+    private final long[] notFirstCol, notLastCol;
+
+    //where the placements for each location start
+    private final int[] starts;
+
+    //the piece, orientation and location of each placement
+    private final int[] pieces, orientations, placementCols, placementRows;
+
+    //the first word and number of words of each placement mask
+    private final int[] firstWords, spans;
+
+    //where the mask of each placement starts in masks
+    private final int[] maskStarts;
+
+    //the masks of every placement
+    private final long[] masks;
+
+    //scratch space used during the flood fill and the subset sums
+    private final long[] remaining, region, grow, shifted, sums;
+
+    //the placement chosen at each depth
+    private final int[] stack;
+
+    //do we check the empty regions after each placement
+    private boolean pruning = true;
+
+    //are pieces with the same shape interchangeable
+    private boolean interchangeable = true;
+
+    //stop searching once this many solutions are found
+    private long limit;
+
+    //the results of the last search
+    private long solutions, nodes, pruned, elapsed;
+
+    //placements of the last search that didn't lead to a solution, and locations that could only be filled one way
+    private long backtracks, forced;
+
+    //the number of nodes visited when the first solution was found, -1 if none was found
+    private long first;
+
+    //the most pieces placed at once in the last search
+    private int deepest;
+
+    //the first and second solution found in the last search
+    private Solution solution, second;
+
+    //when set the search will stop as soon as possible
+    private AtomicBoolean cancel;
+
+    //stop searching after this many nodes, 0 for no limit
+    private long nodeLimit = 0;
+
+    //did the last search stop because of the node limit
+    private boolean exceeded = false;
+
+    public BitboardSolver(final BitBoard board, final List<Shape> shapes)
+    {
+        this.cols = board.getCols();
+        this.rows = board.getRows();
+        this.words = board.getWords().length;
+        this.shapes = shapes.toArray(new Shape[shapes.size()]);
+        this.sizes = new int[this.shapes.length];
+        this.used = new boolean[this.shapes.length];
+        this.stack = new int[this.shapes.length];
+
+        int total = 0;
+
+        for (int i = 0; i < this.shapes.length; i++)
+        {
+            sizes[i] = this.shapes[i].getSize();
+            total += sizes[i];
+        }
+
+        this.uniform = isUniform() ? sizes[0] : 0;
+
+        //an identical piece can only be placed once the one before it is used
+        this.twins = new int[this.shapes.length];
+
+        for (int i = 0; i < this.shapes.length; i++)
+        {
+            twins[i] = -1;
+
+            for (int z = i - 1; z >= 0; z--)
+            {
+                if (this.shapes[z].getKey() == this.shapes[i].getKey())
+                {
+                    twins[i] = z;
+                    break;
+                }
+            }
+        }
+
+        this.empty = board.getWords().clone();
+        this.notFirstCol = new long[words];
+        this.notLastCol = new long[words];
+        this.remaining = new long[words];
+        this.region = new long[words];
+        this.grow = new long[words];
+        this.shifted = new long[words];
+        this.sums = new long[(total / WORD_SIZE) + 1];
+
+        for (int row = 0; row < rows; row++)
+        {
+            for (int col = 0; col < cols; col++)
+            {
+                final int index = (row * cols) + col;
+
+                if (col > 0)
+                    notFirstCol[index / WORD_SIZE] |= (1L << index);
+                if (col < cols - 1)
+                    notLastCol[index / WORD_SIZE] |= (1L << index);
+            }
+        }
+
+        //temporary lists of the placements for each location
+        final List<int[]> tmp = new ArrayList<>();
+        final List<long[]> tmpMasks = new ArrayList<>();
+
+        this.starts = new int[(cols * rows) + 1];
+
+        for (int index = 0; index < cols * rows; index++)
+        {
+            starts[index] = tmp.size();
+
+            if (!board.get(index))
+                continue;
+
+            final int col = index % cols;
+            final int row = index / cols;
+
+            for (int piece = 0; piece < this.shapes.length; piece++)
+            {
+                final Shape shape = this.shapes[piece];
+
+                for (int orientation = 0; orientation < shape.getOrientationCount(); orientation++)
+                {
+                    //the first small piece in row-major order will cover this location
+                    final int startCol = col - shape.getCol(orientation, 0);
+
+                    if (startCol < 0 || startCol + shape.getWidth(orientation) > cols || row + shape.getHeight(orientation) > rows)
+                        continue;
+
+                    final long[] mask = new long[words];
+
+                    boolean fits = true;
+
+                    for (int i = 0; i < shape.getSize(); i++)
+                    {
+                        final int c = startCol + shape.getCol(orientation, i);
+                        final int r = row + shape.getRow(orientation, i);
+
+                        if (!board.get(c, r))
+                        {
+                            fits = false;
+                            break;
+                        }
+
+                        mask[board.getIndex(c, r) / WORD_SIZE] |= (1L << board.getIndex(c, r));
+                    }
+
+                    if (!fits)
+                        continue;
+
+                    //only keep the words the placement covers
+                    int first = 0, last = words - 1;
+
+                    while (mask[first] == 0)
+                        first++;
+                    while (mask[last] == 0)
+                        last--;
+
+                    final long[] span = new long[last - first + 1];
+                    System.arraycopy(mask, first, span, 0, span.length);
+
+                    tmp.add(new int[]{piece, orientation, startCol, row, first});
+                    tmpMasks.add(span);
+                }
+            }
+        }
+
+        starts[cols * rows] = tmp.size();
+
+        final int count = tmp.size();
+
+        this.pieces = new int[count];
+        this.orientations = new int[count];
+        this.placementCols = new int[count];
+        this.placementRows = new int[count];
+        this.firstWords = new int[count];
+        this.spans = new int[count];
+        this.maskStarts = new int[count];
+
+        int length = 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            length += tmpMasks.get(i).length;
+        }
+
+        this.masks = new long[length];
+
+        length = 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            pieces[i] = tmp.get(i)[0];
+            orientations[i] = tmp.get(i)[1];
+            placementCols[i] = tmp.get(i)[2];
+            placementRows[i] = tmp.get(i)[3];
+            firstWords[i] = tmp.get(i)[4];
+            spans[i] = tmpMasks.get(i).length;
+            maskStarts[i] = length;
+
+            System.arraycopy(tmpMasks.get(i), 0, masks, length, spans[i]);
+            length += spans[i];
+        }
+    }
+
+    /**
+     * Turn the dead region check on/off, used to compare against a plain search
+     * @param pruning true to prune regions that can't be filled, false otherwise
+     */
+    public void setPruning(final boolean pruning)
+    {
+        this.pruning = pruning;
+    }
+
+    /**
+     * Choose if pieces with the same shape are interchangeable, the other solvers count the same way
+     * @param interchangeable true to count each arrangement once, false to count every way the pieces can be swapped
+     */
+    public void setInterchangeable(final boolean interchangeable)
+    {
+        this.interchangeable = interchangeable;
+    }
+
+    /**
+     * Assign the token used to stop a search that is in progress
+     * @param cancel Flag that will stop the search once true, null if the search can't be cancelled
+     */
+    public void setCancel(final AtomicBoolean cancel)
+    {
+        this.cancel = cancel;
+    }
+
+    /**
+     * Limit how much work a search can do, a search that reaches the limit stops without an answer
+     * @param nodeLimit The maximum number of nodes to visit, 0 for no limit
+     */
+    public void setNodeLimit(final long nodeLimit)
+    {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Did the last search stop because of the node limit
+     * @return true if the search was not finished, false otherwise
+     */
+    public boolean hasExceeded()
+    {
+        return this.exceeded;
+    }
+
+    /**
+     * Find the first solution
+     * @return The first solution found, null if the puzzle can't be solved
+     */
+    public Solution solve()
+    {
+        run(1);
+
+        return getSolution();
+    }
+
+    /**
+     * Count all of the solutions
+     * @return The total number of solutions
+     */
+    public long count()
+    {
+        return count(Long.MAX_VALUE);
+    }
+
+    /**
+     * Count the solutions, stopping early once the limit is reached
+     * @param limit The maximum number of solutions we want to count
+     * @return The number of solutions found, never more than the limit
+     */
+    public long count(final long limit)
+    {
+        run(limit);
+
+        return getSolutionCount();
+    }
+
+    /**
+     * Search the entire tree
+     * @param limit The maximum number of solutions we want to find
+     */
+    private void run(final long limit)
+    {
+        this.limit = limit;
+        this.solutions = 0;
+        this.nodes = 0;
+        this.pruned = 0;
+        this.backtracks = 0;
+        this.forced = 0;
+        this.first = -1;
+        this.deepest = 0;
+        this.exceeded = false;
+        this.solution = null;
+        this.second = null;
+
+        final long start = System.nanoTime();
+
+        //if the total size of the pieces doesn't match the puzzle there is no solution
+        if (getEmptyCount() == getUnusedTotal())
+            search(0);
+
+        this.elapsed = System.nanoTime() - start;
+    }
+
+    /**
+     * Fill the lowest empty location
+     * @param depth The number of pieces placed
+     * @return true if the search should stop, false otherwise
+     */
+    private boolean search(final int depth)
+    {
+        nodes++;
+
+        if (depth > deepest)
+            deepest = depth;
+
+        //stop if another thread or the game no longer needs the result
+        if (cancel != null && cancel.get())
+            return true;
+
+        //stop if the search is taking too much work
+        if (nodeLimit != 0 && nodes > nodeLimit)
+        {
+            exceeded = true;
+            return true;
+        }
+
+        //find the lowest empty location
+        int index = -1;
+
+        for (int w = 0; w < words; w++)
+        {
+            if (empty[w] != 0)
+            {
+                index = (w * WORD_SIZE) + Long.numberOfTrailingZeros(empty[w]);
+                break;
+            }
+        }
+
+        //if every location is filled we found a solution
+        if (index < 0)
+        {
+            solutions++;
+
+            if (solution == null)
+            {
+                solution = createSolution(depth);
+                first = nodes;
+            }
+            else if (second == null)
+            {
+                second = createSolution(depth);
+            }
+
+            return (solutions >= limit);
+        }
+
+        //the number of placements that fit the location
+        int branches = 0;
+
+        for (int placement = starts[index]; placement < starts[index + 1]; placement++)
+        {
+            if (used[pieces[placement]] || !fits(placement))
+                continue;
+
+            //placing this piece before its twin would only repeat an arrangement
+            if (interchangeable && twins[pieces[placement]] >= 0 && !used[twins[pieces[placement]]])
+                continue;
+
+            branches++;
+
+            final long found = solutions;
+
+            toggle(placement);
+            used[pieces[placement]] = true;
+            stack[depth] = placement;
+
+            boolean stop = false;
+
+            if (pruning && hasDeadRegion())
+            {
+                pruned++;
+            }
+            else
+            {
+                stop = search(depth + 1);
+            }
+
+            used[pieces[placement]] = false;
+            toggle(placement);
+
+            if (stop)
+                return true;
+
+            //the placement has to be undone without finding anything
+            if (solutions == found)
+                backtracks++;
+        }
+
+        if (branches == 1)
+            forced++;
+
+        return false;
+    }
+
+    /**
+     * Are all locations of the placement empty
+     * @param placement The placement
+     * @return true if the placement can be made, false otherwise
+     */
+    private boolean fits(final int placement)
+    {
+        final int start = maskStarts[placement];
+        final int first = firstWords[placement];
+
+        for (int i = 0; i < spans[placement]; i++)
+        {
+            if ((masks[start + i] & ~empty[first + i]) != 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Place or remove the placement
+     * @param placement The placement
+     */
+    private void toggle(final int placement)
+    {
+        final int start = maskStarts[placement];
+        final int first = firstWords[placement];
+
+        for (int i = 0; i < spans[placement]; i++)
+        {
+            empty[first + i] ^= masks[start + i];
+        }
+    }
+
+    /**
+     * Is there an empty region that can't be filled by the remaining pieces
+     * @return true if a region size can't be made from the sizes of the remaining pieces, false otherwise
+     */
+    private boolean hasDeadRegion()
+    {
+        //when all pieces are the same size we only need to check the region size is a multiple
+        if (uniform == 0)
+            calculateSums();
+
+        System.arraycopy(empty, 0, remaining, 0, words);
+
+        for (int w = 0; w < words; w++)
+        {
+            while (remaining[w] != 0)
+            {
+                //start a region from the lowest remaining location
+                clear(region);
+                region[w] = Long.lowestOneBit(remaining[w]);
+
+                final int size = fill();
+
+                if (uniform != 0)
+                {
+                    if (size % uniform != 0)
+                        return true;
+                }
+                else if (((sums[size / WORD_SIZE] >>> size) & 1L) == 0)
+                {
+                    return true;
+                }
+
+                //this region is ok, now check the rest
+                for (int i = 0; i < words; i++)
+                {
+                    remaining[i] &= ~region[i];
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Grow the region through the remaining locations until it can't grow anymore
+     * @return The number of locations in the region
+     */
+    private int fill()
+    {
+        boolean changed = true;
+
+        while (changed)
+        {
+            System.arraycopy(region, 0, grow, 0, words);
+
+            //east neighbors, skipping the wrap to the next row
+            shift(region, 1);
+            or(grow, shifted, notFirstCol);
+
+            //west neighbors, skipping the wrap to the previous row
+            shift(region, -1);
+            or(grow, shifted, notLastCol);
+
+            //south and north neighbors
+            shift(region, cols);
+            or(grow, shifted, null);
+            shift(region, -cols);
+            or(grow, shifted, null);
+
+            changed = false;
+
+            for (int i = 0; i < words; i++)
+            {
+                final long tmp = grow[i] & remaining[i];
+
+                if (tmp != region[i])
+                {
+                    region[i] = tmp;
+                    changed = true;
+                }
+            }
+        }
+
+        int size = 0;
+
+        for (int i = 0; i < words; i++)
+        {
+            size += Long.bitCount(region[i]);
+        }
+
+        return size;
+    }
+
+    /**
+     * Shift the bits towards the higher locations, the result is stored in shifted
+     * @param source The bits to shift
+     * @param distance Number of locations to shift, negative to shift towards the lower locations
+     */
+    private void shift(final long[] source, final int distance)
+    {
+        final int wordShift = Math.abs(distance) / WORD_SIZE;
+        final int bitShift = Math.abs(distance) % WORD_SIZE;
+
+        for (int i = 0; i < words; i++)
+        {
+            long value = 0;
+
+            if (distance >= 0)
+            {
+                final int from = i - wordShift;
+
+                if (from >= 0)
+                    value = source[from] << bitShift;
+                if (bitShift != 0 && from - 1 >= 0)
+                    value |= source[from - 1] >>> (WORD_SIZE - bitShift);
+            }
+            else
+            {
+                final int from = i + wordShift;
+
+                if (from < words)
+                    value = source[from] >>> bitShift;
+                if (bitShift != 0 && from + 1 < words)
+                    value |= source[from + 1] << (WORD_SIZE - bitShift);
+            }
+
+            shifted[i] = value;
+        }
+    }
+
+    /**
+     * Add the bits to the target
+     * @param target Where the bits are added
+     * @param bits The bits to add
+     * @param mask Only add bits in this mask, null to add all
+     */
+    private void or(final long[] target, final long[] bits, final long[] mask)
+    {
+        for (int i = 0; i < words; i++)
+        {
+            target[i] |= (mask == null) ? bits[i] : (bits[i] & mask[i]);
+        }
+    }
+
+    private static void clear(final long[] bits)
+    {
+        for (int i = 0; i < bits.length; i++)
+        {
+            bits[i] = 0;
+        }
+    }
+
+    /**
+     * Calculate every total that can be made from the sizes of the unused pieces
+     */
+    private void calculateSums()
+    {
+        clear(sums);
+
+        //a total of 0 is always possible
+        sums[0] = 1L;
+
+        for (int piece = 0; piece < sizes.length; piece++)
+        {
+            if (used[piece])
+                continue;
+
+            final int size = sizes[piece];
+
+            //add this size to every total we have so far, from the highest word down
+            for (int i = sums.length - 1; i >= 0; i--)
+            {
+                long value = sums[i] << size;
+
+                if (i > 0)
+                    value |= sums[i - 1] >>> (WORD_SIZE - size);
+
+                sums[i] |= value;
+            }
+        }
+    }
+
+    /**
+     * Are all pieces the same size
+     * @return true if every piece has the same number of small pieces, false otherwise
+     */
+    private boolean isUniform()
+    {
+        for (int i = 1; i < sizes.length; i++)
+        {
+            if (sizes[i] != sizes[0])
+                return false;
+        }
+
+        return (sizes.length > 0);
+    }
+
+    private int getEmptyCount()
+    {
+        int count = 0;
+
+        for (int i = 0; i < words; i++)
+        {
+            count += Long.bitCount(empty[i]);
+        }
+
+        return count;
+    }
+
+    private int getUnusedTotal()
+    {
+        int total = 0;
+
+        for (int i = 0; i < sizes.length; i++)
+        {
+            if (!used[i])
+                total += sizes[i];
+        }
+
+        return total;
+    }
+
+    /**
+     * Create a solution from the placements on the stack
+     * @param depth The number of placements on the stack
+     * @return The solution
+     */
+    private Solution createSolution(final int depth)
+    {
+        final List<Placement> placements = new ArrayList<>();
+
+        for (int i = 0; i < depth; i++)
+        {
+            final int placement = stack[i];
+
+            placements.add(new Placement(pieces[placement], orientations[placement], placementCols[placement], placementRows[placement]));
+        }
+
+        return new Solution(placements);
+    }
+
+    /**
+     * Get the first solution of the last search
+     * @return The solution, null if none was found
+     */
+    public Solution getSolution()
+    {
+        return this.solution;
+    }
+
+    /**
+     * Get the second solution of the last search, this shows where a puzzle is ambiguous
+     * @return The solution, null if less than 2 were found
+     */
+    public Solution getSecondSolution()
+    {
+        return this.second;
+    }
+
+    /**
+     * Get the number of solutions found in the last search
+     * @return The number of solutions
+     */
+    public long getSolutionCount()
+    {
+        return this.solutions;
+    }
+
+    /**
+     * Get the number of search nodes visited in the last search
+     * @return The number of nodes
+     */
+    public long getNodes()
+    {
+        return this.nodes;
+    }
+
+    /**
+     * Get the number of placements pruned in the last search because they left a region that can't be filled
+     * @return The number of pruned placements
+     */
+    public long getPruned()
+    {
+        return this.pruned;
+    }
+
+    /**
+     * Get the number of placements in the last search that were undone without leading to a solution
+     * @return The number of backtracks
+     */
+    public long getBacktracks()
+    {
+        return this.backtracks;
+    }
+
+    /**
+     * Get the number of locations in the last search that only one placement could fill
+     * @return The number of forced moves
+     */
+    public long getForced()
+    {
+        return this.forced;
+    }
+
+    /**
+     * Get the number of nodes the last search visited before finding the first solution
+     * @return The number of nodes, -1 if no solution was found
+     */
+    public long getFirstNodes()
+    {
+        return this.first;
+    }
+
+    /**
+     * Get the most pieces the last search had placed at once
+     * @return The number of pieces, the number of pieces of the puzzle if a solution was found
+     */
+    public int getDeepest()
+    {
+        return this.deepest;
+    }
+
+    /**
+     * Get how long the last search took
+     * @return The duration in nanoseconds
+     */
+    public long getElapsed()
+    {
+        return this.elapsed;
+    }
+}
@@ -0,0 +1,584 @@
+package com.gamesbykevin.daedalianopus.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Knuth's Algorithm X using dancing links to solve an exact cover matrix.<br>
+ * All links are stored in int arrays created once, so searching does not create any objects
+ * until a solution is found. The column with the fewest remaining rows is always chosen next.
+ * By default pieces with the same shape are interchangeable, twins are only placed with their ranks in order
+ * so each arrangement is counted once, the same as the other solvers count them.
+ * @author GOD
+ */
+public final class DancingLinks
+{
+    //the matrix we are solving
+    private final ExactCover matrix;
+
+    //the root node
+    private static final int ROOT = 0;
+
+    //the links of each node
+    private final int[] left, right, up, down;
+
+    //the column header of each node
+    private final int[] column;
+
+    //the matrix row of each node
+    private final int[] rows;
+
+    //the number of nodes remaining in each column, indexed by header node
+    private final int[] sizes;
+
+    //is each column covered by a selected row, indexed by header node
+    private final boolean[] covered;
+
+    //the first node of each row in the matrix
+    private final int[] firsts;
+
+    //the rows chosen so far
+    private final int[] stack;
+
+    //the rank each piece was placed with, -1 if it isn't placed
+    private final int[] ranks;
+
+    //are pieces with the same shape interchangeable
+    private boolean interchangeable = true;
+
+    //the number of rows selected before searching
+    private int selected = 0;
+
+    //stop searching once this many solutions are found
+    private long limit;
+
+    //the number of solutions found in the last search
+    private long solutions;
+
+    //the number of search nodes visited in the last search
+    private long nodes;
+
+    //how long the last search took in nanoseconds
+    private long elapsed;
+
+    //the first solution found in the last search
+    private Solution solution;
+
+    //when set the search will stop as soon as possible
+    private AtomicBoolean cancel;
+
+    //the time the search has to stop by, 0 if there is no time limit
+    private long deadline = 0;
+
+    //did the last search stop because it ran out of time
+    private boolean timedOut = false;
+
+    //how often the time limit is checked
+    private static final int DEADLINE_CHECK_MASK = 1023;
+
+    public DancingLinks(final ExactCover matrix)
+    {
+        this.matrix = matrix;
+
+        final int headers = matrix.getColumnCount() + 1;
+        final int total = headers + matrix.getNodeCount();
+
+        this.left = new int[total];
+        this.right = new int[total];
+        this.up = new int[total];
+        this.down = new int[total];
+        this.column = new int[total];
+        this.rows = new int[total];
+        this.sizes = new int[headers];
+        this.covered = new boolean[headers];
+        this.firsts = new int[matrix.getRowCount()];
+        this.stack = new int[matrix.getPieceCount() + 1];
+        this.ranks = new int[matrix.getPieceCount()];
+
+        for (int i = 0; i < ranks.length; i++)
+        {
+            ranks[i] = -1;
+        }
+
+        //link the root and column headers in a circle
+        for (int i = 0; i < headers; i++)
+        {
+            left[i] = (i == 0) ? headers - 1 : i - 1;
+            right[i] = (i == headers - 1) ? 0 : i + 1;
+            up[i] = i;
+            down[i] = i;
+            column[i] = i;
+            rows[i] = -1;
+        }
+
+        int node = headers;
+
+        for (int row = 0; row < matrix.getRowCount(); row++)
+        {
+            final int first = node;
+
+            firsts[row] = first;
+
+            for (int i = matrix.getRowStart(row); i < matrix.getRowEnd(row); i++)
+            {
+                final int header = matrix.getColumn(i) + 1;
+
+                //add to the bottom of the column
+                column[node] = header;
+                rows[node] = row;
+                up[node] = up[header];
+                down[node] = header;
+                down[up[header]] = node;
+                up[header] = node;
+                sizes[header]++;
+
+                //add to the end of the row
+                left[node] = (node == first) ? node : node - 1;
+                right[node] = first;
+                right[left[node]] = node;
+                left[first] = node;
+
+                node++;
+            }
+        }
+    }
+
+    public ExactCover getMatrix()
+    {
+        return this.matrix;
+    }
+
+    /**
+     * Assign the token used to stop a search that is in progress
+     * @param cancel Flag that will stop the search once true, null if the search can't be cancelled
+     */
+    public void setCancel(final AtomicBoolean cancel)
+    {
+        this.cancel = cancel;
+    }
+
+    /**
+     * Choose if pieces with the same shape are interchangeable, set before any rows are selected
+     * @param interchangeable true to count each arrangement once, false to count every way the pieces can be swapped
+     */
+    public void setInterchangeable(final boolean interchangeable)
+    {
+        this.interchangeable = interchangeable;
+    }
+
+    /**
+     * Set the time the search has to stop by
+     * @param deadline The time as provided by System.nanoTime(), 0 for no time limit
+     */
+    public void setDeadline(final long deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Did the last search run out of time before it finished
+     * @return true if the search stopped because of the deadline, false otherwise
+     */
+    public boolean hasTimedOut()
+    {
+        return this.timedOut;
+    }
+
+    /**
+     * Find the first solution
+     * @return The first solution found, null if the puzzle can't be solved
+     */
+    public Solution solve()
+    {
+        run(1);
+
+        return getSolution();
+    }
+
+    /**
+     * Count all of the solutions
+     * @return The total number of solutions
+     */
+    public long count()
+    {
+        return count(Long.MAX_VALUE);
+    }
+
+    /**
+     * Count the solutions, stopping early once the limit is reached
+     * @param limit The maximum number of solutions we want to count
+     * @return The number of solutions found, never more than the limit
+     */
+    public long count(final long limit)
+    {
+        run(limit);
+
+        return getSolutionCount();
+    }
+
+    /**
+     * Search the matrix with the currently selected rows in place
+     * @param limit The maximum number of solutions we want to find
+     */
+    private void run(final long limit)
+    {
+        this.limit = limit;
+        this.solutions = 0;
+        this.nodes = 0;
+        this.solution = null;
+        this.timedOut = false;
+
+        final long start = System.nanoTime();
+
+        search(selected);
+
+        this.elapsed = System.nanoTime() - start;
+    }
+
+    /**
+     * Search the remaining matrix
+     * @param depth The number of rows currently chosen
+     * @return true if the search should stop, false otherwise
+     */
+    private boolean search(final int depth)
+    {
+        nodes++;
+
+        //stop if another thread or the game no longer needs the result
+        if (cancel != null && cancel.get())
+            return true;
+
+        //stop if we have run out of time
+        if (deadline != 0 && (nodes & DEADLINE_CHECK_MASK) == 0 && System.nanoTime() - deadline > 0)
+        {
+            timedOut = true;
+            return true;
+        }
+
+        //if there are no columns remaining we found a solution
+        if (right[ROOT] == ROOT)
+        {
+            solutions++;
+
+            if (solution == null)
+                solution = createSolution(depth);
+
+            return (solutions >= limit);
+        }
+
+        //choose the column with the fewest rows
+        final int header = getBranchColumn();
+
+        //if a column can't be covered this is a dead end
+        if (sizes[header] == 0)
+            return false;
+
+        cover(header);
+
+        for (int node = down[header]; node != header; node = down[node])
+        {
+            //placing a twin out of order would only repeat an arrangement
+            if (!isOrdered(rows[node]))
+                continue;
+
+            stack[depth] = node;
+
+            for (int i = right[node]; i != node; i = right[i])
+            {
+                cover(column[i]);
+            }
+
+            place(rows[node]);
+
+            final boolean stop = search(depth + 1);
+
+            remove(rows[node]);
+
+            for (int i = left[node]; i != node; i = left[i])
+            {
+                uncover(column[i]);
+            }
+
+            if (stop)
+            {
+                uncover(header);
+                return true;
+            }
+        }
+
+        uncover(header);
+
+        return false;
+    }
+
+    /**
+     * Can the row be placed without putting the ranks of twins out of order
+     * @param row The row of the matrix
+     * @return true if the row can be placed, false otherwise
+     */
+    private boolean isOrdered(final int row)
+    {
+        if (!interchangeable)
+            return true;
+
+        final int piece = matrix.getPiece(row);
+        final int rank = matrix.getRank(row);
+
+        //a twin before this piece has to have a lower rank
+        final int previous = matrix.getTwin(piece);
+
+        if (previous >= 0 && ranks[previous] >= rank)
+            return false;
+
+        //a twin after this piece has to have a higher rank
+        final int next = matrix.getNextTwin(piece);
+
+        if (next >= 0 && ranks[next] >= 0 && ranks[next] <= rank)
+            return false;
+
+        return true;
+    }
+
+    private void place(final int row)
+    {
+        ranks[matrix.getPiece(row)] = matrix.getRank(row);
+    }
+
+    private void remove(final int row)
+    {
+        ranks[matrix.getPiece(row)] = -1;
+    }
+
+    /**
+     * Get the column with the fewest rows remaining
+     * @return The column header node
+     */
+    private int getBranchColumn()
+    {
+        int header = right[ROOT];
+
+        for (int i = right[header]; i != ROOT && sizes[header] > 0; i = right[i])
+        {
+            if (sizes[i] < sizes[header])
+                header = i;
+        }
+
+        return header;
+    }
+
+    /**
+     * Get the rows a search would try next with the currently selected rows in place
+     * @return The matrix rows of the column with the fewest rows, null if no columns remain because the selected rows are a solution
+     */
+    public int[] getBranch()
+    {
+        if (right[ROOT] == ROOT)
+            return null;
+
+        final int header = getBranchColumn();
+
+        final int[] tmp = new int[sizes[header]];
+
+        int index = 0;
+
+        for (int node = down[header]; node != header; node = down[node])
+        {
+            //the search would skip twins placed out of order
+            if (isOrdered(rows[node]))
+                tmp[index++] = rows[node];
+        }
+
+        return Arrays.copyOf(tmp, index);
+    }
+
+    /**
+     * Remove the column and every row that uses it
+     * @param header The column header node
+     */
+    private void cover(final int header)
+    {
+        covered[header] = true;
+
+        right[left[header]] = right[header];
+        left[right[header]] = left[header];
+
+        for (int i = down[header]; i != header; i = down[i])
+        {
+            for (int j = right[i]; j != i; j = right[j])
+            {
+                up[down[j]] = up[j];
+                down[up[j]] = down[j];
+                sizes[column[j]]--;
+            }
+        }
+    }
+
+    /**
+     * Restore the column and every row that uses it, the reverse of cover
+     * @param header The column header node
+     */
+    private void uncover(final int header)
+    {
+        for (int i = up[header]; i != header; i = up[i])
+        {
+            for (int j = left[i]; j != i; j = left[j])
+            {
+                sizes[column[j]]++;
+                up[down[j]] = j;
+                down[up[j]] = j;
+            }
+        }
+
+        right[left[header]] = header;
+        left[right[header]] = header;
+
+        covered[header] = false;
+    }
+
+    /**
+     * Choose a row before searching, for example a piece the player has already placed
+     * @param row The row of the matrix
+     * @return true if the row was selected, false if it conflicts with a row already selected or puts twins out of order
+     */
+    public boolean select(final int row)
+    {
+        final int first = firsts[row];
+
+        if (!isOrdered(row))
+            return false;
+
+        //make sure none of the columns are already taken
+        for (int i = first; ; )
+        {
+            if (covered[column[i]])
+                return false;
+
+            i = right[i];
+
+            if (i == first)
+                break;
+        }
+
+        for (int i = first; ; )
+        {
+            cover(column[i]);
+
+            i = right[i];
+
+            if (i == first)
+                break;
+        }
+
+        stack[selected++] = first;
+
+        place(row);
+
+        return true;
+    }
+
+    /**
+     * Remove the last selected row
+     */
+    public void deselect()
+    {
+        final int first = stack[--selected];
+
+        remove(rows[first]);
+
+        //uncover in the reverse order
+        for (int i = left[first]; ; )
+        {
+            uncover(column[i]);
+
+            if (i == first)
+                break;
+
+            i = left[i];
+        }
+    }
+
+    /**
+     * Remove all selected rows
+     */
+    public void deselectAll()
+    {
+        while (selected > 0)
+        {
+            deselect();
+        }
+    }
+
+    /**
+     * Get the number of rows selected before searching
+     * @return The number of selected rows
+     */
+    public int getSelectedCount()
+    {
+        return this.selected;
+    }
+
+    /**
+     * Get a selected row
+     * @param index The order it was selected
+     * @return The row of the matrix
+     */
+    public int getSelected(final int index)
+    {
+        return this.rows[stack[index]];
+    }
+
+    /**
+     * Create a solution from the rows on the stack
+     * @param depth The number of rows on the stack
+     * @return The solution
+     */
+    private Solution createSolution(final int depth)
+    {
+        final List<Placement> placements = new ArrayList<>();
+
+        for (int i = 0; i < depth; i++)
+        {
+            placements.add(matrix.getPlacement(rows[stack[i]]));
+        }
+
+        return new Solution(placements);
+    }
+
+    /**
+     * Get the first solution of the last search
+     * @return The solution, null if none was found
+     */
+    public Solution getSolution()
+    {
+        return this.solution;
+    }
+
+    /**
+     * Get the number of solutions found in the last search
+     * @return The number of solutions
+     */
+    public long getSolutionCount()
+    {
+        return this.solutions;
+    }
+
+    /**
+     * Get the number of search nodes visited in the last search
+     * @return The number of nodes
+     */
+    public long getNodes()
+    {
+        return this.nodes;
+    }
+
+    /**
+     * Get how long the last search took
+     * @return The duration in nanoseconds
+     */
+    public long getElapsed()
+    {
+        return this.elapsed;
+    }
+}
@@ -0,0 +1,410 @@
+package com.gamesbykevin.daedalianopus.solver;
+
+import com.gamesbykevin.daedalianopus.puzzle.BitBoard;
+import com.gamesbykevin.daedalianopus.puzzle.Puzzle;
+import com.gamesbykevin.daedalianopus.puzzle.piece.Piece;
+import com.gamesbykevin.daedalianopus.puzzle.piece.PiecesHelper;
+import com.gamesbykevin.daedalianopus.puzzle.piece.Shape;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The exact cover matrix of a puzzle.<br>
+ * There is one column for each piece and one column for each valid puzzle location,
+ * and one row for every way a piece can be placed entirely inside the puzzle.
+ * Pieces with the same shape are twins, each row has a rank that is the same for twins covering the same
+ * locations, so a solver can keep the ranks of twins in order and count each arrangement only once.
+ * Once created the matrix does not change so it can be shared between threads.
+ * @author GOD
+ */
+public final class ExactCover
+{
+    /**
+     * The most orientations a shape can have
+     */
+    public static final int ORIENTATIONS = 8;
+
+    //the valid locations of the puzzle
+    private final BitBoard board;
+
+    //the shape of each piece
+    private final Shape[] shapes;
+
+    //the column of each puzzle location, -1 if the location is not valid
+    private final int[] cellColumns;
+
+    //the total number of columns
+    private final int columns;
+
+    //the piece, orientation and location of each row
+    private final int[] rowPieces, rowOrientations, rowCols, rowRows;
+
+    //the rank of each row, twins covering the same locations have the same rank
+    private final int[] rowRanks;
+
+    //the previous and next piece with the same shape, -1 if there is none
+    private final int[] twins, nextTwins;
+
+    //where the columns for each row start in rowColumns
+    private final int[] rowStarts;
+
+    //the columns of every row
+    private final int[] rowColumns;
+
+    public ExactCover(final BitBoard board, final List<Shape> shapes)
+    {
+        this.board = board;
+        this.shapes = shapes.toArray(new Shape[shapes.size()]);
+        this.twins = new int[this.shapes.length];
+        this.nextTwins = new int[this.shapes.length];
+
+        //link each piece to the pieces before and after it with the same shape
+        for (int i = 0; i < this.shapes.length; i++)
+        {
+            twins[i] = -1;
+            nextTwins[i] = -1;
+
+            for (int z = i - 1; z >= 0; z--)
+            {
+                if (this.shapes[z].getKey() == this.shapes[i].getKey())
+                {
+                    twins[i] = z;
+                    nextTwins[z] = i;
+                    break;
+                }
+            }
+        }
+
+        //each piece has a column
+        int count = this.shapes.length;
+
+        //each valid location has a column
+        this.cellColumns = new int[board.getCols() * board.getRows()];
+
+        for (int index = 0; index < cellColumns.length; index++)
+        {
+            cellColumns[index] = (board.get(index)) ? count++ : -1;
+        }
+
+        this.columns = count;
+
+        //count the rows first so we only create the arrays once
+        int rows = 0, nodes = 0;
+
+        for (int piece = 0; piece < this.shapes.length; piece++)
+        {
+            final Shape shape = this.shapes[piece];
+
+            for (int orientation = 0; orientation < shape.getOrientationCount(); orientation++)
+            {
+                for (int row = 0; row <= board.getRows() - shape.getHeight(orientation); row++)
+                {
+                    for (int col = 0; col <= board.getCols() - shape.getWidth(orientation); col++)
+                    {
+                        if (fits(shape, orientation, col, row))
+                        {
+                            rows++;
+                            nodes += shape.getSize() + 1;
+                        }
+                    }
+                }
+            }
+        }
+
+        this.rowPieces = new int[rows];
+        this.rowOrientations = new int[rows];
+        this.rowCols = new int[rows];
+        this.rowRows = new int[rows];
+        this.rowRanks = new int[rows];
+        this.rowStarts = new int[rows + 1];
+        this.rowColumns = new int[nodes];
+
+        int index = 0, node = 0;
+
+        for (int piece = 0; piece < this.shapes.length; piece++)
+        {
+            final Shape shape = this.shapes[piece];
+
+            //twins may list their orientations in a different order, so the first twin's order is used for the rank
+            Shape first = shape;
+
+            for (int z = twins[piece]; z >= 0; z = twins[z])
+            {
+                first = this.shapes[z];
+            }
+
+            for (int orientation = 0; orientation < shape.getOrientationCount(); orientation++)
+            {
+                final int rankOrientation = first.getOrientation(shape.getMask(orientation));
+
+                for (int row = 0; row <= board.getRows() - shape.getHeight(orientation); row++)
+                {
+                    for (int col = 0; col <= board.getCols() - shape.getWidth(orientation); col++)
+                    {
+                        if (!fits(shape, orientation, col, row))
+                            continue;
+
+                        //the first location covered and the orientation identify the locations covered
+                        rowRanks[index] = (board.getIndex(col + shape.getCol(orientation, 0), row + shape.getRow(orientation, 0)) * ORIENTATIONS) + rankOrientation;
+
+                        rowPieces[index] = piece;
+                        rowOrientations[index] = orientation;
+                        rowCols[index] = col;
+                        rowRows[index] = row;
+                        rowStarts[index] = node;
+
+                        //the piece column followed by each location covered
+                        rowColumns[node++] = piece;
+
+                        for (int i = 0; i < shape.getSize(); i++)
+                        {
+                            rowColumns[node++] = cellColumns[board.getIndex(col + shape.getCol(orientation, i), row + shape.getRow(orientation, i))];
+                        }
+
+                        index++;
+                    }
+                }
+            }
+        }
+
+        rowStarts[rows] = node;
+    }
+
+    /**
+     * Create the matrix for a campaign puzzle using its valid piece types
+     * @param puzzle The puzzle we want to solve
+     * @return The exact cover matrix for the puzzle
+     */
+    public static ExactCover create(final Puzzle puzzle)
+    {
+        return new ExactCover(puzzle.getBoard(), getShapes(puzzle));
+    }
+
+    /**
+     * Create the matrix for a puzzle using the specified pieces
+     * @param puzzle The puzzle we want to solve
+     * @param pieces The pieces in play, the index of each piece will be used in the solution
+     * @return The exact cover matrix for the puzzle
+     */
+    public static ExactCover create(final Puzzle puzzle, final List<Piece> pieces)
+    {
+        return new ExactCover(puzzle.getBoard(), getShapes(pieces));
+    }
+
+    /**
+     * Get the shapes of the valid piece types of a campaign puzzle
+     * @param puzzle The puzzle
+     * @return List of shapes in the same order as the valid piece types
+     */
+    public static List<Shape> getShapes(final Puzzle puzzle)
+    {
+        final List<Shape> shapes = new ArrayList<>();
+
+        for (int i = 0; i < puzzle.getValidPieces().size(); i++)
+        {
+            shapes.add(PiecesHelper.getShape(puzzle.getValidPieces().get(i)));
+        }
+
+        return shapes;
+    }
+
+    /**
+     * Get the shapes of the pieces
+     * @param pieces The pieces
+     * @return List of shapes in the same order as the pieces
+     */
+    public static List<Shape> getShapes(final List<Piece> pieces)
+    {
+        final List<Shape> shapes = new ArrayList<>();
+
+        for (int i = 0; i < pieces.size(); i++)
+        {
+            shapes.add(pieces.get(i).getShape());
+        }
+
+        return shapes;
+    }
+
+    /**
+     * Does the orientation fit entirely inside the puzzle at the location
+     * @param shape The shape of the piece
+     * @param orientation The orientation of the shape
+     * @param col Column of the top-left
+     * @param row Row of the top-left
+     * @return true if every small piece is on a valid location, false otherwise
+     */
+    private boolean fits(final Shape shape, final int orientation, final int col, final int row)
+    {
+        for (int i = 0; i < shape.getSize(); i++)
+        {
+            if (!board.get(col + shape.getCol(orientation, i), row + shape.getRow(orientation, i)))
+                return false;
+        }
+
+        return true;
+    }
+
+    public BitBoard getBoard()
+    {
+        return this.board;
+    }
+
+    /**
+     * Get the shape of the piece
+     * @param piece The index of the piece
+     * @return The shape of the piece
+     */
+    public Shape getShape(final int piece)
+    {
+        return this.shapes[piece];
+    }
+
+    public int getPieceCount()
+    {
+        return this.shapes.length;
+    }
+
+    public int getColumnCount()
+    {
+        return this.columns;
+    }
+
+    public int getRowCount()
+    {
+        return this.rowPieces.length;
+    }
+
+    /**
+     * Get the total number of entries in the matrix
+     * @return The sum of the number of columns in every row
+     */
+    public int getNodeCount()
+    {
+        return this.rowColumns.length;
+    }
+
+    /**
+     * Get the column of the puzzle location
+     * @param col Column
+     * @param row Row
+     * @return The matrix column of the location, -1 if the location is not valid
+     */
+    public int getCellColumn(final int col, final int row)
+    {
+        if (!board.contains(col, row))
+            return -1;
+
+        return this.cellColumns[board.getIndex(col, row)];
+    }
+
+    public int getRowStart(final int row)
+    {
+        return this.rowStarts[row];
+    }
+
+    public int getRowEnd(final int row)
+    {
+        return this.rowStarts[row + 1];
+    }
+
+    /**
+     * Get the column of an entry in the matrix
+     * @param node The index of the entry between the start and end of a row
+     * @return The column of the entry
+     */
+    public int getColumn(final int node)
+    {
+        return this.rowColumns[node];
+    }
+
+    public int getPiece(final int row)
+    {
+        return this.rowPieces[row];
+    }
+
+    public int getOrientation(final int row)
+    {
+        return this.rowOrientations[row];
+    }
+
+    public int getCol(final int row)
+    {
+        return this.rowCols[row];
+    }
+
+    public int getRow(final int row)
+    {
+        return this.rowRows[row];
+    }
+
+    /**
+     * Get the rank of the row, used to place twins in order
+     * @param row The row of the matrix
+     * @return The rank, twins covering the same locations have the same rank
+     */
+    public int getRank(final int row)
+    {
+        return this.rowRanks[row];
+    }
+
+    /**
+     * Get the previous piece with the same shape
+     * @param piece The index of the piece
+     * @return The index of the twin, -1 if there is none
+     */
+    public int getTwin(final int piece)
+    {
+        return this.twins[piece];
+    }
+
+    /**
+     * Get the next piece with the same shape
+     * @param piece The index of the piece
+     * @return The index of the twin, -1 if there is none
+     */
+    public int getNextTwin(final int piece)
+    {
+        return this.nextTwins[piece];
+    }
+
+    /**
+     * Get the placement of the row
+     * @param row The row of the matrix
+     * @return Where the piece goes
+     */
+    public Placement getPlacement(final int row)
+    {
+        return new Placement(rowPieces[row], rowOrientations[row], rowCols[row], rowRows[row]);
+    }
+
+    /**
+     * Find the row for the placement
+     * @param piece The index of the piece
+     * @param orientation The orientation of the piece
+     * @param col Column of the top-left
+     * @param row Row of the top-left
+     * @return The row of the matrix, -1 if the placement is not entirely inside the puzzle
+     */
+    public int getRow(final int piece, final int orientation, final int col, final int row)
+    {
+        //the rows for each piece are in order so we can search just this piece
+        int index = Arrays.binarySearch(rowPieces, piece);
+
+        if (index < 0)
+            return -1;
+
+        //go back to the first row of the piece
+        while (index > 0 && rowPieces[index - 1] == piece)
+            index--;
+
+        for (; index < rowPieces.length && rowPieces[index] == piece; index++)
+        {
+            if (rowOrientations[index] == orientation && rowCols[index] == col && rowRows[index] == row)
+                return index;
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,464 @@
+package com.gamesbykevin.daedalianopus.solver;
+
+import com.gamesbykevin.framework.resources.Disposable;
+
+import com.gamesbykevin.daedalianopus.puzzle.Puzzle;
+import com.gamesbykevin.daedalianopus.puzzle.piece.Piece;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Find the next correct placement for the current state of the puzzle.<br>
+ * The search runs on a background thread with a time limit so the game loop is never blocked,
+ * and the game checks the status each update. The time limit starts when the hint is requested, so it
+ * includes waiting for the previous search to stop and creating the matrix. The matrix and the last solution are kept
+ * so the next hint for the same puzzle doesn't have to start from scratch, and solutions are
+ * stored in the solution cache so a puzzle is only solved once across runs. The cache file is
+ * saved by the background thread a few seconds after the last new solution, not after every hint.
+ * Puzzles with too many placements to fit in memory, such as Epic puzzles, don't get hints at all.
+ * @author GOD
+ */
+public final class Hints implements Disposable
+{
+    /**
+     * The state of the current hint
+     */
+    public enum Status
+    {
+        None, Searching, Found, Unsolvable, TimedOut, Unavailable
+    }
+
+    /**
+     * The most placements a puzzle can have for a hint to be searched, every placement is a row of the matrix
+     */
+    public static final long MAX_PLACEMENTS = 200000;
+
+    //the result when there is no hint
+    private static final Result NONE = new Result(Status.None, null, null);
+
+    //how long to wait after a new solution before the cache is saved, in seconds
+    private static final long SAVE_DELAY = 5;
+
+    //how long disposing waits for the last save, in seconds
+    private static final long DISPOSE_TIMEOUT = 2;
+
+    //the thread the searches and saves run on
+    private volatile ScheduledThreadPoolExecutor executor;
+
+    //the current hint, replaced as a whole so the status, piece and placement always belong together
+    private volatile Result result = NONE;
+
+    //is a save of the cache waiting to run, only used by the background thread
+    private boolean saving = false;
+
+    //the token for the search in progress
+    private AtomicBoolean cancel;
+
+    //how long a search is allowed to take in nanoseconds
+    private final long limit;
+
+    //the puzzle and pieces the matrix was created for, only used by the background thread
+    private Puzzle puzzle;
+    private List<Piece> pieces;
+
+    //the solver kept between hints, only used by the background thread
+    private DancingLinks links;
+
+    //the last solution found, only used by the background thread
+    private Solution solution;
+
+    /**
+     * Create the hint engine
+     * @param limit How long each search is allowed to take in nanoseconds
+     */
+    public Hints(final long limit)
+    {
+        this.limit = limit;
+
+        //a single low priority thread that won't keep the game running
+        this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(final Runnable runnable)
+            {
+                final Thread thread = new Thread(runnable, "Hints");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+
+        //a waiting save is replaced by the save made when the hints are disposed
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Start searching for a hint, any search in progress will be cancelled
+     * @param puzzle The current puzzle
+     * @param pieces The pieces in play, the ones placed inside the puzzle will stay where they are
+     */
+    public void request(final Puzzle puzzle, final List<Piece> pieces)
+    {
+        reset();
+
+        //the matrix of a puzzle this large would not fit in memory
+        if (getPlacementLimit(puzzle, pieces) > MAX_PLACEMENTS)
+        {
+            this.result = new Result(Status.Unavailable, null, null);
+            return;
+        }
+
+        //copy where the placed pieces are now, since the player can move them while we search
+        final List<Placement> placed = new ArrayList<>();
+
+        for (int i = 0; i < pieces.size(); i++)
+        {
+            final Piece tmp = pieces.get(i);
+
+            if (tmp.isPlaced())
+                placed.add(new Placement(i, tmp.getOrientation(), (int)tmp.getCol(), (int)tmp.getRow()));
+        }
+
+        final List<Piece> copy = new ArrayList<>(pieces);
+        final AtomicBoolean token = new AtomicBoolean(false);
+        final long deadline = System.nanoTime() + limit;
+
+        this.cancel = token;
+        this.result = new Result(Status.Searching, null, null);
+
+        executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    search(puzzle, copy, placed, token, deadline);
+                }
+                catch (RuntimeException e)
+                {
+                    e.printStackTrace();
+
+                    //the status would otherwise stay at searching
+                    finish(token, Status.Unavailable, null, null);
+                }
+            }
+        });
+    }
+
+    /**
+     * Get the most placements the pieces could have, every orientation of every piece at every location
+     * @param puzzle The puzzle
+     * @param pieces The pieces in play
+     * @return The number of placements the matrix could have
+     */
+    private static long getPlacementLimit(final Puzzle puzzle, final List<Piece> pieces)
+    {
+        return (long)pieces.size() * ExactCover.ORIENTATIONS * puzzle.getCols() * puzzle.getRows();
+    }
+
+    /**
+     * Search for the next placement, this runs on the background thread
+     * @param puzzle The current puzzle
+     * @param pieces The pieces in play
+     * @param placed Where the placed pieces are
+     * @param token Flag that is set if this search is no longer needed
+     * @param deadline The time the search has to stop by, from System.nanoTime()
+     */
+    private void search(final Puzzle puzzle, final List<Piece> pieces, final List<Placement> placed, final AtomicBoolean token, final long deadline)
+    {
+        if (token.get())
+            return;
+
+        //the time may have run out while the previous search was stopping
+        if (System.nanoTime() >= deadline)
+        {
+            finish(token, Status.TimedOut, null, null);
+            return;
+        }
+
+        //only create a new matrix if the puzzle or pieces changed
+        if (this.puzzle != puzzle || !isSame(this.pieces, pieces))
+        {
+            this.puzzle = puzzle;
+            this.pieces = pieces;
+            this.links = new DancingLinks(ExactCover.create(puzzle, pieces));
+
+            //the player may have placed any of the pieces with the same shape
+            this.links.setInterchangeable(false);
+
+            //we may have solved this puzzle before
+            this.solution = SolutionCache.getCache().getSolution(puzzle.getBoard(), ExactCover.getShapes(pieces));
+
+            //the matrix is kept for the next hint even if this one is no longer needed
+            if (token.get())
+                return;
+
+            if (System.nanoTime() >= deadline)
+            {
+                finish(token, Status.TimedOut, null, null);
+                return;
+            }
+        }
+
+        //if the last solution still agrees with the placed pieces we can use it
+        if (solution == null || !agrees(solution, placed))
+        {
+            solution = null;
+
+            links.deselectAll();
+
+            //keep the placed pieces where they are
+            for (int i = 0; i < placed.size(); i++)
+            {
+                final Placement tmp = placed.get(i);
+                final int row = links.getMatrix().getRow(tmp.getPiece(), tmp.getOrientation(), tmp.getCol(), tmp.getRow());
+
+                if (row < 0 || !links.select(row))
+                {
+                    finish(token, Status.Unsolvable, null, null);
+                    return;
+                }
+            }
+
+            links.setCancel(token);
+            links.setDeadline(deadline);
+
+            solution = links.solve();
+
+            links.deselectAll();
+
+            if (solution == null)
+            {
+                finish(token, (links.hasTimedOut()) ? Status.TimedOut : Status.Unsolvable, null, null);
+                return;
+            }
+
+            //remember the solution for the next time this puzzle is played
+            SolutionCache.getCache().putSolution(puzzle.getBoard(), ExactCover.getShapes(pieces), solution);
+            scheduleSave();
+        }
+
+        //the hint is the first piece in the solution that isn't placed yet
+        for (int i = 0; i < solution.getPlacements().size(); i++)
+        {
+            final Placement tmp = solution.getPlacements().get(i);
+
+            if (!contains(placed, tmp.getPiece()))
+            {
+                finish(token, Status.Found, pieces.get(tmp.getPiece()), tmp);
+                return;
+            }
+        }
+
+        //every piece is already placed
+        finish(token, Status.Unsolvable, null, null);
+    }
+
+    /**
+     * Store the result if the search wasn't cancelled
+     */
+    private void finish(final AtomicBoolean token, final Status status, final Piece piece, final Placement placement)
+    {
+        synchronized (this)
+        {
+            if (token.get())
+                return;
+
+            this.result = new Result(status, piece, placement);
+        }
+    }
+
+    /**
+     * Save the cache a few seconds from now, unless a save is already waiting, this runs on the background thread
+     */
+    private void scheduleSave()
+    {
+        //the hints may be disposed while we search
+        final ScheduledThreadPoolExecutor tmp = executor;
+
+        if (saving || tmp == null)
+            return;
+
+        try
+        {
+            tmp.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    save();
+                }
+            }, SAVE_DELAY, TimeUnit.SECONDS);
+
+            saving = true;
+        }
+        catch (RejectedExecutionException e)
+        {
+            //the save queued when the hints were disposed will run after this search
+        }
+    }
+
+    /**
+     * Save the cache, this runs on the background thread
+     */
+    private void save()
+    {
+        saving = false;
+
+        SolutionCache.getCache().save();
+    }
+
+    /**
+     * Are both lists the same pieces in the same order
+     */
+    private static boolean isSame(final List<Piece> list1, final List<Piece> list2)
+    {
+        if (list1 == null || list1.size() != list2.size())
+            return false;
+
+        for (int i = 0; i < list1.size(); i++)
+        {
+            if (list1.get(i) != list2.get(i))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Does every placed piece match the solution
+     */
+    private static boolean agrees(final Solution solution, final List<Placement> placed)
+    {
+        for (int i = 0; i < placed.size(); i++)
+        {
+            final Placement tmp = placed.get(i);
+            final Placement answer = solution.getPlacement(tmp.getPiece());
+
+            if (answer == null || answer.getOrientation() != tmp.getOrientation() || answer.getCol() != tmp.getCol() || answer.getRow() != tmp.getRow())
+                return false;
+        }
+
+        return true;
+    }
+
+    private static boolean contains(final List<Placement> placed, final int piece)
+    {
+        for (int i = 0; i < placed.size(); i++)
+        {
+            if (placed.get(i).getPiece() == piece)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Cancel any search in progress and remove the current hint
+     */
+    public void reset()
+    {
+        synchronized (this)
+        {
+            if (cancel != null)
+                cancel.set(true);
+
+            this.cancel = null;
+            this.result = NONE;
+        }
+    }
+
+    public Status getStatus()
+    {
+        return this.result.getStatus();
+    }
+
+    /**
+     * Get the current hint
+     * @return The status, piece and placement of the hint
+     */
+    public Result getResult()
+    {
+        return this.result;
+    }
+
+    @Override
+    public void dispose()
+    {
+        reset();
+
+        if (executor != null)
+        {
+            //save on the background thread once the cancelled search stops
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    save();
+                }
+            });
+
+            executor.shutdown();
+
+            try
+            {
+                //the thread is a daemon, so the save would be lost if the game exits before it is done
+                executor.awaitTermination(DISPOSE_TIMEOUT, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            executor = null;
+        }
+    }
+
+    /**
+     * A hint that doesn't change once it is created
+     */
+    public static final class Result
+    {
+        private final Status status;
+        private final Piece piece;
+        private final Placement placement;
+
+        private Result(final Status status, final Piece piece, final Placement placement)
+        {
+            this.status = status;
+            this.piece = piece;
+            this.placement = placement;
+        }
+
+        public Status getStatus()
+        {
+            return this.status;
+        }
+
+        /**
+         * Get the piece the hint is for
+         * @return The piece to move, null if no hint was found
+         */
+        public Piece getPiece()
+        {
+            return this.piece;
+        }
+
+        /**
+         * Get where the piece goes
+         * @return The orientation and location of the piece, null if no hint was found
+         */
+        public Placement getPlacement()
+        {
+            return this.placement;
+        }
+    }
+}
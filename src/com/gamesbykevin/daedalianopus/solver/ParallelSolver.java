@@ -0,0 +1,275 @@
+package com.gamesbykevin.daedalianopus.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Solve an exact cover matrix on all cores.<br>
+ * The search tree is split into a task for each row of the first branching levels,
+ * each task then searches its part of the tree with dancing links no other task is using.
+ * Idle threads steal tasks from busy threads so the work stays balanced.
+ * @author GOD
+ */
+public final class ParallelSolver
+{
+    //how many branching levels are split into separate tasks
+    private static final int SPLIT_DEPTH = 2;
+
+    //pool shared by all parallel solvers
+    private static ForkJoinPool pool;
+
+    //the matrix we are solving
+    private final ExactCover matrix;
+
+    //the pool running the tasks
+    private final ForkJoinPool executor;
+
+    //the dancing links not used by any task, re-used during a search and released when it finishes
+    private final ConcurrentLinkedQueue<DancingLinks> links = new ConcurrentLinkedQueue<>();
+
+    //are pieces with the same shape interchangeable
+    private boolean interchangeable = true;
+
+    //stop searching once this many solutions are found
+    private long limit;
+
+    //shared results of the current search
+    private AtomicLong solutions, nodes;
+
+    //the first solution found
+    private AtomicReference<Solution> solution;
+
+    //flag used to stop every task
+    private AtomicBoolean cancel;
+
+    //how long the last search took in nanoseconds
+    private long elapsed;
+
+    public ParallelSolver(final ExactCover matrix)
+    {
+        this(matrix, getPool());
+    }
+
+    public ParallelSolver(final ExactCover matrix, final ForkJoinPool executor)
+    {
+        this.matrix = matrix;
+        this.executor = executor;
+    }
+
+    /**
+     * Get the pool shared by all parallel solvers, using one thread per core
+     * @return The shared pool
+     */
+    public static synchronized ForkJoinPool getPool()
+    {
+        if (pool == null)
+            pool = new ForkJoinPool();
+
+        return pool;
+    }
+
+    public ExactCover getMatrix()
+    {
+        return this.matrix;
+    }
+
+    /**
+     * Choose if pieces with the same shape are interchangeable
+     * @param interchangeable true to count each arrangement once, false to count every way the pieces can be swapped
+     */
+    public void setInterchangeable(final boolean interchangeable)
+    {
+        this.interchangeable = interchangeable;
+    }
+
+    /**
+     * Find the first solution, all tasks will stop once any task finds one
+     * @return The first solution found, null if the puzzle can't be solved
+     */
+    public Solution solve()
+    {
+        run(1);
+
+        return getSolution();
+    }
+
+    /**
+     * Count all of the solutions
+     * @return The total number of solutions
+     */
+    public long count()
+    {
+        return count(Long.MAX_VALUE);
+    }
+
+    /**
+     * Count the solutions, stopping early once the limit is reached
+     * @param limit The maximum number of solutions we want to count
+     * @return The number of solutions found, never more than the limit
+     */
+    public long count(final long limit)
+    {
+        run(limit);
+
+        return getSolutionCount();
+    }
+
+    /**
+     * Search the entire tree
+     * @param limit The maximum number of solutions we want to find
+     */
+    private void run(final long limit)
+    {
+        this.limit = limit;
+        this.solutions = new AtomicLong();
+        this.nodes = new AtomicLong();
+        this.solution = new AtomicReference<>();
+        this.cancel = new AtomicBoolean(false);
+
+        final long start = System.nanoTime();
+
+        try
+        {
+            executor.invoke(new Branch(new int[0]));
+        }
+        finally
+        {
+            //the pool threads are shared, so nothing is kept once the search is done
+            links.clear();
+        }
+
+        this.elapsed = System.nanoTime() - start;
+    }
+
+    /**
+     * Stop the search in progress
+     */
+    public void cancel()
+    {
+        if (cancel != null)
+            cancel.set(true);
+    }
+
+    /**
+     * Get the first solution of the last search
+     * @return The solution, null if none was found
+     */
+    public Solution getSolution()
+    {
+        return (solution == null) ? null : solution.get();
+    }
+
+    /**
+     * Get the number of solutions found in the last search
+     * @return The number of solutions, never more than the limit
+     */
+    public long getSolutionCount()
+    {
+        return (solutions == null) ? 0 : Math.min(solutions.get(), limit);
+    }
+
+    /**
+     * Get the number of search nodes visited by all tasks in the last search
+     * @return The number of nodes
+     */
+    public long getNodes()
+    {
+        return (nodes == null) ? 0 : nodes.get();
+    }
+
+    /**
+     * Get how long the last search took
+     * @return The duration in nanoseconds
+     */
+    public long getElapsed()
+    {
+        return this.elapsed;
+    }
+
+    /**
+     * Task that searches every solution containing the selected rows
+     */
+    private final class Branch extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        //the rows selected before this task
+        private final int[] selected;
+
+        private Branch(final int[] selected)
+        {
+            this.selected = selected;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (cancel.get())
+                return;
+
+            //take links no other task is using, or create new ones
+            DancingLinks dlx = links.poll();
+
+            if (dlx == null)
+                dlx = new DancingLinks(matrix);
+
+            dlx.setCancel(cancel);
+            dlx.setInterchangeable(interchangeable);
+
+            for (int i = 0; i < selected.length; i++)
+            {
+                dlx.select(selected[i]);
+            }
+
+            //split the next level into separate tasks
+            if (selected.length < SPLIT_DEPTH)
+            {
+                final int[] rows = dlx.getBranch();
+
+                if (rows != null)
+                {
+                    //release the links before the child tasks use them
+                    dlx.deselectAll();
+                    links.offer(dlx);
+
+                    final List<Branch> tasks = new ArrayList<>(rows.length);
+
+                    for (int i = 0; i < rows.length; i++)
+                    {
+                        final int[] tmp = Arrays.copyOf(selected, selected.length + 1);
+                        tmp[selected.length] = rows[i];
+                        tasks.add(new Branch(tmp));
+                    }
+
+                    invokeAll(tasks);
+                    return;
+                }
+            }
+
+            //search the rest of the tree in this thread
+            dlx.count(limit);
+            dlx.deselectAll();
+
+            nodes.addAndGet(dlx.getNodes());
+
+            if (dlx.getSolutionCount() > 0)
+            {
+                solution.compareAndSet(null, dlx.getSolution());
+
+                //stop the other tasks once we have enough solutions
+                if (solutions.addAndGet(dlx.getSolutionCount()) >= limit)
+                    cancel.set(true);
+            }
+
+            //the results have been read so another task can use the links
+            links.offer(dlx);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.gamesbykevin.daedalianopus.solver;
+
+/**
+ * Where a single piece goes in a solution
+ * @author GOD
+ */
+public final class Placement
+{
+    //the index of the piece
+    private final int piece;
+
+    //the orientation of the piece shape
+    private final int orientation;
+
+    //the location of the top-left of the orientation
+    private final int col, row;
+
+    public Placement(final int piece, final int orientation, final int col, final int row)
+    {
+        this.piece = piece;
+        this.orientation = orientation;
+        this.col = col;
+        this.row = row;
+    }
+
+    /**
+     * Get the piece
+     * @return The index of the piece in the list of shapes that were solved
+     */
+    public int getPiece()
+    {
+        return this.piece;
+    }
+
+    public int getOrientation()
+    {
+        return this.orientation;
+    }
+
+    public int getCol()
+    {
+        return this.col;
+    }
+
+    public int getRow()
+    {
+        return this.row;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Piece " + piece + ", orientation " + orientation + " at (" + col + ", " + row + ")";
+    }
+}
@@ -0,0 +1,94 @@
+package com.gamesbykevin.daedalianopus.solver;
+
+import com.gamesbykevin.daedalianopus.puzzle.BitBoard;
+import com.gamesbykevin.daedalianopus.puzzle.Puzzle;
+import com.gamesbykevin.daedalianopus.puzzle.PuzzleHelper;
+import com.gamesbykevin.daedalianopus.puzzle.piece.Shape;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rate how hard a puzzle is by searching for its solutions with a limited amount of work.<br>
+ * The work is limited so a puzzle can be rated while it is being generated, a puzzle that isn't solved
+ * within the limit is rated from how far the search got.
+ * @author GOD
+ */
+public final class Rater
+{
+    /**
+     * The most nodes the solver can visit for one rating
+     */
+    public static final long NODE_LIMIT = 300;
+
+    /**
+     * The most solutions counted for one rating
+     */
+    public static final long SOLUTION_LIMIT = 8;
+
+    //the rating of each campaign puzzle, found the first time it is needed
+    private static final Map<PuzzleHelper.Type, Rating> CAMPAIGN = new EnumMap<>(PuzzleHelper.Type.class);
+
+    private Rater()
+    {
+        //this class only has static methods
+    }
+
+    /**
+     * Rate the puzzle
+     * @param board The valid locations of the puzzle
+     * @param shapes The shape of each piece
+     * @return The rating
+     */
+    public static Rating rate(final BitBoard board, final List<Shape> shapes)
+    {
+        final BitboardSolver solver = new BitboardSolver(board, shapes);
+        solver.setNodeLimit(NODE_LIMIT);
+        solver.count(SOLUTION_LIMIT);
+
+        return new Rating(
+            shapes.size(), solver.getNodes(), solver.getFirstNodes(), solver.getBacktracks(),
+            solver.getForced(), solver.getSolutionCount(), solver.getDeepest(), solver.hasExceeded());
+    }
+
+    /**
+     * Find the rating of the puzzle in the cache, if it isn't there rate it and store the result
+     * @param board The valid locations of the puzzle
+     * @param shapes The shape of each piece
+     * @param cache The cache used to remember ratings
+     * @return The rating
+     */
+    public static Rating rate(final BitBoard board, final List<Shape> shapes, final SolutionCache cache)
+    {
+        Rating rating = cache.getRating(board, shapes);
+
+        if (rating == null)
+        {
+            rating = rate(board, shapes);
+            cache.putRating(board, shapes, rating);
+        }
+
+        return rating;
+    }
+
+    /**
+     * Get the rating of a campaign puzzle
+     * @param type The campaign puzzle
+     * @return The rating
+     */
+    public static synchronized Rating getRating(final PuzzleHelper.Type type)
+    {
+        Rating rating = CAMPAIGN.get(type);
+
+        if (rating == null)
+        {
+            final Puzzle puzzle = PuzzleHelper.create(type);
+
+            rating = rate(puzzle.getBoard(), ExactCover.getShapes(puzzle), SolutionCache.getCache());
+            CAMPAIGN.put(type, rating);
+        }
+
+        return rating;
+    }
+}
@@ -0,0 +1,218 @@
+package com.gamesbykevin.daedalianopus.solver;
+
+import com.gamesbykevin.daedalianopus.puzzle.PuzzleHelper;
+
+/**
+ * How hard a puzzle is, measured by how much work the solver needs.<br>
+ * The score mostly depends on the number of nodes visited before the first solution compared to the number
+ * of pieces, it is raised for puzzles with few solutions and lowered when many locations can only be filled one way.
+ * When the search runs out of work before a solution the work is estimated from the number of pieces, how many
+ * of them the search managed to place and how often it had to backtrack. The weights and thresholds were
+ * calibrated so the campaign levels are split into about a third of each difficulty.
+ * @author GOD
+ */
+public final class Rating
+{
+    /**
+     * The highest score, given to puzzles that have no solution
+     */
+    public static final int MAX_SCORE = 100;
+
+    //the highest score of each difficulty, anything above Medium is Hard
+    private static final int MAX_SCORE_EASY = 38;
+    private static final int MAX_SCORE_MEDIUM = 70;
+
+    //how much the score changes for each doubling of the work per piece
+    private static final double EFFORT_WEIGHT = 7.0;
+
+    //how much the estimated effort changes for each doubling of the pieces
+    private static final double PIECES_WEIGHT = 3.0;
+
+    //how much the estimated effort changes when the search placed none of the pieces instead of all of them
+    private static final double DEPTH_WEIGHT = 5.0;
+
+    //how much the estimated effort changes for each backtrack per node
+    private static final double BACKTRACK_WEIGHT = 0.7;
+
+    //subtracted from the estimated effort so it matches the effort of the puzzles that were solved
+    private static final double ESTIMATE_OFFSET = 4.4;
+
+    //how much the score is raised when only one solution was found
+    private static final double AMBIGUITY_WEIGHT = 12.0;
+
+    //how much the score is lowered when every location could only be filled one way
+    private static final double FORCED_WEIGHT = 20.0;
+
+    //the number of pieces
+    private final int pieces;
+
+    //the search metrics
+    private final long nodes, first, backtracks, forced, solutions;
+
+    //the most pieces placed at once
+    private final int deepest;
+
+    //did the search stop before it was done
+    private final boolean exceeded;
+
+    //the calculated score
+    private final int score;
+
+    /**
+     * Create a rating from the metrics of a search
+     * @param pieces The number of pieces
+     * @param nodes The number of nodes visited
+     * @param first The number of nodes visited before the first solution, -1 if no solution was found
+     * @param backtracks The number of placements undone without leading to a solution
+     * @param forced The number of locations only one placement could fill
+     * @param solutions The number of solutions found
+     * @param deepest The most pieces placed at once
+     * @param exceeded Did the search stop because it ran out of work
+     */
+    protected Rating(final int pieces, final long nodes, final long first, final long backtracks, final long forced, final long solutions, final int deepest, final boolean exceeded)
+    {
+        this.pieces = pieces;
+        this.nodes = nodes;
+        this.first = first;
+        this.backtracks = backtracks;
+        this.forced = forced;
+        this.solutions = solutions;
+        this.deepest = deepest;
+        this.exceeded = exceeded;
+        this.score = calculateScore();
+    }
+
+    /**
+     * Combine the metrics into a single score
+     * @return The score from 0 to MAX_SCORE
+     */
+    private int calculateScore()
+    {
+        //a puzzle without a solution is as hard as it gets
+        if (first < 0 && !exceeded)
+            return MAX_SCORE;
+
+        //the work needed to find the first solution, for each piece
+        final double effort = (first < 0) ? getEstimatedEffort() : log2(1.0 + ((double)first / Math.max(1, pieces)));
+
+        //fewer solutions leave the player less room for mistakes
+        final double ambiguity = 1.0 / Math.max(1, solutions);
+
+        final double score = (effort * EFFORT_WEIGHT) + (ambiguity * AMBIGUITY_WEIGHT) - (getForcedRatio() * FORCED_WEIGHT);
+
+        return (int)Math.max(0, Math.min(MAX_SCORE, Math.round(score)));
+    }
+
+    /**
+     * Estimate the work per piece of a search that ran out of work before the first solution
+     * @return The estimated log2 of the nodes per piece, never less than the work that was done
+     */
+    private double getEstimatedEffort()
+    {
+        //more pieces, pieces the search couldn't place and more backtracking all mean more work was left
+        final double estimate =
+            (log2(Math.max(1, pieces)) * PIECES_WEIGHT) + (getMissingRatio() * DEPTH_WEIGHT) +
+            (getBacktrackRate() * BACKTRACK_WEIGHT) - ESTIMATE_OFFSET;
+
+        return Math.max(log2(1.0 + ((double)nodes / Math.max(1, pieces))), estimate);
+    }
+
+    private static double log2(final double value)
+    {
+        return Math.log(value) / Math.log(2.0);
+    }
+
+    /**
+     * Get the score
+     * @return The score from 0 (easiest) to MAX_SCORE (hardest)
+     */
+    public int getScore()
+    {
+        return this.score;
+    }
+
+    /**
+     * Get the difficulty that matches the score.<br>
+     * Epic is a size and not a rating, so every rating is Easy, Medium or Hard.
+     * @return The difficulty
+     */
+    public PuzzleHelper.Difficulty getDifficulty()
+    {
+        if (score <= MAX_SCORE_EASY)
+            return PuzzleHelper.Difficulty.Easy;
+        if (score <= MAX_SCORE_MEDIUM)
+            return PuzzleHelper.Difficulty.Medium;
+
+        return PuzzleHelper.Difficulty.Hard;
+    }
+
+    /**
+     * Get the fraction of branching locations that could only be filled one way
+     * @return The ratio from 0 to 1
+     */
+    public double getForcedRatio()
+    {
+        //the solutions are leaves and not locations
+        final long locations = nodes - solutions;
+
+        return (locations <= 0) ? 0 : (double)forced / locations;
+    }
+
+    /**
+     * Get the fraction of the pieces the search never placed
+     * @return The ratio from 0 to 1
+     */
+    public double getMissingRatio()
+    {
+        return (pieces <= 0) ? 0 : (double)(pieces - deepest) / pieces;
+    }
+
+    /**
+     * Get the number of placements undone for each node visited
+     * @return The backtrack rate
+     */
+    public double getBacktrackRate()
+    {
+        return (nodes <= 0) ? 0 : (double)backtracks / nodes;
+    }
+
+    public int getPieceCount()
+    {
+        return this.pieces;
+    }
+
+    public long getNodes()
+    {
+        return this.nodes;
+    }
+
+    public long getFirstNodes()
+    {
+        return this.first;
+    }
+
+    public long getBacktracks()
+    {
+        return this.backtracks;
+    }
+
+    public long getForced()
+    {
+        return this.forced;
+    }
+
+    public long getSolutionCount()
+    {
+        return this.solutions;
+    }
+
+    public int getDeepest()
+    {
+        return this.deepest;
+    }
+
+    public boolean hasExceeded()
+    {
+        return this.exceeded;
+    }
+}
@@ -0,0 +1,45 @@
+package com.gamesbykevin.daedalianopus.solver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A list of placements that solves a puzzle
+ * @author GOD
+ */
+public final class Solution
+{
+    //the placement of each piece
+    private final List<Placement> placements;
+
+    public Solution(final List<Placement> placements)
+    {
+        this.placements = Collections.unmodifiableList(new ArrayList<>(placements));
+    }
+
+    /**
+     * Get the placements
+     * @return Unmodifiable list of where each piece goes
+     */
+    public List<Placement> getPlacements()
+    {
+        return this.placements;
+    }
+
+    /**
+     * Get the placement of the piece
+     * @param piece The index of the piece
+     * @return The placement of the piece, null if the piece is not part of the solution
+     */
+    public Placement getPlacement(final int piece)
+    {
+        for (int i = 0; i < placements.size(); i++)
+        {
+            if (placements.get(i).getPiece() == piece)
+                return placements.get(i);
+        }
+
+        return null;
+    }
+}
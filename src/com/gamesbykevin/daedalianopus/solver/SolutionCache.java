@@ -0,0 +1,900 @@
+package com.gamesbykevin.daedalianopus.solver;
+
+import com.gamesbykevin.daedalianopus.puzzle.BitBoard;
+import com.gamesbykevin.daedalianopus.puzzle.piece.Shape;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remember the solutions of puzzles that have already been solved.<br>
+ * Each puzzle is identified by a fingerprint of its valid locations, trimmed to their bounds and normalized
+ * under the 8 rotations/reflections, along with the canonical form of every piece shape. So the same board
+ * rotated, mirrored or moved within a larger grid, with the pieces in any order, shares a single entry.
+ * The most recently used entries are kept in memory and saved to a file that is loaded the first time it is needed.
+ * @author GOD
+ */
+public final class SolutionCache
+{
+    /**
+     * The number of puzzles the shared cache will remember
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    //identifies the file format
+    private static final int MAGIC = 0x44534F4C;
+    private static final int VERSION = 4;
+
+    //the number of transformations (4 rotations, each may be mirrored)
+    private static final int TRANSFORMATIONS = 8;
+
+    //the cache shared by the game
+    private static SolutionCache cache;
+
+    //where the cache is saved
+    private final File file;
+
+    //the entries in order of least to most recently used
+    private final LinkedHashMap<Fingerprint, Record> records;
+
+    //has the file been loaded, and have the records changed since it was saved
+    private boolean loaded, changed;
+
+    //how many look ups found/didn't find a record
+    private long hits, misses;
+
+    /**
+     * Create a new cache
+     * @param file Where the cache is saved, null if the cache is only kept in memory
+     * @param capacity The maximum number of puzzles to remember
+     */
+    public SolutionCache(final File file, final int capacity)
+    {
+        this.file = file;
+
+        //access order so the least recently used record is removed first
+        this.records = new LinkedHashMap<Fingerprint, Record>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Fingerprint, Record> eldest)
+            {
+                return (size() > capacity);
+            }
+        };
+    }
+
+    /**
+     * Get the cache shared by the game, saved in the home directory of the user
+     * @return The shared cache
+     */
+    public static synchronized SolutionCache getCache()
+    {
+        if (cache == null)
+        {
+            final File directory = new File(System.getProperty("user.home"), ".daedalianopus");
+            cache = new SolutionCache(new File(directory, "solutions.dat"), DEFAULT_CAPACITY);
+        }
+
+        return cache;
+    }
+
+    /**
+     * Find the matrix solution in the cache, if it isn't there solve it and store the result
+     * @param matrix The matrix we want to solve
+     * @return The solution, null if the puzzle can't be solved
+     */
+    public Solution solve(final ExactCover matrix)
+    {
+        final List<Shape> shapes = getShapes(matrix);
+        final Canonical canonical = new Canonical(matrix.getBoard(), shapes);
+
+        synchronized (this)
+        {
+            final Record record = get(canonical.fingerprint);
+
+            //we already know the answer
+            if (record != null && (record.labels != null || record.count == 0))
+                return canonical.getSolution(record);
+        }
+
+        final Solution solution = new DancingLinks(matrix).solve();
+
+        if (solution == null)
+        {
+            put(canonical, 0);
+        }
+        else
+        {
+            put(canonical, solution);
+        }
+
+        return solution;
+    }
+
+    /**
+     * Find the number of solutions in the cache, if it isn't there count them and store the result
+     * @param matrix The matrix we want to count
+     * @return The total number of solutions, pieces with the same shape are interchangeable the same as every solver counts them
+     */
+    public long count(final ExactCover matrix)
+    {
+        final List<Shape> shapes = getShapes(matrix);
+        final Canonical canonical = new Canonical(matrix.getBoard(), shapes);
+
+        synchronized (this)
+        {
+            final Record record = get(canonical.fingerprint);
+
+            if (record != null && record.count >= 0)
+                return record.count;
+        }
+
+        final DancingLinks links = new DancingLinks(matrix);
+        final long count = links.count();
+
+        put(canonical, count);
+
+        if (links.getSolution() != null)
+            put(canonical, links.getSolution());
+
+        return count;
+    }
+
+    /**
+     * Get the cached solution of the puzzle
+     * @param board The valid locations of the puzzle
+     * @param shapes The shape of each piece, the index of each shape will be used in the solution
+     * @return The solution, null if it isn't cached or the puzzle can't be solved
+     */
+    public Solution getSolution(final BitBoard board, final List<Shape> shapes)
+    {
+        final Canonical canonical = new Canonical(board, shapes);
+
+        synchronized (this)
+        {
+            final Record record = get(canonical.fingerprint);
+
+            return (record == null) ? null : canonical.getSolution(record);
+        }
+    }
+
+    /**
+     * Get the cached number of solutions of the puzzle
+     * @param board The valid locations of the puzzle
+     * @param shapes The shape of each piece
+     * @return The number of solutions, -1 if it isn't cached
+     */
+    public long getCount(final BitBoard board, final List<Shape> shapes)
+    {
+        final Canonical canonical = new Canonical(board, shapes);
+
+        synchronized (this)
+        {
+            final Record record = get(canonical.fingerprint);
+
+            return (record == null) ? -1 : record.count;
+        }
+    }
+
+    /**
+     * Get the cached rating of the puzzle
+     * @param board The valid locations of the puzzle
+     * @param shapes The shape of each piece
+     * @return The rating, null if it isn't cached
+     */
+    public Rating getRating(final BitBoard board, final List<Shape> shapes)
+    {
+        final Canonical canonical = new Canonical(board, shapes);
+
+        synchronized (this)
+        {
+            final Record record = get(canonical.fingerprint);
+
+            return (record == null) ? null : record.rating;
+        }
+    }
+
+    /**
+     * Store the rating of the puzzle
+     * @param board The valid locations of the puzzle
+     * @param shapes The shape of each piece
+     * @param rating The rating
+     */
+    public void putRating(final BitBoard board, final List<Shape> shapes, final Rating rating)
+    {
+        final Canonical canonical = new Canonical(board, shapes);
+
+        synchronized (this)
+        {
+            getRecord(canonical.fingerprint).rating = rating;
+            changed = true;
+        }
+    }
+
+    /**
+     * Store a solution of the puzzle
+     * @param board The valid locations of the puzzle
+     * @param shapes The shape of each piece
+     * @param solution The placement of each piece, using the index of the shapes
+     */
+    public void putSolution(final BitBoard board, final List<Shape> shapes, final Solution solution)
+    {
+        put(new Canonical(board, shapes), solution);
+    }
+
+    /**
+     * Store the total number of solutions of the puzzle
+     * @param board The valid locations of the puzzle
+     * @param shapes The shape of each piece
+     * @param count The number of solutions
+     */
+    public void putCount(final BitBoard board, final List<Shape> shapes, final long count)
+    {
+        put(new Canonical(board, shapes), count);
+    }
+
+    private synchronized void put(final Canonical canonical, final Solution solution)
+    {
+        final int[] labels = canonical.getLabels(solution);
+
+        if (labels == null)
+            return;
+
+        getRecord(canonical.fingerprint).labels = labels;
+        changed = true;
+    }
+
+    private synchronized void put(final Canonical canonical, final long count)
+    {
+        final Record record = getRecord(canonical.fingerprint);
+
+        record.count = count;
+
+        //there is nothing to place if it can't be solved
+        if (count == 0)
+            record.labels = null;
+
+        changed = true;
+    }
+
+    /**
+     * Find the record, loading the file first if needed
+     * @param fingerprint The puzzle we are looking for
+     * @return The record, null if the puzzle isn't cached
+     */
+    private Record get(final Fingerprint fingerprint)
+    {
+        load();
+
+        final Record record = records.get(fingerprint);
+
+        if (record == null)
+        {
+            misses++;
+        }
+        else
+        {
+            hits++;
+        }
+
+        return record;
+    }
+
+    /**
+     * Find the record, creating it if it doesn't exist
+     * @param fingerprint The puzzle we are looking for
+     * @return The record
+     */
+    private Record getRecord(final Fingerprint fingerprint)
+    {
+        load();
+
+        Record record = records.get(fingerprint);
+
+        if (record == null)
+        {
+            record = new Record();
+            records.put(fingerprint, record);
+        }
+
+        return record;
+    }
+
+    private static List<Shape> getShapes(final ExactCover matrix)
+    {
+        final List<Shape> shapes = new ArrayList<>(matrix.getPieceCount());
+
+        for (int i = 0; i < matrix.getPieceCount(); i++)
+        {
+            shapes.add(matrix.getShape(i));
+        }
+
+        return shapes;
+    }
+
+    /**
+     * Load the file if it hasn't been loaded yet
+     */
+    private void load()
+    {
+        if (loaded)
+            return;
+
+        loaded = true;
+
+        if (file == null || !file.exists())
+            return;
+
+        DataInputStream input = null;
+
+        try
+        {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+            //ignore files we don't understand, they will be replaced the next time we save
+            if (input.readInt() != MAGIC || input.readInt() != VERSION)
+                return;
+
+            final int count = input.readInt();
+
+            check(count >= 0);
+
+            //the records were saved from least to most recently used
+            for (int i = 0; i < count; i++)
+            {
+                final int cols = input.readUnsignedShort();
+                final int rows = input.readUnsignedShort();
+
+                final int length = input.readInt();
+
+                //the board has one bit for each location
+                check(length == ((cols * rows) + Long.SIZE - 1) / Long.SIZE);
+
+                final long[] words = new long[length];
+
+                for (int z = 0; z < words.length; z++)
+                {
+                    words[z] = input.readLong();
+                }
+
+                final long[] shapes = new long[input.readUnsignedShort()];
+
+                for (int z = 0; z < shapes.length; z++)
+                {
+                    shapes[z] = input.readLong();
+                }
+
+                final Record record = new Record();
+                record.count = input.readLong();
+
+                final int size = input.readInt();
+
+                //a size of -1 means no solution is stored, otherwise there is a label for each valid location
+                check(size >= -1 && size <= cols * rows);
+
+                if (size >= 0)
+                {
+                    record.labels = new int[size];
+
+                    for (int z = 0; z < size; z++)
+                    {
+                        record.labels[z] = input.readUnsignedShort();
+
+                        check(record.labels[z] < shapes.length);
+                    }
+                }
+
+                if (input.readBoolean())
+                {
+                    record.rating = new Rating(
+                        shapes.length, input.readLong(), input.readLong(), input.readLong(),
+                        input.readLong(), input.readLong(), input.readInt(), input.readBoolean());
+                }
+
+                records.put(new Fingerprint(cols, rows, words, shapes), record);
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            e.printStackTrace();
+
+            //a damaged file is thrown away, the records are found again as puzzles are solved
+            records.clear();
+            close(input);
+            input = null;
+            file.delete();
+        }
+        finally
+        {
+            close(input);
+        }
+    }
+
+    /**
+     * Make sure a value read from the file is valid
+     * @param valid Is the value valid
+     * @throws IOException if the value is not valid, the file is damaged
+     */
+    private static void check(final boolean valid) throws IOException
+    {
+        if (!valid)
+            throw new IOException("The solution cache file is damaged");
+    }
+
+    /**
+     * Save the records to the file if anything changed since the last save
+     */
+    public synchronized void save()
+    {
+        if (file == null || !changed)
+            return;
+
+        //write to a temporary file so a failed save doesn't lose the previous file
+        final File tmp = new File(file.getPath() + ".tmp");
+
+        DataOutputStream output = null;
+
+        try
+        {
+            if (file.getParentFile() != null)
+                file.getParentFile().mkdirs();
+
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(records.size());
+
+            for (Map.Entry<Fingerprint, Record> entry : records.entrySet())
+            {
+                final Fingerprint fingerprint = entry.getKey();
+                final Record record = entry.getValue();
+
+                output.writeShort(fingerprint.cols);
+                output.writeShort(fingerprint.rows);
+                output.writeInt(fingerprint.words.length);
+
+                for (int i = 0; i < fingerprint.words.length; i++)
+                {
+                    output.writeLong(fingerprint.words[i]);
+                }
+
+                output.writeShort(fingerprint.shapes.length);
+
+                for (int i = 0; i < fingerprint.shapes.length; i++)
+                {
+                    output.writeLong(fingerprint.shapes[i]);
+                }
+
+                output.writeLong(record.count);
+
+                if (record.labels == null)
+                {
+                    output.writeInt(-1);
+                }
+                else
+                {
+                    output.writeInt(record.labels.length);
+
+                    for (int i = 0; i < record.labels.length; i++)
+                    {
+                        output.writeShort(record.labels[i]);
+                    }
+                }
+
+                output.writeBoolean(record.rating != null);
+
+                if (record.rating != null)
+                {
+                    output.writeLong(record.rating.getNodes());
+                    output.writeLong(record.rating.getFirstNodes());
+                    output.writeLong(record.rating.getBacktracks());
+                    output.writeLong(record.rating.getForced());
+                    output.writeLong(record.rating.getSolutionCount());
+                    output.writeInt(record.rating.getDeepest());
+                    output.writeBoolean(record.rating.hasExceeded());
+                }
+            }
+
+            output.close();
+            output = null;
+
+            if (file.exists() && !file.delete())
+                throw new IOException("Unable to replace " + file);
+            if (!tmp.renameTo(file))
+                throw new IOException("Unable to rename " + tmp);
+
+            changed = false;
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+        finally
+        {
+            close(output);
+        }
+    }
+
+    private static void close(final Closeable closeable)
+    {
+        try
+        {
+            if (closeable != null)
+                closeable.close();
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Get the number of puzzles in memory
+     * @return The number of records
+     */
+    public synchronized int getSize()
+    {
+        load();
+
+        return this.records.size();
+    }
+
+    public synchronized long getHits()
+    {
+        return this.hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return this.misses;
+    }
+
+    /**
+     * What we know about a puzzle
+     */
+    private static final class Record
+    {
+        //the label of each valid location in the canonical board, null if no solution is known
+        private int[] labels;
+
+        //the number of solutions, -1 if it hasn't been counted
+        private long count = -1;
+
+        //how hard the puzzle is, null if it hasn't been rated
+        private Rating rating;
+    }
+
+    /**
+     * The canonical board and sorted piece shapes that identify a puzzle
+     */
+    private static final class Fingerprint
+    {
+        private final int cols, rows;
+        private final long[] words;
+        private final long[] shapes;
+        private final int hash;
+
+        private Fingerprint(final int cols, final int rows, final long[] words, final long[] shapes)
+        {
+            this.cols = cols;
+            this.rows = rows;
+            this.words = words;
+            this.shapes = shapes;
+            this.hash = (((cols * 31) + rows) * 31 + Arrays.hashCode(words)) * 31 + Arrays.hashCode(shapes);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(final Object object)
+        {
+            if (!(object instanceof Fingerprint))
+                return false;
+
+            final Fingerprint other = (Fingerprint)object;
+
+            return (cols == other.cols && rows == other.rows && Arrays.equals(words, other.words) && Arrays.equals(shapes, other.shapes));
+        }
+    }
+
+    /**
+     * The fingerprint of a puzzle along with how to map between the puzzle and the canonical board.<br>
+     * Each solution is stored as the label of every valid location in canonical row-major order,
+     * where the label is the position of the piece in the sorted list of shapes.
+     */
+    private static final class Canonical
+    {
+        //the shapes of the puzzle
+        private final List<Shape> shapes;
+
+        //the bounds of the valid locations
+        private final int startCol, startRow, cols, rows;
+
+        //the position in the canonical board of each location within the bounds
+        private final int[] map;
+
+        //the order of each valid location in the canonical board, -1 if not valid
+        private final int[] order;
+
+        //the number of valid locations
+        private final int count;
+
+        //the piece at each position of the sorted shapes, and the position of each piece
+        private final int[] pieces, ranks;
+
+        private final Fingerprint fingerprint;
+
+        private Canonical(final BitBoard board, final List<Shape> shapes)
+        {
+            this.shapes = shapes;
+
+            //find the bounds of the valid locations
+            int minCol = board.getCols(), minRow = board.getRows(), maxCol = -1, maxRow = -1;
+
+            for (int row = 0; row < board.getRows(); row++)
+            {
+                for (int col = 0; col < board.getCols(); col++)
+                {
+                    if (!board.get(col, row))
+                        continue;
+
+                    minCol = Math.min(minCol, col);
+                    minRow = Math.min(minRow, row);
+                    maxCol = Math.max(maxCol, col);
+                    maxRow = Math.max(maxRow, row);
+                }
+            }
+
+            this.startCol = (maxCol < 0) ? 0 : minCol;
+            this.startRow = (maxRow < 0) ? 0 : minRow;
+            this.cols = maxCol - startCol + 1;
+            this.rows = maxRow - startRow + 1;
+
+            //find the transformation with the smallest board
+            BitBoard best = null;
+            int transformation = 0;
+
+            for (int i = 0; i < TRANSFORMATIONS; i++)
+            {
+                final boolean swap = ((i & 1) == 1);
+                final BitBoard tmp = new BitBoard((swap) ? rows : cols, (swap) ? cols : rows);
+
+                for (int row = 0; row < rows; row++)
+                {
+                    for (int col = 0; col < cols; col++)
+                    {
+                        if (board.get(startCol + col, startRow + row))
+                            tmp.set(transform(i, col, row));
+                    }
+                }
+
+                if (best == null || compare(tmp, best) < 0)
+                {
+                    best = tmp;
+                    transformation = i;
+                }
+            }
+
+            this.map = new int[cols * rows];
+
+            for (int row = 0; row < rows; row++)
+            {
+                for (int col = 0; col < cols; col++)
+                {
+                    map[(row * cols) + col] = transform(transformation, col, row);
+                }
+            }
+
+            this.order = new int[cols * rows];
+
+            int index = 0;
+
+            for (int i = 0; i < order.length; i++)
+            {
+                order[i] = (best.get(i)) ? index++ : -1;
+            }
+
+            this.count = index;
+
+            //sort the pieces by their canonical shape
+            final long[] keys = new long[shapes.size()];
+            final Integer[] sorted = new Integer[shapes.size()];
+
+            for (int i = 0; i < keys.length; i++)
+            {
+                keys[i] = shapes.get(i).getKey();
+                sorted[i] = i;
+            }
+
+            Arrays.sort(sorted, new Comparator<Integer>()
+            {
+                @Override
+                public int compare(final Integer piece1, final Integer piece2)
+                {
+                    return Long.compare(keys[piece1], keys[piece2]);
+                }
+            });
+
+            this.pieces = new int[keys.length];
+            this.ranks = new int[keys.length];
+
+            final long[] canonicalShapes = new long[keys.length];
+
+            for (int i = 0; i < sorted.length; i++)
+            {
+                pieces[i] = sorted[i];
+                ranks[sorted[i]] = i;
+                canonicalShapes[i] = keys[sorted[i]];
+            }
+
+            this.fingerprint = new Fingerprint(best.getCols(), best.getRows(), best.getWords().clone(), canonicalShapes);
+        }
+
+        /**
+         * Get the index in the transformed board of a location within the bounds
+         * @param transformation 0-3 is the number of 90 degree rotations, 4-7 is the same but mirrored horizontally first
+         * @param col Column relative to the bounds
+         * @param row Row relative to the bounds
+         * @return The row-major index in the transformed board
+         */
+        private int transform(final int transformation, final int col, final int row)
+        {
+            int tmpCol = (transformation >= 4) ? (cols - 1 - col) : col;
+            int tmpRow = row;
+            int width = cols, height = rows;
+
+            //rotate 90 degrees the required number of times
+            for (int i = 0; i < (transformation & 3); i++)
+            {
+                final int tmp = tmpCol;
+                tmpCol = height - 1 - tmpRow;
+                tmpRow = tmp;
+
+                final int size = width;
+                width = height;
+                height = size;
+            }
+
+            return (tmpRow * width) + tmpCol;
+        }
+
+        /**
+         * Compare two boards by their dimensions and then their words
+         */
+        private static int compare(final BitBoard board1, final BitBoard board2)
+        {
+            if (board1.getCols() != board2.getCols())
+                return (board1.getCols() < board2.getCols()) ? -1 : 1;
+
+            final long[] words1 = board1.getWords();
+            final long[] words2 = board2.getWords();
+
+            for (int i = 0; i < words1.length; i++)
+            {
+                if (words1[i] != words2[i])
+                    return Long.compare(words1[i], words2[i]);
+            }
+
+            return 0;
+        }
+
+        /**
+         * Get the label of every valid location for the solution
+         * @param solution The placement of each piece
+         * @return The labels in canonical order, null if the solution doesn't fit the puzzle
+         */
+        private int[] getLabels(final Solution solution)
+        {
+            if (solution.getPlacements().size() != shapes.size())
+                return null;
+
+            final int[] labels = new int[count];
+
+            for (int i = 0; i < solution.getPlacements().size(); i++)
+            {
+                final Placement placement = solution.getPlacements().get(i);
+                final Shape shape = shapes.get(placement.getPiece());
+
+                for (int z = 0; z < shape.getSize(); z++)
+                {
+                    final int col = placement.getCol() + shape.getCol(placement.getOrientation(), z) - startCol;
+                    final int row = placement.getRow() + shape.getRow(placement.getOrientation(), z) - startRow;
+
+                    if (col < 0 || col >= cols || row < 0 || row >= rows || order[map[(row * cols) + col]] < 0)
+                        return null;
+
+                    labels[order[map[(row * cols) + col]]] = ranks[placement.getPiece()];
+                }
+            }
+
+            return labels;
+        }
+
+        /**
+         * Convert the record back into a solution for this puzzle
+         * @param record The cached record
+         * @return The solution, null if the record has no solution
+         */
+        private Solution getSolution(final Record record)
+        {
+            if (record.labels == null || record.labels.length != count)
+                return null;
+
+            //the top-left of each piece and the mask of its small pieces
+            final int[] minCols = new int[pieces.length];
+            final int[] minRows = new int[pieces.length];
+            final long[] masks = new long[pieces.length];
+
+            Arrays.fill(minCols, Integer.MAX_VALUE);
+            Arrays.fill(minRows, Integer.MAX_VALUE);
+
+            for (int pass = 0; pass < 2; pass++)
+            {
+                for (int row = 0; row < rows; row++)
+                {
+                    for (int col = 0; col < cols; col++)
+                    {
+                        final int index = order[map[(row * cols) + col]];
+
+                        if (index < 0)
+                            continue;
+
+                        final int label = record.labels[index];
+
+                        if (label >= pieces.length)
+                            return null;
+
+                        if (pass == 0)
+                        {
+                            minCols[label] = Math.min(minCols[label], col);
+                            minRows[label] = Math.min(minRows[label], row);
+                        }
+                        else
+                        {
+                            final int offsetCol = col - minCols[label];
+                            final int offsetRow = row - minRows[label];
+
+                            if (offsetCol >= Shape.MAX_DIMENSION || offsetRow >= Shape.MAX_DIMENSION)
+                                return null;
+
+                            masks[label] |= (1L << ((offsetRow * Shape.MAX_DIMENSION) + offsetCol));
+                        }
+                    }
+                }
+            }
+
+            final List<Placement> placements = new ArrayList<>(pieces.length);
+
+            for (int label = 0; label < pieces.length; label++)
+            {
+                final int orientation = shapes.get(pieces[label]).getOrientation(masks[label]);
+
+                //the record doesn't match the shapes
+                if (orientation < 0)
+                    return null;
+
+                placements.add(new Placement(pieces[label], orientation, startCol + minCols[label], startRow + minRows[label]));
+            }
+
+            return new Solution(placements);
+        }
+    }
+}